@@ -17,6 +17,8 @@
 
 package edu.uci.ics.crawler4j.crawler;
 
+import edu.uci.ics.crawler4j.fetcher.ProxyServer;
+
 import java.util.*;
 
 public class CrawlConfig {
@@ -57,6 +59,28 @@ public class CrawlConfig {
      */
     private int politenessDelay = 200;
 
+    /**
+     * Floor in milliseconds applied to the Crawl-delay a host asks for in its
+     * robots.txt file.
+     */
+    private int minCrawlDelay = 0;
+
+    /**
+     * Cap in milliseconds applied to the Crawl-delay a host asks for in its
+     * robots.txt file. Hosts that ask for a longer delay between requests
+     * than the politeness delay get it, up to this cap. Use 0 to ignore
+     * Crawl-delay directives.
+     */
+    private int maxCrawlDelay = 30000;
+
+    /**
+     * Longest time in milliseconds a crawler thread waits for its turn at a
+     * host. The fetch of a url whose host can not be fetched again before
+     * then is deferred in the frontier, and the thread moves on to other
+     * urls. Use -1 to always wait.
+     */
+    private int maxPolitenessWait = 1000;
+
     /**
      * Should we also crawl https pages?
      */
@@ -67,6 +91,16 @@ public class CrawlConfig {
      */
     private boolean includeBinaryContentInCrawling = false;
 
+    /**
+     * Content types whose body is downloaded, for example "text/html". An
+     * entry ending with "/*" or "/" (such as "image/*") allows a whole
+     * top-level type. Parameters of the Content-Type header, such as the
+     * charset, are ignored. If this is empty, every content type is allowed except binary content
+     * when includeBinaryContentInCrawling is false. The check is made on the
+     * response headers, before any of the body is read.
+     */
+    private Set<String> allowedContentTypes = new HashSet<String>();
+
     /**
      * Maximum Connections per host
      */
@@ -77,6 +111,24 @@ public class CrawlConfig {
      */
     private int maxTotalConnections = 100;
 
+    /**
+     * Maximum number of bytes per second downloaded over all fetches. Use 0
+     * for no limit.
+     */
+    private int maxBytesPerSecond = 0;
+
+    /**
+     * Maximum number of bytes per second downloaded from a single host. Use 0
+     * for no limit.
+     */
+    private int maxBytesPerSecondPerHost = 0;
+
+    /**
+     * Number of upcoming distinct hosts to open connections to in the
+     * background, ahead of their first fetch. Use 0 to disable prewarming.
+     */
+    private int prewarmHosts = 0;
+
     /**
      * Socket timeout in milliseconds
      */
@@ -87,6 +139,25 @@ public class CrawlConfig {
      */
     private int connectionTimeout = 30000;
 
+    /**
+     * Maximum total time in milliseconds a single fetch may take, from sending
+     * the request until the body is read. Use 0 for no limit.
+     */
+    private int maxFetchDuration = 0;
+
+    /**
+     * Minimum download throughput in bytes per second. A fetch whose body is
+     * downloaded slower than this for a whole min-download-throughput-period
+     * is aborted. Use 0 to disable this check.
+     */
+    private int minDownloadThroughput = 0;
+
+    /**
+     * The period in milliseconds over which the download throughput is
+     * measured.
+     */
+    private int minDownloadThroughputPeriod = 30000;
+
     /**
      * Max number of outgoing links which are processed from a page
      */
@@ -98,11 +169,107 @@ public class CrawlConfig {
      */
     private int maxDownloadSize = 1048576;
 
+    /**
+     * Should HTML pages be parsed while they are being downloaded, instead of
+     * being buffered in memory first? This has no effect with lightweight HTML
+     * parsing, which needs the whole page.
+     */
+    private boolean streamingParsing = false;
+
+    /**
+     * Should HTML pages be parsed with the lightweight tag scanner instead of
+     * Tika? It extracts the same links, title, base, canonical, meta robots and
+     * refresh at a fraction of the cost, but does not repair malformed markup
+     * the way Tika does.
+     */
+    private boolean lightweightHtmlParsing = false;
+
+    /**
+     * The maximum number of characters of body text kept for each HTML page,
+     * or -1 for no limit. Crawls which only follow links can set it to 0 so
+     * that no body text is captured at all; anchor texts are still kept.
+     */
+    private int maxTextLength = -1;
+
+    /**
+     * Should the HTML of each page be kept as a String in its parse data?
+     * Crawls which only follow links can turn it off to save decoding and
+     * copying every page; the raw content is still in Page.getContentData().
+     */
+    private boolean includeHtmlInParseData = true;
+
+    /**
+     * When parsing while downloading, should the raw content still be kept?
+     * If not, Page.getContentData() and HtmlParseData.getHtml() return null
+     * for streamed pages.
+     */
+    private boolean retainStreamedContent = false;
+
+    /**
+     * Maximum ratio between the decompressed and the compressed size of a
+     * gzip or deflate encoded page. Pages above this ratio are aborted as
+     * likely compression bombs. Use 0 for no limit.
+     */
+    private int maxCompressionRatio = 200;
+
+    /**
+     * Folder the responses are captured to, as they were received: status
+     * line, headers and the body still in its content encoding. Bodies are
+     * then only decompressed when their content is needed. Use null to
+     * disable capturing.
+     */
+    private String captureFolder = null;
+
+    /**
+     * Maximum number of times a page is retried after a transient failure
+     * (a transport error, a 5xx or a 429 response). Use 0 for no retries.
+     */
+    private int maxRetries = 0;
+
+    /**
+     * Delay in milliseconds before the first retry of a failed page. The delay
+     * is doubled for every following retry.
+     */
+    private int retryDelay = 10000;
+
+    /**
+     * Maximum delay in milliseconds before retrying a failed page, also
+     * applied to delays requested by servers in Retry-After headers.
+     */
+    private int maxRetryDelay = 600000;
+
     /**
      * Should we follow redirects?
      */
     private boolean followRedirects = true;
 
+    /**
+     * Maximum number of redirects followed in a row while fetching a page.
+     * Use 0 to schedule redirect targets in the frontier instead of fetching
+     * them right away.
+     */
+    private int maxRedirects = 5;
+
+    /**
+     * Should we remember permanent (301) redirects across crawls and rewrite
+     * links to known-moved URLs before fetching them?
+     */
+    private boolean cachePermanentRedirects = false;
+
+    /**
+     * Should the urls listed in the sitemaps of the robots.txt of a seed's host
+     * be added as seeds too? Each host's sitemaps are read once, when its
+     * first seed is added.
+     */
+    private boolean seedsFromSitemaps = false;
+
+    /**
+     * Should we send conditional requests (If-None-Match / If-Modified-Since)
+     * for pages that were fetched in a previous crawl? The validators are kept
+     * in the crawl storage folder across crawls.
+     */
+    private boolean conditionalFetching = false;
+
     /**
      * If crawler should run behind a proxy, this parameter can be used for
      * specifying the proxy host.
@@ -129,6 +296,44 @@ public class CrawlConfig {
      */
     private String proxyPassword = null;
 
+    /**
+     * A pool of proxies to spread the crawl over. Each fetch goes through the
+     * least loaded healthy proxy of the pool. It can not be combined with the
+     * single proxy settings above.
+     */
+    private List<ProxyServer> proxies = new ArrayList<ProxyServer>();
+
+    /**
+     * Should all pages of a host be fetched through the same proxy of the
+     * pool, for as long as that proxy is healthy?
+     */
+    private boolean proxyStickyPerHost = false;
+
+    /**
+     * Interval in milliseconds between health checks of the proxies in the
+     * pool. Use 0 to disable health checks.
+     */
+    private int proxyHealthCheckInterval = 30000;
+
+    /**
+     * Local addresses to bind outgoing connections to, for machines with more
+     * than one IP address. If empty, the default interface is used.
+     */
+    private List<String> localAddresses = new ArrayList<String>();
+
+    /**
+     * Should the local address of a fetch be picked by a hash of the
+     * destination host (so that a host always sees the same address), rather
+     * than round-robin?
+     */
+    private boolean localAddressHashByHost = false;
+
+    /**
+     * Maximum number of concurrent fetches from each local address. Use 0 for
+     * no limit.
+     */
+    private int maxConnectionsPerLocalAddress = 0;
+
     /**
      * Supporting custom http headers/cookies.
      */
@@ -151,12 +356,67 @@ public class CrawlConfig {
         if (politenessDelay < 0) {
             throw new Exception("Invalid value for politeness delay: " + politenessDelay);
         }
+        if (minCrawlDelay < 0) {
+            throw new Exception("Invalid value for min crawl delay: " + minCrawlDelay);
+        }
+        if (maxCrawlDelay < 0) {
+            throw new Exception("Invalid value for max crawl delay: " + maxCrawlDelay);
+        }
+        if (maxCrawlDelay > 0 && minCrawlDelay > maxCrawlDelay) {
+            throw new Exception("Min crawl delay (" + minCrawlDelay + ") is larger than max crawl delay ("
+                    + maxCrawlDelay + ")");
+        }
+        if (maxPolitenessWait < -1) {
+            throw new Exception("Invalid value for max politeness wait: " + maxPolitenessWait);
+        }
         if (maxDepthOfCrawling < -1) {
             throw new Exception("Maximum crawl depth should be either a positive number or -1 for unlimited depth.");
         }
         if (maxDepthOfCrawling > Short.MAX_VALUE) {
             throw new Exception("Maximum value for crawl depth is " + Short.MAX_VALUE);
         }
+        if (maxFetchDuration < 0) {
+            throw new Exception("Invalid value for max fetch duration: " + maxFetchDuration);
+        }
+        if (minDownloadThroughput < 0) {
+            throw new Exception("Invalid value for min download throughput: " + minDownloadThroughput);
+        }
+        if (maxTextLength < -1) {
+            throw new Exception("Invalid value for max text length: " + maxTextLength);
+        }
+        if (maxCompressionRatio < 0) {
+            throw new Exception("Invalid value for max compression ratio: " + maxCompressionRatio);
+        }
+        if (!proxies.isEmpty() && proxyHost != null) {
+            throw new Exception("Either a single proxy or a pool of proxies can be set, not both.");
+        }
+        if (proxyHealthCheckInterval < 0) {
+            throw new Exception("Invalid value for proxy health check interval: " + proxyHealthCheckInterval);
+        }
+        if (maxConnectionsPerLocalAddress < 0) {
+            throw new Exception("Invalid value for max connections per local address: " + maxConnectionsPerLocalAddress);
+        }
+        if (maxBytesPerSecond < 0) {
+            throw new Exception("Invalid value for max bytes per second: " + maxBytesPerSecond);
+        }
+        if (maxBytesPerSecondPerHost < 0) {
+            throw new Exception("Invalid value for max bytes per second per host: " + maxBytesPerSecondPerHost);
+        }
+        if (prewarmHosts < 0) {
+            throw new Exception("Invalid value for prewarm hosts: " + prewarmHosts);
+        }
+        if (maxRetries < 0 || maxRetries > Short.MAX_VALUE) {
+            throw new Exception("Invalid value for max retries: " + maxRetries);
+        }
+        if (retryDelay < 0 || maxRetryDelay < retryDelay) {
+            throw new Exception("Invalid values for retry delay: " + retryDelay + " and max retry delay: " + maxRetryDelay);
+        }
+        if (maxRedirects < 0) {
+            throw new Exception("Invalid value for max redirects: " + maxRedirects);
+        }
+        if (minDownloadThroughputPeriod <= 0) {
+            throw new Exception("Invalid value for min download throughput period: " + minDownloadThroughputPeriod);
+        }
 
     }
 
@@ -234,6 +494,46 @@ public class CrawlConfig {
         this.politenessDelay = politenessDelay;
     }
 
+    public int getMinCrawlDelay() {
+        return minCrawlDelay;
+    }
+
+    /**
+     * Floor in milliseconds applied to the Crawl-delay a host asks for in its
+     * robots.txt file.
+     */
+    public void setMinCrawlDelay(int minCrawlDelay) {
+        this.minCrawlDelay = minCrawlDelay;
+    }
+
+    public int getMaxCrawlDelay() {
+        return maxCrawlDelay;
+    }
+
+    /**
+     * Cap in milliseconds applied to the Crawl-delay a host asks for in its
+     * robots.txt file. Hosts that ask for a longer delay between requests
+     * than the politeness delay get it, up to this cap. Use 0 to ignore
+     * Crawl-delay directives.
+     */
+    public void setMaxCrawlDelay(int maxCrawlDelay) {
+        this.maxCrawlDelay = maxCrawlDelay;
+    }
+
+    public int getMaxPolitenessWait() {
+        return maxPolitenessWait;
+    }
+
+    /**
+     * Longest time in milliseconds a crawler thread waits for its turn at a
+     * host. The fetch of a url whose host can not be fetched again before
+     * then is deferred in the frontier, and the thread moves on to other
+     * urls. Use -1 to always wait.
+     */
+    public void setMaxPolitenessWait(int maxPolitenessWait) {
+        this.maxPolitenessWait = maxPolitenessWait;
+    }
+
     public boolean isIncludeHttpsPages() {
         return includeHttpsPages;
     }
@@ -256,6 +556,71 @@ public class CrawlConfig {
         this.includeBinaryContentInCrawling = includeBinaryContentInCrawling;
     }
 
+    public Set<String> getAllowedContentTypes() {
+        return allowedContentTypes;
+    }
+
+    /**
+     * Content types whose body is downloaded, for example "text/html". An
+     * entry ending with "/*" or "/" (such as "image/*") allows a whole
+     * top-level type. Parameters of the Content-Type header, such as the
+     * charset, are ignored. If this is empty, every content type is allowed except binary content
+     * when includeBinaryContentInCrawling is false. The check is made on the
+     * response headers, before any of the body is read.
+     */
+    public void setAllowedContentTypes(Set<String> allowedContentTypes) {
+        if (allowedContentTypes != null) {
+            this.allowedContentTypes.clear();
+            for (String contentType : allowedContentTypes) {
+                addAllowedContentType(contentType);
+            }
+        }
+    }
+
+    public void addAllowedContentType(String contentType) {
+        contentType = contentType.trim().toLowerCase();
+        if (contentType.endsWith("/*")) {
+            contentType = contentType.substring(0, contentType.length() - 1);
+        }
+        this.allowedContentTypes.add(contentType);
+    }
+
+    public int getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    /**
+     * Maximum number of bytes per second downloaded over all fetches. Use 0
+     * for no limit.
+     */
+    public void setMaxBytesPerSecond(int maxBytesPerSecond) {
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    public int getMaxBytesPerSecondPerHost() {
+        return maxBytesPerSecondPerHost;
+    }
+
+    /**
+     * Maximum number of bytes per second downloaded from a single host. Use 0
+     * for no limit.
+     */
+    public void setMaxBytesPerSecondPerHost(int maxBytesPerSecondPerHost) {
+        this.maxBytesPerSecondPerHost = maxBytesPerSecondPerHost;
+    }
+
+    public int getPrewarmHosts() {
+        return prewarmHosts;
+    }
+
+    /**
+     * Number of upcoming distinct hosts to open connections to in the
+     * background, ahead of their first fetch. Use 0 to disable prewarming.
+     */
+    public void setPrewarmHosts(int prewarmHosts) {
+        this.prewarmHosts = prewarmHosts;
+    }
+
     public int getMaxConnectionsPerHost() {
         return maxConnectionsPerHost;
     }
@@ -300,6 +665,43 @@ public class CrawlConfig {
         this.connectionTimeout = connectionTimeout;
     }
 
+    public int getMaxFetchDuration() {
+        return maxFetchDuration;
+    }
+
+    /**
+     * Maximum total time in milliseconds a single fetch may take, from sending
+     * the request until the body is read. Use 0 for no limit.
+     */
+    public void setMaxFetchDuration(int maxFetchDuration) {
+        this.maxFetchDuration = maxFetchDuration;
+    }
+
+    public int getMinDownloadThroughput() {
+        return minDownloadThroughput;
+    }
+
+    /**
+     * Minimum download throughput in bytes per second. A fetch whose body is
+     * downloaded slower than this for a whole min-download-throughput-period
+     * is aborted. Use 0 to disable this check.
+     */
+    public void setMinDownloadThroughput(int minDownloadThroughput) {
+        this.minDownloadThroughput = minDownloadThroughput;
+    }
+
+    public int getMinDownloadThroughputPeriod() {
+        return minDownloadThroughputPeriod;
+    }
+
+    /**
+     * The period in milliseconds over which the download throughput is
+     * measured.
+     */
+    public void setMinDownloadThroughputPeriod(int minDownloadThroughputPeriod) {
+        this.minDownloadThroughputPeriod = minDownloadThroughputPeriod;
+    }
+
     public int getMaxOutgoingLinksToFollow() {
         return maxOutgoingLinksToFollow;
     }
@@ -323,6 +725,135 @@ public class CrawlConfig {
         this.maxDownloadSize = maxDownloadSize;
     }
 
+    public int getMaxCompressionRatio() {
+        return maxCompressionRatio;
+    }
+
+    /**
+     * Maximum ratio between the decompressed and the compressed size of a
+     * gzip or deflate encoded page. Pages above this ratio are aborted as
+     * likely compression bombs. Use 0 for no limit.
+     */
+    public void setMaxCompressionRatio(int maxCompressionRatio) {
+        this.maxCompressionRatio = maxCompressionRatio;
+    }
+
+    public String getCaptureFolder() {
+        return captureFolder;
+    }
+
+    /**
+     * Folder the responses are captured to, as they were received: status
+     * line, headers and the body still in its content encoding. Bodies are
+     * then only decompressed when their content is needed. Use null to
+     * disable capturing.
+     */
+    public void setCaptureFolder(String captureFolder) {
+        this.captureFolder = captureFolder;
+    }
+
+    public boolean isStreamingParsing() {
+        return streamingParsing;
+    }
+
+    /**
+     * Should HTML pages be parsed while they are being downloaded, instead of
+     * being buffered in memory first? This has no effect with lightweight HTML
+     * parsing, which needs the whole page.
+     */
+    public void setStreamingParsing(boolean streamingParsing) {
+        this.streamingParsing = streamingParsing;
+    }
+
+    public boolean isLightweightHtmlParsing() {
+        return lightweightHtmlParsing;
+    }
+
+    /**
+     * Should HTML pages be parsed with the lightweight tag scanner instead of
+     * Tika? It extracts the same links, title, base, canonical, meta robots and
+     * refresh at a fraction of the cost, but does not repair malformed markup
+     * the way Tika does.
+     */
+    public void setLightweightHtmlParsing(boolean lightweightHtmlParsing) {
+        this.lightweightHtmlParsing = lightweightHtmlParsing;
+    }
+
+    public int getMaxTextLength() {
+        return maxTextLength;
+    }
+
+    /**
+     * The maximum number of characters of body text kept for each HTML page,
+     * or -1 for no limit. Crawls which only follow links can set it to 0 so
+     * that no body text is captured at all; anchor texts are still kept.
+     */
+    public void setMaxTextLength(int maxTextLength) {
+        this.maxTextLength = maxTextLength;
+    }
+
+    public boolean isIncludeHtmlInParseData() {
+        return includeHtmlInParseData;
+    }
+
+    /**
+     * Should the HTML of each page be kept as a String in its parse data?
+     * Crawls which only follow links can turn it off to save decoding and
+     * copying every page; the raw content is still in Page.getContentData().
+     */
+    public void setIncludeHtmlInParseData(boolean includeHtmlInParseData) {
+        this.includeHtmlInParseData = includeHtmlInParseData;
+    }
+
+    public boolean isRetainStreamedContent() {
+        return retainStreamedContent;
+    }
+
+    /**
+     * When parsing while downloading, should the raw content still be kept?
+     * If not, Page.getContentData() and HtmlParseData.getHtml() return null
+     * for streamed pages.
+     */
+    public void setRetainStreamedContent(boolean retainStreamedContent) {
+        this.retainStreamedContent = retainStreamedContent;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Maximum number of times a page is retried after a transient failure
+     * (a transport error, a 5xx or a 429 response). Use 0 for no retries.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public int getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Delay in milliseconds before the first retry of a failed page. The delay
+     * is doubled for every following retry.
+     */
+    public void setRetryDelay(int retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public int getMaxRetryDelay() {
+        return maxRetryDelay;
+    }
+
+    /**
+     * Maximum delay in milliseconds before retrying a failed page, also
+     * applied to delays requested by servers in Retry-After headers.
+     */
+    public void setMaxRetryDelay(int maxRetryDelay) {
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
     public boolean isFollowRedirects() {
         return followRedirects;
     }
@@ -334,6 +865,57 @@ public class CrawlConfig {
         this.followRedirects = followRedirects;
     }
 
+    public int getMaxRedirects() {
+        return maxRedirects;
+    }
+
+    /**
+     * Maximum number of redirects followed in a row while fetching a page.
+     * Use 0 to schedule redirect targets in the frontier instead of fetching
+     * them right away.
+     */
+    public void setMaxRedirects(int maxRedirects) {
+        this.maxRedirects = maxRedirects;
+    }
+
+    public boolean isCachePermanentRedirects() {
+        return cachePermanentRedirects;
+    }
+
+    /**
+     * Should we remember permanent (301) redirects across crawls and rewrite
+     * links to known-moved URLs before fetching them?
+     */
+    public void setCachePermanentRedirects(boolean cachePermanentRedirects) {
+        this.cachePermanentRedirects = cachePermanentRedirects;
+    }
+
+    public boolean isSeedsFromSitemaps() {
+        return seedsFromSitemaps;
+    }
+
+    /**
+     * Should the urls listed in the sitemaps of the robots.txt of a seed's host
+     * be added as seeds too? Each host's sitemaps are read once, when its
+     * first seed is added.
+     */
+    public void setSeedsFromSitemaps(boolean seedsFromSitemaps) {
+        this.seedsFromSitemaps = seedsFromSitemaps;
+    }
+
+    public boolean isConditionalFetching() {
+        return conditionalFetching;
+    }
+
+    /**
+     * Should we send conditional requests (If-None-Match / If-Modified-Since)
+     * for pages that were fetched in a previous crawl? The validators are kept
+     * in the crawl storage folder across crawls.
+     */
+    public void setConditionalFetching(boolean conditionalFetching) {
+        this.conditionalFetching = conditionalFetching;
+    }
+
     public String getProxyHost() {
         return proxyHost;
     }
@@ -384,6 +966,94 @@ public class CrawlConfig {
         this.proxyPassword = proxyPassword;
     }
 
+    public List<ProxyServer> getProxies() {
+        return proxies;
+    }
+
+    /**
+     * A pool of proxies to spread the crawl over. Each fetch goes through the
+     * least loaded healthy proxy of the pool. It can not be combined with the
+     * single proxy settings above.
+     */
+    public void setProxies(List<ProxyServer> proxies) {
+        this.proxies.clear();
+        if (proxies != null) {
+            this.proxies.addAll(proxies);
+        }
+    }
+
+    public void addProxy(ProxyServer proxy) {
+        this.proxies.add(proxy);
+    }
+
+    public boolean isProxyStickyPerHost() {
+        return proxyStickyPerHost;
+    }
+
+    /**
+     * Should all pages of a host be fetched through the same proxy of the
+     * pool, for as long as that proxy is healthy?
+     */
+    public void setProxyStickyPerHost(boolean proxyStickyPerHost) {
+        this.proxyStickyPerHost = proxyStickyPerHost;
+    }
+
+    public int getProxyHealthCheckInterval() {
+        return proxyHealthCheckInterval;
+    }
+
+    /**
+     * Interval in milliseconds between health checks of the proxies in the
+     * pool. Use 0 to disable health checks.
+     */
+    public void setProxyHealthCheckInterval(int proxyHealthCheckInterval) {
+        this.proxyHealthCheckInterval = proxyHealthCheckInterval;
+    }
+
+    public List<String> getLocalAddresses() {
+        return localAddresses;
+    }
+
+    /**
+     * Local addresses to bind outgoing connections to, for machines with more
+     * than one IP address. If empty, the default interface is used.
+     */
+    public void setLocalAddresses(List<String> localAddresses) {
+        this.localAddresses.clear();
+        if (localAddresses != null) {
+            this.localAddresses.addAll(localAddresses);
+        }
+    }
+
+    public void addLocalAddress(String localAddress) {
+        this.localAddresses.add(localAddress);
+    }
+
+    public boolean isLocalAddressHashByHost() {
+        return localAddressHashByHost;
+    }
+
+    /**
+     * Should the local address of a fetch be picked by a hash of the
+     * destination host (so that a host always sees the same address), rather
+     * than round-robin?
+     */
+    public void setLocalAddressHashByHost(boolean localAddressHashByHost) {
+        this.localAddressHashByHost = localAddressHashByHost;
+    }
+
+    public int getMaxConnectionsPerLocalAddress() {
+        return maxConnectionsPerLocalAddress;
+    }
+
+    /**
+     * Maximum number of concurrent fetches from each local address. Use 0 for
+     * no limit.
+     */
+    public void setMaxConnectionsPerLocalAddress(int maxConnectionsPerLocalAddress) {
+        this.maxConnectionsPerLocalAddress = maxConnectionsPerLocalAddress;
+    }
+
     public Map<String, String> getCustomHeaders() {
         return customHeaders;
     }
@@ -422,19 +1092,44 @@ public class CrawlConfig {
         sb.append("Max depth of crawl       : " + getMaxDepthOfCrawling() + "\n");
         sb.append("Max pages to fetch       : " + getMaxPagesToFetch() + "\n");
         sb.append("User agent string        : " + getUserAgentString() + "\n");
+        sb.append("Min crawl delay          : " + getMinCrawlDelay() + "\n");
+        sb.append("Max crawl delay          : " + getMaxCrawlDelay() + "\n");
+        sb.append("Max politeness wait      : " + getMaxPolitenessWait() + "\n");
         sb.append("Include https pages      : " + isIncludeHttpsPages() + "\n");
         sb.append("Include binary content   : " + isIncludeBinaryContentInCrawling() + "\n");
+        sb.append("Allowed content types    : " + getAllowedContentTypes() + "\n");
         sb.append("Max connections per host : " + getMaxConnectionsPerHost() + "\n");
         sb.append("Max total connections    : " + getMaxTotalConnections() + "\n");
         sb.append("Socket timeout           : " + getSocketTimeout() + "\n");
         sb.append("Max total connections    : " + getMaxTotalConnections() + "\n");
+        sb.append("Max bytes per second     : " + getMaxBytesPerSecond() + "\n");
+        sb.append("Max bytes/s per host     : " + getMaxBytesPerSecondPerHost() + "\n");
+        sb.append("Prewarm hosts            : " + getPrewarmHosts() + "\n");
+        sb.append("Max fetch duration       : " + getMaxFetchDuration() + "\n");
+        sb.append("Min download throughput  : " + getMinDownloadThroughput() + "\n");
         sb.append("Max outgoing links to follow: " + getMaxOutgoingLinksToFollow() + "\n");
         sb.append("Max download size        : " + getMaxDownloadSize() + "\n");
+        sb.append("Max compression ratio    : " + getMaxCompressionRatio() + "\n");
+        sb.append("Capture folder           : " + getCaptureFolder() + "\n");
+        sb.append("Streaming parsing        : " + isStreamingParsing() + "\n");
+        sb.append("Lightweight HTML parsing : " + isLightweightHtmlParsing() + "\n");
+        sb.append("Max text length          : " + getMaxTextLength() + "\n");
+        sb.append("Include HTML             : " + isIncludeHtmlInParseData() + "\n");
+        sb.append("Max retries              : " + getMaxRetries() + "\n");
+        sb.append("Retry delay              : " + getRetryDelay() + "\n");
+        sb.append("Max retry delay          : " + getMaxRetryDelay() + "\n");
         sb.append("Should follow redirects? : " + isFollowRedirects() + "\n");
+        sb.append("Max redirects            : " + getMaxRedirects() + "\n");
+        sb.append("Cache permanent redirects: " + isCachePermanentRedirects() + "\n");
+        sb.append("Seeds from sitemaps      : " + isSeedsFromSitemaps() + "\n");
+        sb.append("Conditional fetching     : " + isConditionalFetching() + "\n");
         sb.append("Proxy host               : " + getProxyHost() + "\n");
         sb.append("Proxy port               : " + getProxyPort() + "\n");
         sb.append("Proxy username           : " + getProxyUsername() + "\n");
         sb.append("Proxy password           : " + getProxyPassword() + "\n");
+        sb.append("Proxy pool               : " + getProxies() + "\n");
+        sb.append("Proxy sticky per host    : " + isProxyStickyPerHost() + "\n");
+        sb.append("Local addresses          : " + getLocalAddresses() + "\n");
         sb.append("Custom Headers           : " + getCustomHeaders() + "\n");
         return sb.toString();
     }
@@ -19,10 +19,15 @@ package edu.uci.ics.crawler4j.crawler;
 
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.EnvironmentConfig;
+import edu.uci.ics.crawler4j.fetcher.FetchService;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
 import edu.uci.ics.crawler4j.frontier.DocIDServer;
 import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.frontier.RedirectsDB;
+import edu.uci.ics.crawler4j.frontier.ValidatorsDB;
 import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.sitemap.SitemapHandler;
+import edu.uci.ics.crawler4j.sitemap.SitemapLoader;
 import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import edu.uci.ics.crawler4j.url.WebURL;
 import edu.uci.ics.crawler4j.util.IO;
@@ -30,8 +35,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The controller that manages a crawling session. This class creates the
@@ -71,8 +80,50 @@ public class CrawlController extends Configurable {
     protected Frontier frontier;
     protected DocIDServer docIdServer;
 
+    /**
+     * Cache validators of fetched pages. It is null unless conditional
+     * fetching is enabled in the config.
+     */
+    protected ValidatorsDB validatorsDB;
+
+    /**
+     * Permanent redirects seen in this and previous crawls. It is null unless
+     * caching of permanent redirects is enabled in the config.
+     */
+    protected RedirectsDB redirectsDB;
+
+    /**
+     * Environment of the frontier databases.
+     */
+    protected Environment env;
+
+    /**
+     * Environment of the databases which are kept between crawls.
+     */
+    protected Environment persistentEnv;
+
+    /**
+     * The share of this crawl in a fetch service shared with other crawls. It
+     * is null if the crawl has a fetcher of its own.
+     */
+    protected FetchService.Share fetchShare;
+
     protected final Object waitingLock = new Object();
 
+    /**
+     * The hosts whose sitemaps have been added as seeds.
+     */
+    protected final Set<String> sitemapHosts = new HashSet<>();
+
+    /**
+     * Creates a controller for a crawl which fetches through the given fetch
+     * service, together with the other crawls registered with it.
+     */
+    public CrawlController(CrawlConfig config, FetchService fetchService) throws Exception {
+        this(config, fetchService.getPageFetcher(), fetchService.getRobotstxtServer());
+        this.fetchShare = fetchService.register();
+    }
+
     public CrawlController(CrawlConfig config, PageFetcher pageFetcher, RobotstxtServer robotstxtServer)
             throws Exception {
         super(config);
@@ -102,10 +153,30 @@ public class CrawlController extends Configurable {
             IO.deleteFolderContents(envHome);
         }
 
-        Environment env = new Environment(envHome, envConfig);
+        env = new Environment(envHome, envConfig);
         docIdServer = new DocIDServer(env, config);
         frontier = new Frontier(env, config, docIdServer);
 
+        if (config.isConditionalFetching() || config.isCachePermanentRedirects()) {
+            // Validators and redirects are kept between crawls, so they get
+            // their own environment which is never cleaned up.
+            File persistentHome = new File(config.getCrawlStorageFolder() + "/persistent");
+            if (!persistentHome.exists()) {
+                if (!persistentHome.mkdir()) {
+                    throw new Exception("Couldn't create this folder: " + persistentHome.getAbsolutePath());
+                }
+            }
+            EnvironmentConfig persistentEnvConfig = new EnvironmentConfig();
+            persistentEnvConfig.setAllowCreate(true);
+            persistentEnv = new Environment(persistentHome, persistentEnvConfig);
+            if (config.isConditionalFetching()) {
+                validatorsDB = new ValidatorsDB(persistentEnv);
+            }
+            if (config.isCachePermanentRedirects()) {
+                redirectsDB = new RedirectsDB(persistentEnv);
+            }
+        }
+
         this.pageFetcher = pageFetcher;
         this.robotstxtServer = robotstxtServer;
 
@@ -228,6 +299,22 @@ public class CrawlController extends Configurable {
 
                                         frontier.close();
                                         docIdServer.close();
+                                        // A later crawl in this JVM would
+                                        // otherwise get this environment back
+                                        env.close();
+                                        if (validatorsDB != null) {
+                                            validatorsDB.close();
+                                        }
+                                        if (redirectsDB != null) {
+                                            redirectsDB.close();
+                                        }
+                                        robotstxtServer.sync();
+                                        if (persistentEnv != null) {
+                                            persistentEnv.close();
+                                        }
+                                        if (fetchShare != null) {
+                                            fetchShare.unregister();
+                                        }
 
                                         finished = true;
                                         waitingLock.notifyAll();
@@ -345,6 +432,60 @@ public class CrawlController extends Configurable {
         } else {
             frontier.schedule(webUrl);
         }
+        if (config.isSeedsFromSitemaps()) {
+            addSitemapsOf(canonicalUrl);
+        }
+    }
+
+    /**
+     * Adds the urls of the sitemaps listed in the robots.txt of the host of
+     * the given url, unless they have been added already.
+     */
+    private void addSitemapsOf(String url) {
+        String host;
+        try {
+            host = new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return;
+        }
+        synchronized (sitemapHosts) {
+            if (!sitemapHosts.add(host)) {
+                return;
+            }
+        }
+        for (String sitemapUrl : robotstxtServer.getSitemaps(host)) {
+            // The sitemaps of a robots.txt may be hosted elsewhere, but they
+            // may only list urls of its own host
+            addSitemap(sitemapUrl, host);
+        }
+    }
+
+    /**
+     * Adds the urls listed in the given sitemap as seeds, as well as those of
+     * the sitemaps it lists if it is a sitemap index. The sitemap is fetched
+     * right away and its urls are scheduled in batches while it is parsed, so
+     * that a large sitemap is never held in memory.
+     * <p/>
+     * The priority a sitemap gives to a url is mapped onto the scale of
+     * {@link WebURL#getPriority()}: the sitemap default of 0.5 and anything
+     * above it keep the default of 0, so they are crawled alongside the links
+     * found on pages, while lower priorities go from 1 for 0.4 to 5 for 0.0.
+     * The last modification time is kept in {@link WebURL#getLastModified()}.
+     * <p/>
+     * Only the urls of the host of the sitemap are added, and only if
+     * {@link #shouldSeedFromSitemap(WebURL)} accepts them.
+     *
+     * @param sitemapUrl the URL of the sitemap or sitemap index
+     */
+    public void addSitemap(String sitemapUrl) {
+        addSitemap(sitemapUrl, SitemapLoader.hostOf(sitemapUrl));
+    }
+
+    private void addSitemap(String sitemapUrl, String host) {
+        SitemapSeeder seeder = new SitemapSeeder();
+        new SitemapLoader(pageFetcher).load(sitemapUrl, host, seeder);
+        seeder.flush();
+        logger.info("Added " + seeder.added + " seeds from the sitemap " + sitemapUrl);
     }
 
     /**
@@ -405,6 +546,18 @@ public class CrawlController extends Configurable {
         this.docIdServer = docIdServer;
     }
 
+    public FetchService.Share getFetchShare() {
+        return fetchShare;
+    }
+
+    public ValidatorsDB getValidatorsDB() {
+        return validatorsDB;
+    }
+
+    public RedirectsDB getRedirectsDB() {
+        return redirectsDB;
+    }
+
     public Object getCustomData() {
         return customData;
     }
@@ -431,4 +584,71 @@ public class CrawlController extends Configurable {
         this.shuttingDown = true;
         frontier.finish();
     }
+
+    /**
+     * Classes that extends CrawlController can override this function to tell
+     * which of the urls listed in sitemaps should be added as seeds. Like
+     * seeds, these urls are not passed to {@link WebCrawler#shouldVisit(WebURL)},
+     * so this is where urls of binary files or of unwanted sections of a site
+     * should be filtered out. By default all urls are added.
+     *
+     * @param url the url listed in a sitemap, with its priority and last
+     *            modification time
+     * @return whether the url should be added as a seed
+     */
+    protected boolean shouldSeedFromSitemap(WebURL url) {
+        return true;
+    }
+
+    /**
+     * Schedules the urls of a sitemap which are new and allowed, in batches.
+     */
+    private class SitemapSeeder implements SitemapHandler {
+
+        private static final int BATCH_SIZE = 1000;
+
+        private final List<WebURL> batch = new ArrayList<>();
+
+        private int added = 0;
+
+        @Override
+        public void url(String url, long lastModified, float priority) {
+            String canonicalUrl = URLCanonicalizer.getCanonicalURL(url);
+            if (canonicalUrl == null || docIdServer.getDocId(canonicalUrl) > 0) {
+                return;
+            }
+            WebURL webUrl = new WebURL();
+            webUrl.setURL(canonicalUrl);
+            webUrl.setDepth((short) 0);
+            webUrl.setLastModified(lastModified);
+            if (priority >= 0) {
+                webUrl.setPriority(toUrlPriority(priority));
+            }
+            if (!shouldSeedFromSitemap(webUrl) || !robotstxtServer.allows(webUrl)) {
+                return;
+            }
+            webUrl.setDocid(docIdServer.getNewDocID(canonicalUrl));
+            batch.add(webUrl);
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        @Override
+        public void sitemap(String url) {
+            // The loader fetches it
+        }
+
+        private byte toUrlPriority(float priority) {
+            return (byte) Math.max(0, Math.round((0.5f - priority) * 10));
+        }
+
+        void flush() {
+            if (!batch.isEmpty()) {
+                frontier.scheduleAll(batch);
+                added += batch.size();
+                batch.clear();
+            }
+        }
+    }
 }
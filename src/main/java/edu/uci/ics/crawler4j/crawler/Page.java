@@ -17,6 +17,7 @@
 
 package edu.uci.ics.crawler4j.crawler;
 
+import edu.uci.ics.crawler4j.fetcher.ContentDecoder;
 import edu.uci.ics.crawler4j.parser.ParseData;
 import edu.uci.ics.crawler4j.url.WebURL;
 import edu.uci.ics.crawler4j.util.IO;
@@ -24,6 +25,8 @@ import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.nio.charset.Charset;
 
@@ -34,6 +37,8 @@ import java.nio.charset.Charset;
  */
 public class Page {
 
+    protected static final Logger logger = LoggerFactory.getLogger(Page.class);
+
     /**
      * The URL of this page.
      * NOTE - This could most likely be updated to rel=canonical if present
@@ -50,6 +55,18 @@ public class Page {
      */
     protected byte[] contentData;
 
+    /**
+     * The content of this page as it was received, still in its content
+     * encoding. It is only set for pages fetched in capture mode, and dropped
+     * once the content is decoded.
+     */
+    protected byte[] encodedContentData;
+
+    /**
+     * Decodes encodedContentData the first time the content is needed.
+     */
+    protected ContentDecoder contentDecoder;
+
     /**
      * The ContentType of this page.
      * For example: "text/html; charset=UTF-8"
@@ -120,7 +137,32 @@ public class Page {
      * HttpEntity.
      */
     public void load(HttpEntity entity, int maxLength) throws Exception {
+        loadHeaders(entity);
+        contentData = IO.toByteArray(entity, maxLength);
+    }
 
+    /**
+     * Loads the content of this page from a fetched HttpEntity whose content
+     * is still in its content encoding. The content is only decoded when
+     * {@link #getContentData()} is first called, so pages whose content is
+     * never looked at are never decompressed.
+     */
+    public void loadEncoded(HttpEntity entity, int maxLength, ContentDecoder decoder) throws Exception {
+        loadHeaders(entity);
+        byte[] data = IO.toByteArray(entity, maxLength);
+        if (contentEncoding == null || data == null) {
+            contentData = data;
+        } else {
+            encodedContentData = data;
+            contentDecoder = decoder;
+        }
+    }
+
+    /**
+     * Loads the content type, encoding and charset of this page from a fetched
+     * HttpEntity, without reading its content.
+     */
+    public void loadHeaders(HttpEntity entity) {
         contentType = null;
         Header type = entity.getContentType();
         if (type != null) {
@@ -137,8 +179,6 @@ public class Page {
         if (charset != null) {
             contentCharset = charset.displayName();
         }
-
-        contentData = IO.toByteArray(entity, maxLength);
     }
 
     /**
@@ -165,9 +205,22 @@ public class Page {
     }
 
     /**
-     * Returns the content of this page in binary format.
+     * Returns the content of this page in binary format. If the page was
+     * fetched in capture mode, the content is decoded by the first call; null
+     * is returned if it can not be decoded.
      */
     public byte[] getContentData() {
+        if (contentDecoder != null) {
+            try {
+                contentData = contentDecoder.decode(encodedContentData, contentEncoding);
+            } catch (Exception e) {
+                logger.warn("Couldn't decode the " + contentEncoding + " content of " + url.getURL() + ": "
+                        + e.getMessage());
+            }
+            contentDecoder = null;
+            // The capture keeps the content as it was received
+            encodedContentData = null;
+        }
         return contentData;
     }
 
@@ -19,21 +19,37 @@ package edu.uci.ics.crawler4j.crawler;
 
 import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
 import edu.uci.ics.crawler4j.fetcher.CustomFetchStatus;
+import edu.uci.ics.crawler4j.fetcher.FetchService;
+import edu.uci.ics.crawler4j.fetcher.FetchValidators;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.frontier.Counters;
+import edu.uci.ics.crawler4j.frontier.Counters.ReservedCounterNames;
 import edu.uci.ics.crawler4j.frontier.DocIDServer;
 import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.frontier.RedirectsDB;
+import edu.uci.ics.crawler4j.frontier.ValidatorsDB;
 import edu.uci.ics.crawler4j.parser.HtmlParseData;
 import edu.uci.ics.crawler4j.parser.ParseData;
 import edu.uci.ics.crawler4j.parser.Parser;
+import edu.uci.ics.crawler4j.robotstxt.ParkedURLHandler;
 import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
 import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.Util;
 
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.URIUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * WebCrawler class in the Runnable class that is executed by each crawler
@@ -92,6 +108,40 @@ public class WebCrawler implements Runnable {
      */
     private Frontier frontier;
 
+    /**
+     * The cache validators of previously fetched pages. It is null unless
+     * conditional fetching is enabled.
+     */
+    private ValidatorsDB validatorsDB;
+
+    /**
+     * The permanent redirects seen so far. It is null unless caching of
+     * permanent redirects is enabled.
+     */
+    private RedirectsDB redirectsDB;
+
+    /**
+     * The fetch of the shared fetch service held by the page being fetched, if
+     * the crawl uses one.
+     */
+    private FetchService.Slot fetchSlot;
+
+    /**
+     * Schedules or drops the outgoing urls which were waiting for the
+     * robots.txt of their host.
+     */
+    private final ParkedURLHandler parkedURLHandler = new ParkedURLHandler() {
+        @Override
+        public void allowed(WebURL url) {
+            frontier.releaseParked(url);
+        }
+
+        @Override
+        public void disallowed(WebURL url) {
+            frontier.dropParked(url);
+        }
+    };
+
     /**
      * Is the current crawler instance waiting for new URLs? This field is
      * mainly used by the controller to detect whether all of the crawler
@@ -112,6 +162,8 @@ public class WebCrawler implements Runnable {
         this.robotstxtServer = crawlController.getRobotstxtServer();
         this.docIdServer = crawlController.getDocIdServer();
         this.frontier = crawlController.getFrontier();
+        this.validatorsDB = crawlController.getValidatorsDB();
+        this.redirectsDB = crawlController.getRedirectsDB();
         this.parser = new Parser(crawlController.getConfig());
         this.myController = crawlController;
         this.isWaitingForNewURLs = false;
@@ -185,6 +237,18 @@ public class WebCrawler implements Runnable {
         // Sub-classed can override this to add their custom functionality
     }
 
+    /**
+     * This function is called if a conditional fetch of a page returned 304
+     * (Not Modified), which means the page has not changed since the previous
+     * crawl. Such pages are neither downloaded nor parsed.
+     *
+     * @param webUrl
+     */
+    protected void onPageNotModified(WebURL webUrl) {
+        // Do nothing by default
+        // Sub-classed can override this to add their custom functionality
+    }
+
     /**
      * This function is called once the header of a page is fetched and the status is a re-direction.
      * It can be overwritten by sub-classes to perform custom logic
@@ -221,10 +285,16 @@ public class WebCrawler implements Runnable {
                     e.printStackTrace();
                 }
             } else {
-                for (WebURL curURL : assignedURLs) {
+                Set<HttpHost> prewarmedHosts = new HashSet<>();
+                for (int i = 0; i < assignedURLs.size(); i++) {
+                    WebURL curURL = assignedURLs.get(i);
+                    prewarmAhead(assignedURLs, i + 1, prewarmedHosts);
                     if (curURL != null) {
-                        processPage(curURL);
-                        frontier.setProcessed(curURL);
+                        if (processPage(curURL)) {
+                            frontier.setProcessed(curURL);
+                        } else {
+                            frontier.setRescheduled(curURL);
+                        }
                     }
                     if (myController.isShuttingDown()) {
                         logger.info("Exiting because of controller shutdown.");
@@ -260,103 +330,151 @@ public class WebCrawler implements Runnable {
         // Sub-classed can override this to add their custom functionality
     }
 
-    private void processPage(WebURL curURL) {
+    /**
+     * Fetches, parses and visits the given url.
+     *
+     * @return false if the url was put back into the frontier to be fetched
+     * later, so it is not processed yet
+     */
+    private boolean processPage(WebURL curURL) {
         if (curURL == null) {
-            return;
+            return true;
         }
+        CrawlConfig config = myController.getConfig();
+        // The url taken from the frontier, as opposed to a redirect target
+        WebURL dequeuedURL = curURL;
         PageFetchResult fetchResult = null;
         try {
-            fetchResult = pageFetcher.fetchHeader(curURL);
+            fetchResult = fetchHeader(curURL);
             int statusCode = fetchResult.getStatusCode();
+            if (statusCode == CustomFetchStatus.FetchDeferred) {
+                frontier.scheduleDeferred(curURL, fetchResult.getDeferredUntil());
+                return false;
+            }
             handlePageStatusCode(curURL, statusCode, CustomFetchStatus.getStatusDescription(statusCode));
-            if (statusCode != HttpStatus.SC_OK) {
-                if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY) {
-                    if (myController.getConfig().isFollowRedirects()) {
-                        String movedToUrl = fetchResult.getMovedToUrl();
-                        handlePageRedirection(curURL, movedToUrl, statusCode, CustomFetchStatus.getStatusDescription(statusCode));
-                        if (movedToUrl == null) {
-                            return;
-                        }
-                        int newDocId = docIdServer.getDocId(movedToUrl);
-                        if (newDocId > 0) {
-                            // Redirect page is already seen
-                            return;
-                        }
 
-                        WebURL webURL = new WebURL();
-                        webURL.setURL(movedToUrl);
-                        webURL.setParentDocid(curURL.getParentDocid());
-                        webURL.setParentUrl(curURL.getParentUrl());
-                        webURL.setDepth(curURL.getDepth());
-                        webURL.setDocid(-1);
-                        webURL.setAnchor(curURL.getAnchor());
-                        if (shouldVisit(webURL) && robotstxtServer.allows(webURL)) {
-                            webURL.setDocid(docIdServer.getNewDocID(movedToUrl));
-                            frontier.schedule(webURL);
-                        }
-                    }
+            // Redirects are followed right away, up to maxRedirects hops. Every
+            // hop gets a docid before it is fetched, so a redirect loop ends
+            // as soon as it reaches a URL of the chain for the second time.
+            int redirects = 0;
+            while (isRedirect(statusCode) && config.isFollowRedirects()) {
+                String movedToUrl = fetchResult.getMovedToUrl();
+                handlePageRedirection(curURL, movedToUrl, statusCode, CustomFetchStatus.getStatusDescription(statusCode));
+                if (movedToUrl == null) {
+                    return true;
+                }
+                if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY && redirectsDB != null) {
+                    redirectsDB.put(curURL.getURL(), movedToUrl);
+                }
+                if (docIdServer.getDocId(movedToUrl) > 0) {
+                    // Redirect page is already seen
+                    return true;
+                }
+
+                WebURL webURL = new WebURL();
+                webURL.setURL(movedToUrl);
+                webURL.setParentDocid(curURL.getParentDocid());
+                webURL.setParentUrl(curURL.getParentUrl());
+                webURL.setDepth(curURL.getDepth());
+                webURL.setDocid(-1);
+                webURL.setAnchor(curURL.getAnchor());
+                if (!shouldVisit(webURL) || !robotstxtServer.allows(webURL)) {
+                    return true;
+                }
+                if (config.getMaxRedirects() == 0) {
+                    webURL.setDocid(docIdServer.getNewDocID(movedToUrl));
+                    frontier.schedule(webURL);
+                    return true;
+                }
+                if (redirects == config.getMaxRedirects()) {
+                    logger.info("Too many redirects, stopped at: " + movedToUrl + " while fetching " + curURL.getURL());
+                    return true;
+                }
+                webURL.setDocid(docIdServer.getNewDocID(movedToUrl));
+                redirects++;
+
+                fetchResult.discardContentIfNotConsumed();
+                curURL = webURL;
+                fetchResult = fetchHeader(curURL);
+                statusCode = fetchResult.getStatusCode();
+                if (statusCode == CustomFetchStatus.FetchDeferred) {
+                    frontier.scheduleDeferred(curURL, fetchResult.getDeferredUntil());
+                    return true;
+                }
+                handlePageStatusCode(curURL, statusCode, CustomFetchStatus.getStatusDescription(statusCode));
+            }
+
+            if (statusCode != HttpStatus.SC_OK) {
+                if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+                    // The page is not parsed again, but its links may lead to
+                    // pages which this crawl has not seen yet
+                    scheduleStoredOutgoingUrls(curURL);
+                    onPageNotModified(curURL);
                 } else if (fetchResult.getStatusCode() == CustomFetchStatus.PageTooBig) {
                     logger.info("Skipping a page which was bigger than max allowed size: " + curURL.getURL());
+                } else if (isAbortedFetch(statusCode)) {
+                    countAbortedFetch(fetchResult);
+                } else if (isTransientFailure(statusCode)) {
+                    return !scheduleRetry(curURL, fetchResult) || curURL != dequeuedURL;
                 }
-                return;
+                return true;
             }
 
             if (!curURL.getURL().equals(fetchResult.getFetchedUrl())) {
                 if (docIdServer.isSeenBefore(fetchResult.getFetchedUrl())) {
                     // Redirect page is already seen
-                    return;
+                    return true;
                 }
                 curURL.setURL(fetchResult.getFetchedUrl());
                 curURL.setDocid(docIdServer.getNewDocID(fetchResult.getFetchedUrl()));
             }
 
             Page page = new Page(curURL);
-            int docid = curURL.getDocid();
 
-            if (!fetchResult.fetchContent(page)) {
-                onContentFetchError(curURL);
-                return;
+            boolean parsed;
+            if (shouldStreamContent(fetchResult)) {
+                // The page is parsed while it is being downloaded, so a failed
+                // download only shows up once the parser is done with it.
+                InputStream content = fetchResult.openContent(page, config.getMaxDownloadSize(),
+                        config.isRetainStreamedContent());
+                parsed = parser.parseHtml(page, content, curURL.getURL());
+                if (fetchResult.getStatusCode() != HttpStatus.SC_OK) {
+                    return !handleContentFetchFailure(curURL, fetchResult) || curURL != dequeuedURL;
+                }
+            } else {
+                if (!fetchResult.fetchContent(page, config.getMaxDownloadSize())) {
+                    return !handleContentFetchFailure(curURL, fetchResult) || curURL != dequeuedURL;
+                }
+                parsed = parser.parse(page, curURL.getURL());
             }
 
-            if (!parser.parse(page, curURL.getURL())) {
+            // Parsing and visiting don't hold up the fetches of other crawls
+            releaseFetchSlot();
+
+            if (!parsed) {
+                // Without validators the next crawl fetches and parses it again
+                storeValidators(curURL, null, null);
                 onParseError(curURL);
-                return;
+                return true;
             }
 
+            List<String> outgoingUrls = new ArrayList<>();
             ParseData parseData = page.getParseData();
             if (parseData instanceof HtmlParseData) {
-                HtmlParseData htmlParseData = (HtmlParseData) parseData;
-
-                List<WebURL> toSchedule = new ArrayList<>();
-                int maxCrawlDepth = myController.getConfig().getMaxDepthOfCrawling();
-                for (WebURL webURL : htmlParseData.getOutgoingUrls()) {
-                    webURL.setParentDocid(docid);
-                    webURL.setParentUrl(curURL.getURL());
-                    int newdocid = docIdServer.getDocId(webURL.getURL());
-                    if (newdocid > 0) {
-                        // This is not the first time that this Url is
-                        // visited. So, we set the depth to a negative
-                        // number.
-                        webURL.setDepth((short) -1);
-                        webURL.setDocid(newdocid);
-                    } else {
-                        webURL.setDocid(-1);
-                        webURL.setDepth((short) (curURL.getDepth() + 1));
-                        if (maxCrawlDepth == -1 || curURL.getDepth() < maxCrawlDepth) {
-                            if (shouldVisit(webURL) && robotstxtServer.allows(webURL)) {
-                                webURL.setDocid(docIdServer.getNewDocID(webURL.getURL()));
-                                toSchedule.add(webURL);
-                            }
-                        }
-                    }
+                List<WebURL> links = ((HtmlParseData) parseData).getOutgoingUrls();
+                scheduleOutgoingUrls(curURL, links);
+                for (WebURL webURL : links) {
+                    outgoingUrls.add(webURL.getURL());
                 }
-                frontier.scheduleAll(toSchedule);
             }
+            FetchValidators validators = FetchValidators.fromHeaders(fetchResult.getResponseHeaders());
             try {
                 visit(page);
             } catch (Exception e) {
+                validators = null;
                 logger.error("Exception while running the visit method. Message: '" + e.getMessage() + "' at " + e.getStackTrace()[0]);
             }
+            storeValidators(curURL, validators, outgoingUrls);
 
         } catch (Exception e) {
             logger.error(e.getMessage() + ", while processing: " + curURL.getURL());
@@ -364,6 +482,261 @@ public class WebCrawler implements Runnable {
             if (fetchResult != null) {
                 fetchResult.discardContentIfNotConsumed();
             }
+            releaseFetchSlot();
+        }
+        return true;
+    }
+
+    /**
+     * Schedules the outgoing urls of the given page which are new, and which
+     * the crawl should visit.
+     */
+    private void scheduleOutgoingUrls(WebURL curURL, List<WebURL> outgoingUrls) {
+        CrawlConfig config = myController.getConfig();
+        List<WebURL> toSchedule = new ArrayList<>();
+        int maxCrawlDepth = config.getMaxDepthOfCrawling();
+        for (WebURL webURL : outgoingUrls) {
+            webURL.setParentDocid(curURL.getDocid());
+            webURL.setParentUrl(curURL.getURL());
+            if (redirectsDB != null) {
+                String movedToUrl = redirectsDB.resolve(webURL.getURL(), config.getMaxRedirects());
+                if (movedToUrl != null) {
+                    webURL.setURL(movedToUrl);
+                }
+            }
+            int newdocid = docIdServer.getDocId(webURL.getURL());
+            if (newdocid > 0) {
+                // This is not the first time that this Url is
+                // visited. So, we set the depth to a negative
+                // number.
+                webURL.setDepth((short) -1);
+                webURL.setDocid(newdocid);
+            } else {
+                webURL.setDocid(-1);
+                webURL.setDepth((short) (curURL.getDepth() + 1));
+                if (maxCrawlDepth == -1 || curURL.getDepth() < maxCrawlDepth) {
+                    if (shouldVisit(webURL)) {
+                        scheduleIfAllowed(webURL, toSchedule);
+                    }
+                }
+            }
+        }
+        frontier.scheduleAll(toSchedule);
+    }
+
+    /**
+     * Schedules the outgoing urls stored with the validators of a page which
+     * was not modified since the crawl that stored them.
+     */
+    private void scheduleStoredOutgoingUrls(WebURL curURL) {
+        List<String> urls = (validatorsDB == null) ? null : validatorsDB.getOutgoingUrls(curURL.getURL());
+        if (urls == null || urls.isEmpty()) {
+            return;
+        }
+        List<WebURL> outgoingUrls = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            WebURL webURL = new WebURL();
+            webURL.setURL(url);
+            outgoingUrls.add(webURL);
+        }
+        scheduleOutgoingUrls(curURL, outgoingUrls);
+    }
+
+    /**
+     * Stores the validators of a page which was parsed and visited, with its
+     * outgoing urls, or removes them if validators is null.
+     */
+    private void storeValidators(WebURL curURL, FetchValidators validators, List<String> outgoingUrls) {
+        if (validatorsDB != null) {
+            validatorsDB.put(curURL.getURL(), validators, outgoingUrls);
+        }
+    }
+
+    /**
+     * Adds the given new url to toSchedule if the robots.txt of its host
+     * allows it. If that robots.txt has not been fetched yet, the url is
+     * parked instead of waiting for it, and scheduled later by a robots.txt
+     * prefetch thread. The docid is only taken once the url is allowed.
+     */
+    private void scheduleIfAllowed(WebURL webURL, List<WebURL> toSchedule) {
+        if (!frontier.park(webURL)) {
+            // Another link to the same url is already waiting
+            return;
+        }
+        switch (robotstxtServer.allowsOrPark(webURL, parkedURLHandler)) {
+            case ALLOWED:
+                // Kept parked until it has its docid, so that other links to
+                // it are not scheduled twice
+                if (!docIdServer.isSeenBefore(webURL.getURL())) {
+                    webURL.setDocid(docIdServer.getNewDocID(webURL.getURL()));
+                    toSchedule.add(webURL);
+                }
+                frontier.dropParked(webURL);
+                break;
+            case DISALLOWED:
+                frontier.dropParked(webURL);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Asks the fetcher to open connections to the next distinct hosts of the
+     * assigned urls, starting at the given index, while the current url is
+     * being processed.
+     */
+    private void prewarmAhead(List<WebURL> assignedURLs, int fromIndex, Set<HttpHost> prewarmedHosts) {
+        int prewarmHosts = myController.getConfig().getPrewarmHosts();
+        if (prewarmHosts == 0) {
+            return;
+        }
+        Set<HttpHost> upcomingHosts = new HashSet<>();
+        for (int i = fromIndex; i < assignedURLs.size() && upcomingHosts.size() < prewarmHosts; i++) {
+            WebURL webURL = assignedURLs.get(i);
+            if (webURL == null) {
+                continue;
+            }
+            HttpHost host = targetOf(webURL.getURL());
+            if (host != null && upcomingHosts.add(host) && prewarmedHosts.add(host)) {
+                pageFetcher.prewarm(webURL);
+            }
+        }
+    }
+
+    /**
+     * Returns the scheme, host and port a url is fetched from, with the default
+     * port of the scheme filled in, so that urls fetched over the same
+     * connections have the same target. Returns null for an invalid url.
+     */
+    private static HttpHost targetOf(String url) {
+        HttpHost host;
+        try {
+            host = URIUtils.extractHost(new URI(url));
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        if (host == null || host.getPort() != -1) {
+            return host;
+        }
+        int port = "https".equalsIgnoreCase(host.getSchemeName()) ? 443 : 80;
+        return new HttpHost(host.getHostName(), port, host.getSchemeName());
+    }
+
+    /**
+     * Waits for the turn of the host of the given url, then for a fetch of the
+     * shared fetch service if the crawl uses one, and fetches the header. The
+     * fetch slot of the crawl is not held while it waits for the host.
+     */
+    private PageFetchResult fetchHeader(WebURL webUrl) throws InterruptedException {
+        releaseFetchSlot();
+        long deferredUntil = pageFetcher.waitForTurn(webUrl, myController.getConfig().getMaxPolitenessWait());
+        if (deferredUntil > 0) {
+            PageFetchResult deferred = new PageFetchResult();
+            deferred.setStatusCode(CustomFetchStatus.FetchDeferred);
+            deferred.setDeferredUntil(deferredUntil);
+            return deferred;
+        }
+        if (myController.getFetchShare() != null) {
+            fetchSlot = myController.getFetchShare().acquire();
+        }
+        return pageFetcher.fetchHeaderNow(webUrl, getValidators(webUrl));
+    }
+
+    private void releaseFetchSlot() {
+        if (fetchSlot != null) {
+            fetchSlot.release();
+            fetchSlot = null;
+        }
+    }
+
+    private FetchValidators getValidators(WebURL webUrl) {
+        if (validatorsDB == null) {
+            return null;
+        }
+        return validatorsDB.get(webUrl.getURL());
+    }
+
+    private static boolean isRedirect(int statusCode) {
+        return statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY
+                || statusCode == HttpStatus.SC_SEE_OTHER || statusCode == HttpStatus.SC_TEMPORARY_REDIRECT;
+    }
+
+    private boolean shouldStreamContent(PageFetchResult fetchResult) {
+        CrawlConfig config = myController.getConfig();
+        if (!config.isStreamingParsing() || config.isLightweightHtmlParsing()) {
+            // The lightweight scanner needs the whole page, and it is cheaper
+            // to load it in one buffer than to grow one while streaming
+            return false;
+        }
+        // Only HTML is parsed from a stream; see Parser.parse
+        Header contentType = fetchResult.getEntity().getContentType();
+        String type = (contentType == null) ? null : contentType.getValue();
+        return !Util.hasBinaryContent(type) && !Util.hasPlainTextContent(type);
+    }
+
+    /**
+     * @return true if the url is going to be fetched again later
+     */
+    private boolean handleContentFetchFailure(WebURL curURL, PageFetchResult fetchResult) {
+        int statusCode = fetchResult.getStatusCode();
+        if (isAbortedFetch(statusCode)) {
+            countAbortedFetch(fetchResult);
+            handlePageStatusCode(curURL, statusCode, CustomFetchStatus.getStatusDescription(statusCode));
+            return false;
+        }
+        onContentFetchError(curURL);
+        return statusCode == CustomFetchStatus.FatalTransportError && scheduleRetry(curURL, fetchResult);
+    }
+
+    private static boolean isTransientFailure(int statusCode) {
+        return statusCode == CustomFetchStatus.FatalTransportError || statusCode == 429
+                || (statusCode >= 500 && statusCode < 600);
+    }
+
+    /**
+     * @return true if the url was put into the retry queue, false if it has
+     * no retries left
+     */
+    private boolean scheduleRetry(WebURL curURL, PageFetchResult fetchResult) {
+        long minDelay = 0;
+        if (fetchResult.getResponseHeaders() != null) {
+            for (Header header : fetchResult.getResponseHeaders()) {
+                if (header.getName().equalsIgnoreCase("Retry-After")) {
+                    try {
+                        minDelay = Long.parseLong(header.getValue().trim()) * 1000;
+                    } catch (NumberFormatException ignored) {
+                        // HTTP-dates are not supported, the default back-off is used
+                    }
+                }
+            }
+        }
+        if (frontier.scheduleRetry(curURL, minDelay)) {
+            logger.debug("Scheduled retry #" + curURL.getRetryCount() + " of: " + curURL.getURL());
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isAbortedFetch(int statusCode) {
+        return statusCode == CustomFetchStatus.PageTooBigWhileDownloading
+                || statusCode == CustomFetchStatus.FetchDeadlineExceeded
+                || statusCode == CustomFetchStatus.DownloadTooSlow;
+    }
+
+    private void countAbortedFetch(PageFetchResult fetchResult) {
+        Counters counters = frontier.getCounters();
+        switch (fetchResult.getStatusCode()) {
+            case CustomFetchStatus.PageTooBigWhileDownloading:
+                counters.increment(ReservedCounterNames.ABORTED_OVERSIZED_PAGES);
+                counters.increment(ReservedCounterNames.ABORTED_OVERSIZED_BYTES, fetchResult.getDiscardedBytes());
+                break;
+            case CustomFetchStatus.FetchDeadlineExceeded:
+                counters.increment(ReservedCounterNames.ABORTED_DEADLINE_EXCEEDED);
+                break;
+            case CustomFetchStatus.DownloadTooSlow:
+                counters.increment(ReservedCounterNames.ABORTED_TOO_SLOW);
+                break;
         }
     }
 
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate at which page bodies are downloaded, over all fetches and
+ * per host. A read which goes over a limit puts the reading thread to sleep
+ * for as long as it takes the bucket to pay off the debt.
+ */
+public class BandwidthLimiter {
+
+    /**
+     * Number of per-host buckets after which idle ones are dropped.
+     */
+    private static final int HOST_BUCKETS_CLEANUP_THRESHOLD = 1000;
+
+    private final TokenBucket globalBucket;
+    private final long bytesPerSecondPerHost;
+    private final ConcurrentMap<String, TokenBucket> hostBuckets = new ConcurrentHashMap<>();
+
+    private volatile int cleanupThreshold = HOST_BUCKETS_CLEANUP_THRESHOLD;
+
+    public BandwidthLimiter(CrawlConfig config) {
+        this(config.getMaxBytesPerSecond(), config.getMaxBytesPerSecondPerHost());
+    }
+
+    /**
+     * @param bytesPerSecond        the limit over all fetches, or 0 for none
+     * @param bytesPerSecondPerHost the limit for each host, or 0 for none
+     */
+    public BandwidthLimiter(long bytesPerSecond, long bytesPerSecondPerHost) {
+        this.globalBucket = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond) : null;
+        this.bytesPerSecondPerHost = bytesPerSecondPerHost;
+    }
+
+    /**
+     * Wraps the body stream of a fetch from the given host so that reading it
+     * is throttled. Time spent throttled is reported to the watch of the
+     * fetch, if any, so it does not count against the minimum throughput.
+     */
+    public InputStream wrap(InputStream in, String host, final FetchWatch watch) {
+        final TokenBucket hostBucket = getHostBucket(host);
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    throttle(hostBucket, 1, watch);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    throttle(hostBucket, n, watch);
+                }
+                return n;
+            }
+        };
+    }
+
+    private TokenBucket getHostBucket(String host) {
+        if (bytesPerSecondPerHost <= 0 || host == null) {
+            return null;
+        }
+        TokenBucket bucket = hostBuckets.get(host);
+        if (bucket == null) {
+            bucket = new TokenBucket(bytesPerSecondPerHost);
+            TokenBucket existing = hostBuckets.putIfAbsent(host, bucket);
+            if (existing != null) {
+                return existing;
+            }
+            if (hostBuckets.size() > cleanupThreshold) {
+                removeIdleHostBuckets();
+            }
+        }
+        return bucket;
+    }
+
+    private synchronized void removeIdleHostBuckets() {
+        if (hostBuckets.size() <= cleanupThreshold) {
+            return;
+        }
+        Iterator<TokenBucket> iterator = hostBuckets.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isFull()) {
+                iterator.remove();
+            }
+        }
+        // Hosts which are all still active don't trigger a cleanup on every
+        // new host.
+        cleanupThreshold = Math.max(HOST_BUCKETS_CLEANUP_THRESHOLD, hostBuckets.size() * 2);
+    }
+
+    private void throttle(TokenBucket hostBucket, int bytes, FetchWatch watch) throws InterruptedIOException {
+        long wait = 0;
+        if (globalBucket != null) {
+            wait = globalBucket.take(bytes);
+        }
+        if (hostBucket != null) {
+            wait = Math.max(wait, hostBucket.take(bytes));
+        }
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(wait);
+        if (waitMillis > 0) {
+            try {
+                Thread.sleep(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+            if (watch != null) {
+                watch.addThrottledTime(waitMillis);
+            }
+        }
+    }
+}
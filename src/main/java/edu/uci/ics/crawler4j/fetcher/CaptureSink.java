@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Receives the responses of a crawl as they come off the wire, for archiving.
+ * Each response is written to its own channel: a record header with the
+ * {@code URL} and the {@code Fetch-Date} of the response, followed by an empty
+ * line, then the status line and headers, followed by the body in its content
+ * encoding, without decompressing it. The channel is passed to
+ * {@link #close(WritableByteChannel, boolean)} once the fetch of the response
+ * is finished.
+ * <p/>
+ * Implementations must be thread-safe, since all crawler threads open
+ * channels concurrently.
+ *
+ * @see PageFetcher#setCaptureSink(CaptureSink)
+ */
+public interface CaptureSink {
+
+    /**
+     * Opens the channel the response for the given url is written to.
+     *
+     * @return the channel, or null if this response should not be captured
+     */
+    WritableByteChannel open(WebURL url) throws IOException;
+
+    /**
+     * Closes a channel opened by {@link #open(WebURL)}.
+     *
+     * @param complete false if the record lacks part of the body, because the
+     *                 fetch was aborted or the body couldn't be read or
+     *                 written to the end
+     */
+    void close(WritableByteChannel channel, boolean complete) throws IOException;
+}
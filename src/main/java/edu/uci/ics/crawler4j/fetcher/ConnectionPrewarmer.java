@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.ClientParamsStack;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.BasicHttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens connections to hosts that are about to be fetched, in the background,
+ * and leaves them in the connection pool. The first fetch of such a host then
+ * does not have to wait for DNS resolution, the TCP handshake and, for HTTPS,
+ * the TLS handshake.
+ */
+public class ConnectionPrewarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPrewarmer.class);
+
+    /**
+     * How long a prewarmed connection is kept in the pool if it is not used.
+     */
+    private static final long PREWARMED_CONNECTION_TTL = 15000;
+
+    private final DefaultHttpClient httpClient;
+    private final PoolingClientConnectionManager connectionManager;
+    private final int connectionTimeout;
+    private final ThreadPoolExecutor executor;
+
+    private final Set<HttpRoute> warming = Collections.newSetFromMap(new ConcurrentHashMap<HttpRoute, Boolean>());
+    private final AtomicLong warmedConnections = new AtomicLong();
+
+    public ConnectionPrewarmer(DefaultHttpClient httpClient, PoolingClientConnectionManager connectionManager,
+                               int threads, int connectionTimeout) {
+        this.httpClient = httpClient;
+        this.connectionManager = connectionManager;
+        this.connectionTimeout = connectionTimeout;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        // Requests beyond what the threads can keep up with are dropped: a
+        // connection opened after the fetch has started is of no use.
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 4), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Connection Prewarmer " + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.DiscardPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Opens a connection to the host of the given url in the background,
+     * unless the pool already has one.
+     */
+    public void prewarm(String url) {
+        final HttpRoute route;
+        try {
+            URI uri = new URI(url);
+            HttpHost target = URIUtils.extractHost(uri);
+            if (target == null) {
+                return;
+            }
+            HttpGet request = new HttpGet(uri);
+            request.setParams(new ClientParamsStack(null, httpClient.getParams(), request.getParams(), null));
+            route = httpClient.getRoutePlanner().determineRoute(target, request, new BasicHttpContext());
+        } catch (Exception e) {
+            logger.debug("Can not prewarm a connection for " + url + ": " + e.getMessage());
+            return;
+        }
+        if (route.isTunnelled()) {
+            // Tunnels through a proxy are set up by the client itself
+            return;
+        }
+        PoolStats stats = connectionManager.getStats(route);
+        if (stats.getAvailable() + stats.getLeased() > 0 || !warming.add(route)) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    open(route);
+                } finally {
+                    warming.remove(route);
+                }
+            }
+        });
+    }
+
+    private void open(HttpRoute route) {
+        ManagedClientConnection connection;
+        try {
+            ClientConnectionRequest request = connectionManager.requestConnection(route, null);
+            connection = request.getConnection(connectionTimeout, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.debug("Can not prewarm a connection to " + route.getTargetHost() + ": " + e.getMessage());
+            return;
+        }
+        try {
+            if (!connection.isOpen()) {
+                connection.open(route, new BasicHttpContext(), httpClient.getParams());
+                connection.markReusable();
+                warmedConnections.incrementAndGet();
+            }
+        } catch (Exception e) {
+            logger.debug("Can not prewarm a connection to " + route.getTargetHost() + ": " + e.getMessage());
+        } finally {
+            // A connection which was not marked reusable is closed here
+            connectionManager.releaseConnection(connection, PREWARMED_CONNECTION_TTL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the number of connections opened ahead of their first fetch.
+     */
+    public long getWarmedConnections() {
+        return warmedConnections.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.util.IO;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+
+import java.io.IOException;
+
+/**
+ * Decodes gzip and deflate encoded content with the inflaters of an
+ * {@link InflaterPool}, enforcing the configured size and compression ratio
+ * limits. Other content encodings are left as they are.
+ */
+public class ContentDecoder {
+
+    private final InflaterPool inflaterPool;
+    private final int maxDecompressedLength;
+    private final int maxCompressionRatio;
+
+    /**
+     * @param inflaterPool          the pool inflaters are taken from
+     * @param maxDecompressedLength maximum number of decompressed bytes, or -1 for no limit
+     * @param maxCompressionRatio   maximum ratio of decompressed to compressed bytes, or 0 for no limit
+     */
+    public ContentDecoder(InflaterPool inflaterPool, int maxDecompressedLength, int maxCompressionRatio) {
+        this.inflaterPool = inflaterPool;
+        this.maxDecompressedLength = maxDecompressedLength;
+        this.maxCompressionRatio = maxCompressionRatio;
+    }
+
+    /**
+     * Returns an entity which decodes the content of the given entity, or the
+     * given entity itself if its content encoding is not gzip or deflate.
+     */
+    public HttpEntity decoding(HttpEntity entity) {
+        Header contentEncoding = entity.getContentEncoding();
+        if (contentEncoding != null) {
+            for (HeaderElement codec : contentEncoding.getElements()) {
+                String name = codec.getName();
+                if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                    return newDecompressingEntity(entity, true);
+                }
+                if (name.equalsIgnoreCase("deflate")) {
+                    return newDecompressingEntity(entity, false);
+                }
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Decodes content which was received with the given content encoding.
+     * The content is returned as it is if the encoding is not gzip or deflate.
+     *
+     * @throws IOException if the content is corrupt or exceeds the limits
+     */
+    public byte[] decode(byte[] content, String contentEncoding) throws IOException {
+        ByteArrayEntity entity = new ByteArrayEntity(content);
+        entity.setContentEncoding(contentEncoding);
+        HttpEntity decoded = decoding(entity);
+        if (decoded == entity) {
+            return content;
+        }
+        return IO.toByteArray(decoded, maxDecompressedLength);
+    }
+
+    private HttpEntity newDecompressingEntity(HttpEntity entity, boolean gzip) {
+        return new DecompressingEntity(entity, gzip, inflaterPool, maxDecompressedLength, maxDecompressedLength,
+                maxCompressionRatio);
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+/**
+ * Tells the delay a host asked for between two requests, for example with the
+ * Crawl-delay directive of its robots.txt file.
+ *
+ * @see HostPoliteness
+ */
+public interface CrawlDelayProvider {
+
+    /**
+     * Returns the delay in milliseconds the given host asked for, or -1 if it
+     * did not ask for one or it is not known yet. This is called before every
+     * fetch, so it must not block.
+     */
+    long getCrawlDelay(String host);
+}
@@ -25,8 +25,15 @@ import org.apache.http.HttpStatus;
 public class CustomFetchStatus {
 
     public static final int PageTooBig = 1001;
+    public static final int PageTooBigWhileDownloading = 1002;
+    public static final int FetchDeadlineExceeded = 1003;
+    public static final int DownloadTooSlow = 1004;
     public static final int FatalTransportError = 1005;
     public static final int UnknownError = 1006;
+    public static final int ContentTypeNotAllowed = 1007;
+    public static final int NoProxyAvailable = 1008;
+    public static final int NoLocalAddressAvailable = 1009;
+    public static final int FetchDeferred = 1010;
 
     public static String getStatusDescription(int code) {
         switch (code) {
@@ -92,10 +99,24 @@ public class CustomFetchStatus {
                 return "Request Timeout";
             case PageTooBig:
                 return "Page size was too big";
+            case PageTooBigWhileDownloading:
+                return "Page size exceeded max-download-size while downloading";
+            case FetchDeadlineExceeded:
+                return "Fetch exceeded max-fetch-duration";
+            case DownloadTooSlow:
+                return "Download was slower than min-download-throughput";
             case FatalTransportError:
                 return "Fatal transport error";
             case UnknownError:
                 return "Unknown error";
+            case ContentTypeNotAllowed:
+                return "Content type is not allowed";
+            case NoProxyAvailable:
+                return "No proxy was available";
+            case NoLocalAddressAvailable:
+                return "No local address was available";
+            case FetchDeferred:
+                return "Fetch deferred until the host may be fetched again";
             default:
                 return "(" + code + ")";
         }
@@ -0,0 +1,308 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a gzip or deflate encoded entity using inflaters from an
+ * {@link InflaterPool}. While the content is read, both the compressed and
+ * the decompressed byte counts are checked against a maximum, and so is the
+ * compression ratio, so that a compression bomb is detected long before it
+ * is fully inflated.
+ * <p/>
+ * The CRC32 and length in the trailer of each gzip member are checked, and a
+ * gzip stream made of several members is decompressed as a whole.
+ */
+public class DecompressingEntity extends HttpEntityWrapper {
+
+    /**
+     * The compression ratio is only checked once this many bytes have been
+     * decompressed, as small pages can have a high ratio.
+     */
+    private static final int RATIO_CHECK_THRESHOLD = 64 * 1024;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final boolean gzip;
+    private final InflaterPool inflaterPool;
+    private final long maxCompressedLength;
+    private final long maxDecompressedLength;
+    private final int maxCompressionRatio;
+
+    /**
+     * @param entity                the compressed entity
+     * @param gzip                  true for gzip encoding, false for deflate
+     * @param inflaterPool          the pool inflaters are taken from
+     * @param maxCompressedLength   maximum number of compressed bytes to read, or -1 for no limit
+     * @param maxDecompressedLength maximum number of decompressed bytes to return, or -1 for no limit
+     * @param maxCompressionRatio   maximum ratio of decompressed to compressed bytes, or 0 for no limit
+     */
+    public DecompressingEntity(HttpEntity entity, boolean gzip, InflaterPool inflaterPool, long maxCompressedLength,
+                               long maxDecompressedLength, int maxCompressionRatio) {
+        super(entity);
+        this.gzip = gzip;
+        this.inflaterPool = inflaterPool;
+        this.maxCompressedLength = maxCompressedLength;
+        this.maxDecompressedLength = maxDecompressedLength;
+        this.maxCompressionRatio = maxCompressionRatio;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        CountingInputStream compressed = new CountingInputStream(wrappedEntity.getContent());
+        boolean nowrap;
+        InputStream in;
+        if (gzip) {
+            readGzipHeader(compressed);
+            nowrap = true;
+            in = compressed;
+        } else {
+            // Some servers send raw deflate data instead of the zlib format
+            // required by the HTTP spec, so look at the first two bytes.
+            PushbackInputStream pushback = new PushbackInputStream(compressed, 2);
+            int cmf = pushback.read();
+            int flg = pushback.read();
+            if (flg != -1) {
+                pushback.unread(flg);
+            }
+            if (cmf != -1) {
+                pushback.unread(cmf);
+            }
+            nowrap = !(cmf != -1 && flg != -1 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0);
+            in = pushback;
+        }
+        return new LimitedInflaterInputStream(in, compressed, nowrap);
+    }
+
+    @Override
+    public long getContentLength() {
+        // length of decompressed content is not known
+        return -1;
+    }
+
+    private static void readGzipHeader(InputStream in) throws IOException {
+        if (readByte(in) != 0x1f || readByte(in) != 0x8b) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (readByte(in) != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = readByte(in);
+        // Skip modification time, extra flags and operating system
+        skipBytes(in, 6);
+        if ((flags & FEXTRA) != 0) {
+            int length = readByte(in) | (readByte(in) << 8);
+            skipBytes(in, length);
+        }
+        if ((flags & FNAME) != 0) {
+            while (readByte(in) != 0) {
+                // skip the file name
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (readByte(in) != 0) {
+                // skip the comment
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            skipBytes(in, 2);
+        }
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("Unexpected end of GZIP header");
+        }
+        return b;
+    }
+
+    private static long readTrailerInt(InputStream in) throws IOException {
+        long value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Unexpected end of GZIP trailer");
+            }
+            value |= (long) b << (i * 8);
+        }
+        return value;
+    }
+
+    private static void skipBytes(InputStream in, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readByte(in);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    private class LimitedInflaterInputStream extends InflaterInputStream {
+
+        private final CountingInputStream compressed;
+        private final boolean nowrap;
+        private final CRC32 crc = gzip ? new CRC32() : null;
+        private long decompressedBytes = 0;
+        private boolean released = false;
+        private boolean eof = false;
+        private boolean closed = false;
+
+        LimitedInflaterInputStream(InputStream in, CountingInputStream compressed, boolean nowrap) {
+            super(in, inflaterPool.borrow(nowrap), 4096);
+            this.compressed = compressed;
+            this.nowrap = nowrap;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (eof) {
+                return -1;
+            }
+            if (released) {
+                // The content was rejected, there is nothing more to read
+                throw new IOException("Stream closed");
+            }
+            int n = super.read(b, off, len);
+            while (n == -1) {
+                if (!gzip || !readTrailer()) {
+                    eof = true;
+                    release();
+                    return -1;
+                }
+                n = super.read(b, off, len);
+            }
+            if (crc != null) {
+                crc.update(b, off, n);
+            }
+            decompressedBytes += n;
+            long compressedBytes = compressed.getCount();
+            if (maxCompressedLength != -1 && compressedBytes > maxCompressedLength) {
+                release();
+                throw new PageBiggerThanMaxSizeException(compressedBytes);
+            }
+            if (maxDecompressedLength != -1 && decompressedBytes > maxDecompressedLength) {
+                release();
+                throw new PageBiggerThanMaxSizeException(decompressedBytes);
+            }
+            if (maxCompressionRatio > 0 && decompressedBytes > RATIO_CHECK_THRESHOLD
+                    && decompressedBytes > maxCompressionRatio * compressedBytes) {
+                release();
+                throw new PageBiggerThanMaxSizeException(compressedBytes, "Compression ratio exceeded "
+                        + maxCompressionRatio + " after decompressing " + compressedBytes + " bytes into "
+                        + decompressedBytes + " bytes");
+            }
+            return n;
+        }
+
+        /**
+         * Checks the trailer of the gzip member which was just inflated and
+         * starts on the next member, if there is one.
+         *
+         * @return true if there is another member to inflate
+         */
+        private boolean readTrailer() throws IOException {
+            // The inflater may have been given bytes past the end of the member
+            int remaining = inf.getRemaining();
+            if (remaining > 0) {
+                in = new SequenceInputStream(new ByteArrayInputStream(buf, len - remaining, remaining), in);
+            }
+            if (readTrailerInt(in) != crc.getValue()) {
+                throw new ZipException("Corrupt GZIP trailer: CRC32 mismatch");
+            }
+            if (readTrailerInt(in) != (inf.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("Corrupt GZIP trailer: length mismatch");
+            }
+
+            int next = in.read();
+            if (next != 0x1f) {
+                // Like GZIPInputStream, anything but another member after the
+                // trailer is ignored
+                return false;
+            }
+            PushbackInputStream pushback = new PushbackInputStream(in, 1);
+            pushback.unread(next);
+            in = pushback;
+            readGzipHeader(in);
+            inf.reset();
+            crc.reset();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            release();
+            super.close();
+        }
+
+        private void release() {
+            if (!released) {
+                released = true;
+                inflaterPool.release(inf, nowrap);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+
+/**
+ * A fetch engine shared by several crawls running in the same JVM. All crawls
+ * registered with it use one {@link PageFetcher} (and so one connection pool,
+ * one set of per-host politeness state and one bandwidth limiter) and one
+ * {@link RobotstxtServer}.
+ * <p>
+ * The concurrent fetches of the fetcher (max total connections of its
+ * config) are shared fairly: when crawls compete for them, none of them gets
+ * more than an equal share, while a crawl may use whatever the others leave
+ * unused.
+ */
+public class FetchService {
+
+    private final PageFetcher pageFetcher;
+    private final RobotstxtServer robotstxtServer;
+    private final int maxConcurrentFetches;
+
+    private int crawls = 0;
+    private int inFlight = 0;
+    private int waiting = 0;
+
+    /**
+     * @param config          the config of the shared fetcher; its connection,
+     *                        politeness, proxy and bandwidth settings apply to
+     *                        all registered crawls
+     * @param robotstxtConfig the config of the shared robots.txt server
+     */
+    public FetchService(CrawlConfig config, RobotstxtConfig robotstxtConfig) {
+        this.pageFetcher = new PageFetcher(config);
+        this.robotstxtServer = new RobotstxtServer(robotstxtConfig, pageFetcher);
+        this.maxConcurrentFetches = config.getMaxTotalConnections();
+    }
+
+    public PageFetcher getPageFetcher() {
+        return pageFetcher;
+    }
+
+    public RobotstxtServer getRobotstxtServer() {
+        return robotstxtServer;
+    }
+
+    /**
+     * Registers a crawl with this service.
+     *
+     * @return the share of the crawl, which it uses to take part in the fair
+     * scheduling of fetches, and unregisters once it is finished.
+     */
+    public synchronized Share register() {
+        crawls++;
+        return new Share();
+    }
+
+    private int fairShare() {
+        return Math.max(1, maxConcurrentFetches / Math.max(1, crawls));
+    }
+
+    /**
+     * Shuts down the shared fetcher. Call this once all registered crawls
+     * are finished.
+     */
+    public void shutdown() {
+        robotstxtServer.shutdown();
+        pageFetcher.shutdown();
+    }
+
+    /**
+     * The share of a single crawl in the fetches of the service.
+     */
+    public class Share {
+
+        private int inFlight = 0;
+        private int waiting = 0;
+        private boolean registered = true;
+
+        /**
+         * Waits until the crawl may start another fetch.
+         *
+         * @return a slot which must be released once the fetch is done.
+         */
+        public Slot acquire() throws InterruptedException {
+            synchronized (FetchService.this) {
+                waiting++;
+                FetchService.this.waiting++;
+                try {
+                    while (FetchService.this.inFlight >= maxConcurrentFetches
+                            || (inFlight >= fairShare() && FetchService.this.waiting > waiting)) {
+                        FetchService.this.wait();
+                    }
+                } finally {
+                    waiting--;
+                    FetchService.this.waiting--;
+                }
+                inFlight++;
+                FetchService.this.inFlight++;
+                return new Slot(this);
+            }
+        }
+
+        /**
+         * Returns the number of fetches of this crawl in flight.
+         */
+        public int getInFlight() {
+            synchronized (FetchService.this) {
+                return inFlight;
+            }
+        }
+
+        /**
+         * Removes the crawl from the service, so that its share goes to the
+         * remaining crawls.
+         */
+        public void unregister() {
+            synchronized (FetchService.this) {
+                if (registered) {
+                    registered = false;
+                    crawls--;
+                    FetchService.this.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * A fetch in flight, counted against the share of its crawl.
+     */
+    public class Slot {
+
+        private final Share share;
+        private boolean released = false;
+
+        Slot(Share share) {
+            this.share = share;
+        }
+
+        public void release() {
+            synchronized (FetchService.this) {
+                if (!released) {
+                    released = true;
+                    share.inFlight--;
+                    inFlight--;
+                    FetchService.this.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import org.apache.http.Header;
+
+/**
+ * The cache validators (ETag and Last-Modified) that a server returned for a
+ * page. They are sent back as If-None-Match and If-Modified-Since headers when
+ * the page is fetched again, so that unchanged pages can be answered with a
+ * 304 (Not Modified) response and no body.
+ */
+public class FetchValidators {
+
+    private String eTag;
+    private String lastModified;
+
+    public FetchValidators(String eTag, String lastModified) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Extracts the validators from the headers of a fetch response.
+     *
+     * @return the validators, or null if the response had neither an ETag nor a
+     * Last-Modified header.
+     */
+    public static FetchValidators fromHeaders(Header[] headers) {
+        if (headers == null) {
+            return null;
+        }
+        String eTag = null;
+        String lastModified = null;
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase("ETag")) {
+                eTag = header.getValue();
+            } else if (header.getName().equalsIgnoreCase("Last-Modified")) {
+                lastModified = header.getValue();
+            }
+        }
+        if (eTag == null && lastModified == null) {
+            return null;
+        }
+        return new FetchValidators(eTag, lastModified);
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+}
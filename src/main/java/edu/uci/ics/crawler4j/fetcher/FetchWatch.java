@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Tracks the progress of a single in-flight fetch for the
+ * {@link FetchWatchdogThread}. Bytes are counted as the body is read, and the
+ * watchdog aborts the request if it runs past its deadline or its download
+ * throughput drops too low.
+ */
+public class FetchWatch {
+
+    private final FetchWatchdogThread watchdog;
+    private final HttpUriRequest request;
+    private final long startTime;
+
+    private volatile long bytesRead = 0;
+
+    // Time the reading thread has spent throttled by the bandwidth limits.
+    // Only the reading thread adds to it.
+    private volatile long throttledTime = 0;
+
+    // Start of the current throughput window, 0 until the body is being read.
+    // Only touched by the watchdog thread after the body has started.
+    private volatile long windowStartTime = 0;
+    private long windowStartBytes = 0;
+    private long windowStartThrottledTime = 0;
+
+    private volatile int abortStatus = 0;
+
+    FetchWatch(FetchWatchdogThread watchdog, HttpUriRequest request) {
+        this.watchdog = watchdog;
+        this.request = request;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Wraps the body stream of the watched request so that the bytes read from
+     * it are counted.
+     */
+    public InputStream wrap(InputStream in) {
+        windowStartTime = System.currentTimeMillis();
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    bytesRead++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    bytesRead += n;
+                }
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Records that reading the body was held back by the bandwidth limits for
+     * the given time. Throttled time does not count against the minimum
+     * download throughput.
+     */
+    public void addThrottledTime(long millis) {
+        throttledTime += millis;
+    }
+
+    /**
+     * Stops watching this fetch. It is safe to call this more than once.
+     */
+    public void release() {
+        watchdog.unwatch(this);
+    }
+
+    /**
+     * Returns true if the watchdog has aborted this fetch.
+     */
+    public boolean isAborted() {
+        return abortStatus != 0;
+    }
+
+    /**
+     * Returns the {@link CustomFetchStatus} describing why the watchdog aborted
+     * this fetch, or 0 if it has not been aborted.
+     */
+    public int getAbortStatus() {
+        return abortStatus;
+    }
+
+    /**
+     * Returns the status this fetch should be aborted with, or 0 if it is
+     * within its limits.
+     */
+    int check(long now, long maxFetchDuration, int minThroughput, long minThroughputPeriod) {
+        if (maxFetchDuration > 0 && now - startTime > maxFetchDuration) {
+            return CustomFetchStatus.FetchDeadlineExceeded;
+        }
+        if (minThroughput > 0 && windowStartTime > 0) {
+            long throttled = throttledTime;
+            long elapsed = now - windowStartTime - (throttled - windowStartThrottledTime);
+            if (elapsed >= minThroughputPeriod) {
+                long bytes = bytesRead;
+                if ((bytes - windowStartBytes) * 1000 < (long) minThroughput * elapsed) {
+                    return CustomFetchStatus.DownloadTooSlow;
+                }
+                windowStartTime = now;
+                windowStartBytes = bytes;
+                windowStartThrottledTime = throttled;
+            }
+        }
+        return 0;
+    }
+
+    void abort(int status) {
+        abortStatus = status;
+        request.abort();
+    }
+}
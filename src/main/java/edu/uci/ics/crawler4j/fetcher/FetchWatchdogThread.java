@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aborts fetches that take longer than max-fetch-duration in total, or whose
+ * body is downloaded slower than min-download-throughput for a whole
+ * min-download-throughput-period. The socket timeout alone can not catch a
+ * server that keeps trickling a few bytes at a time.
+ */
+public class FetchWatchdogThread extends Thread {
+
+    private static final Logger logger = LoggerFactory.getLogger(FetchWatchdogThread.class);
+
+    private static final long CHECK_INTERVAL = 500;
+
+    private final long maxFetchDuration;
+    private final int minThroughput;
+    private final long minThroughputPeriod;
+
+    private final Set<FetchWatch> watches = Collections.newSetFromMap(new ConcurrentHashMap<FetchWatch, Boolean>());
+
+    private volatile boolean shutdown;
+
+    public FetchWatchdogThread(CrawlConfig config) {
+        super("Fetch Watchdog");
+        setDaemon(true);
+        this.maxFetchDuration = config.getMaxFetchDuration();
+        this.minThroughput = config.getMinDownloadThroughput();
+        this.minThroughputPeriod = config.getMinDownloadThroughputPeriod();
+    }
+
+    /**
+     * Starts watching the given request. The returned watch should be released
+     * once the fetch is complete.
+     */
+    public FetchWatch watch(HttpUriRequest request) {
+        FetchWatch watch = new FetchWatch(this, request);
+        watches.add(watch);
+        return watch;
+    }
+
+    void unwatch(FetchWatch watch) {
+        watches.remove(watch);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!shutdown) {
+                synchronized (this) {
+                    wait(CHECK_INTERVAL);
+                }
+                long now = System.currentTimeMillis();
+                for (FetchWatch watch : watches) {
+                    int status = watch.check(now, maxFetchDuration, minThroughput, minThroughputPeriod);
+                    if (status != 0) {
+                        watches.remove(watch);
+                        try {
+                            watch.abort(status);
+                        } catch (Exception e) {
+                            logger.debug("Error while aborting request: " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            // terminate
+        }
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes each captured response to its own file in a folder. Files are named
+ * {@code <docid>-<run>-<sequence>.http}, so the responses of a page can be
+ * found from the docid of its {@link WebURL}. Urls without a docid, such as
+ * robots.txt files, use {@code x} instead. The run part is different for
+ * every sink, so neither several runs over the same folder nor retries of a
+ * page overwrite earlier captures.
+ * <p/>
+ * The file of a response whose body was cut short is deleted, so that the
+ * folder only holds complete responses.
+ */
+public class FileCaptureSink implements CaptureSink {
+
+    private final File folder;
+
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * The files of the channels which are open.
+     */
+    private final Map<WritableByteChannel, File> files = new ConcurrentHashMap<>();
+
+    public FileCaptureSink(File folder) {
+        this.folder = folder;
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IllegalArgumentException("Couldn't create the capture folder: " + folder.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public WritableByteChannel open(WebURL url) throws IOException {
+        String id = (url.getDocid() > 0) ? Integer.toString(url.getDocid()) : "x";
+        while (true) {
+            File file = new File(folder, id + "-" + run + "-" + sequence.incrementAndGet() + ".http");
+            try {
+                FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE_NEW);
+                files.put(channel, file);
+                return channel;
+            } catch (FileAlreadyExistsException e) {
+                // Another sink was started in the same millisecond; the next
+                // number is tried
+            }
+        }
+    }
+
+    @Override
+    public void close(WritableByteChannel channel, boolean complete) throws IOException {
+        File file = files.remove(channel);
+        channel.close();
+        if (!complete && file != null && !file.delete()) {
+            throw new IOException("Couldn't delete the incomplete capture " + file.getAbsolutePath());
+        }
+    }
+}
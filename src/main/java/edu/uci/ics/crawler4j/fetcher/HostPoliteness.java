@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the time each host may be fetched next, so that consecutive requests
+ * to a host are at least the politeness delay apart. Every fetch through the
+ * same fetcher shares this state, no matter which crawl it belongs to.
+ * <p/>
+ * A host which asks for a longer delay, with the Crawl-delay directive of its
+ * robots.txt, gets that delay instead, within the configured floor and cap.
+ * The delay of a host never drops below the politeness delay.
+ */
+public class HostPoliteness {
+
+    /**
+     * Number of tracked hosts after which hosts that are no longer delayed are
+     * dropped.
+     */
+    private static final int CLEANUP_THRESHOLD = 10000;
+
+    private final long politenessDelay;
+    private final long minCrawlDelay;
+    private final long maxCrawlDelay;
+
+    private volatile CrawlDelayProvider crawlDelayProvider;
+    private final ConcurrentMap<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    private volatile int cleanupThreshold = CLEANUP_THRESHOLD;
+
+    public HostPoliteness(long politenessDelay) {
+        this(politenessDelay, 0, 0);
+    }
+
+    /**
+     * @param politenessDelay the delay between two requests to a host
+     * @param minCrawlDelay   the floor applied to the delays hosts ask for
+     * @param maxCrawlDelay   the cap applied to the delays hosts ask for, or 0
+     *                        to ignore them
+     */
+    public HostPoliteness(long politenessDelay, long minCrawlDelay, long maxCrawlDelay) {
+        this.politenessDelay = politenessDelay;
+        this.minCrawlDelay = minCrawlDelay;
+        this.maxCrawlDelay = maxCrawlDelay;
+    }
+
+    /**
+     * Sets where the delays hosts ask for are looked up.
+     */
+    public void setCrawlDelayProvider(CrawlDelayProvider crawlDelayProvider) {
+        this.crawlDelayProvider = crawlDelayProvider;
+    }
+
+    /**
+     * Returns the delay in milliseconds between two requests to the given host.
+     */
+    public long getDelay(String host) {
+        CrawlDelayProvider provider = crawlDelayProvider;
+        if (provider == null || maxCrawlDelay <= 0) {
+            return politenessDelay;
+        }
+        long crawlDelay = provider.getCrawlDelay(host);
+        if (crawlDelay < 0) {
+            return politenessDelay;
+        }
+        crawlDelay = Math.min(Math.max(crawlDelay, minCrawlDelay), maxCrawlDelay);
+        return Math.max(crawlDelay, politenessDelay);
+    }
+
+    /**
+     * Reserves the next fetch slot of the given host.
+     *
+     * @return the time in milliseconds the caller has to wait before fetching
+     * from the host.
+     */
+    public long reserve(String host) {
+        return reserve(host, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reserves the next fetch slot of the given host. If the caller would have
+     * to wait longer than maxWait for it, the slot is booked for a deferred
+     * fetch instead: the next caller which reaches the host within maxWait of
+     * that slot gets it, so deferred fetches come due one slot at a time
+     * rather than all at once.
+     *
+     * @return the time in milliseconds until the reserved fetch slot of the
+     * host. If it is more than maxWait, the slot was booked for later.
+     */
+    public long reserve(String host, long maxWait) {
+        HostState state = hosts.get(host);
+        if (state == null) {
+            state = new HostState();
+            HostState existing = hosts.putIfAbsent(host, state);
+            if (existing != null) {
+                state = existing;
+            } else if (hosts.size() > cleanupThreshold) {
+                removeIdleHosts();
+            }
+        }
+        long delay = getDelay(host);
+        long now = System.currentTimeMillis();
+        synchronized (state) {
+            if (state.bookedSlots != null) {
+                // Slots which have passed can't be used any more
+                state.bookedSlots.headSet(now).clear();
+                Long booked = state.bookedSlots.pollFirst();
+                if (booked != null) {
+                    if (booked - now <= maxWait) {
+                        return booked - now;
+                    }
+                    state.bookedSlots.add(booked);
+                }
+            }
+            long slot = Math.max(now, state.nextFetchTime);
+            state.nextFetchTime = slot + delay;
+            if (slot - now > maxWait) {
+                if (state.bookedSlots == null) {
+                    state.bookedSlots = new TreeSet<>();
+                }
+                state.bookedSlots.add(slot);
+            }
+            return slot - now;
+        }
+    }
+
+    /**
+     * Waits for the next fetch slot of the given host.
+     */
+    public void waitForTurn(String host) throws InterruptedException {
+        long wait = reserve(host);
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+
+    private synchronized void removeIdleHosts() {
+        if (hosts.size() <= cleanupThreshold) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, HostState>> iterator = hosts.entrySet().iterator();
+        while (iterator.hasNext()) {
+            HostState state = iterator.next().getValue();
+            synchronized (state) {
+                if (state.nextFetchTime <= now) {
+                    iterator.remove();
+                }
+            }
+        }
+        cleanupThreshold = Math.max(CLEANUP_THRESHOLD, hosts.size() * 2);
+    }
+
+    private static class HostState {
+        long nextFetchTime = 0;
+
+        /**
+         * The slots which were booked for deferred fetches and not taken yet.
+         */
+        TreeSet<Long> bookedSlots;
+    }
+}
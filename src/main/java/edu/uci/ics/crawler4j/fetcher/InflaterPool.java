@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Inflater;
+
+/**
+ * A pool of {@link Inflater}s, so that decompressing a page does not allocate
+ * a new native inflater every time. Inflaters for zlib-wrapped and raw deflate
+ * data are kept apart, since that mode can not be changed after creation.
+ */
+public class InflaterPool {
+
+    private final BlockingQueue<Inflater> zlibInflaters;
+    private final BlockingQueue<Inflater> rawInflaters;
+
+    /**
+     * @param maxPooled the maximum number of idle inflaters kept for each mode
+     */
+    public InflaterPool(int maxPooled) {
+        zlibInflaters = new ArrayBlockingQueue<>(maxPooled);
+        rawInflaters = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * Returns an idle inflater, or a new one if none is available.
+     *
+     * @param nowrap true for raw deflate data (as in gzip), false for zlib-wrapped data
+     */
+    public Inflater borrow(boolean nowrap) {
+        Inflater inflater = queue(nowrap).poll();
+        if (inflater == null) {
+            inflater = new Inflater(nowrap);
+        }
+        return inflater;
+    }
+
+    /**
+     * Returns an inflater obtained from {@link #borrow(boolean)} to the pool.
+     * It must not be used by the caller afterwards.
+     */
+    public void release(Inflater inflater, boolean nowrap) {
+        inflater.reset();
+        if (!queue(nowrap).offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Frees the native memory of all idle inflaters.
+     */
+    public void close() {
+        Inflater inflater;
+        while ((inflater = zlibInflaters.poll()) != null) {
+            inflater.end();
+        }
+        while ((inflater = rawInflaters.poll()) != null) {
+            inflater.end();
+        }
+    }
+
+    private BlockingQueue<Inflater> queue(boolean nowrap) {
+        return nowrap ? rawInflaters : zlibInflaters;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.net.InetAddress;
+import java.util.List;
+
+/**
+ * The local addresses outgoing connections are bound to. Addresses are handed
+ * out round-robin, or by a hash of the destination host so that a host is
+ * always fetched from the same address. Each address can be limited to a
+ * number of concurrent fetches.
+ */
+public class LocalAddressPool {
+
+    private final InetAddress[] addresses;
+    private final int[] inFlight;
+    private final int maxConnectionsPerAddress;
+    private final boolean hashByHost;
+
+    private int next = 0;
+
+    /**
+     * @param addresses                the local addresses to bind to
+     * @param maxConnectionsPerAddress the maximum number of concurrent fetches
+     *                                 from each address, or 0 for no limit
+     * @param hashByHost               whether to pick the address by a hash of
+     *                                 the destination host instead of
+     *                                 round-robin
+     */
+    public LocalAddressPool(List<InetAddress> addresses, int maxConnectionsPerAddress, boolean hashByHost) {
+        this.addresses = addresses.toArray(new InetAddress[addresses.size()]);
+        this.inFlight = new int[this.addresses.length];
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress <= 0 ? Integer.MAX_VALUE : maxConnectionsPerAddress;
+        this.hashByHost = hashByHost;
+    }
+
+    /**
+     * Leases a local address for fetching a page of the given host, waiting up
+     * to the given time for an address to have a free connection.
+     *
+     * @return the lease, which must be released once the fetch is done, or
+     * null if no address became available in time.
+     */
+    public synchronized Lease acquire(String host, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            int index = choose(host);
+            if (index >= 0) {
+                inFlight[index]++;
+                return new Lease(index);
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            wait(remaining);
+        }
+    }
+
+    private int choose(String host) {
+        if (hashByHost && host != null) {
+            int index = (host.hashCode() & Integer.MAX_VALUE) % addresses.length;
+            return inFlight[index] < maxConnectionsPerAddress ? index : -1;
+        }
+        for (int i = 0; i < addresses.length; i++) {
+            int index = next;
+            next = (next + 1) % addresses.length;
+            if (inFlight[index] < maxConnectionsPerAddress) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of fetches currently in flight from the given address.
+     */
+    public synchronized int getInFlight(InetAddress address) {
+        int count = 0;
+        for (int i = 0; i < addresses.length; i++) {
+            if (addresses[i].equals(address)) {
+                count += inFlight[i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A local address leased for a single fetch.
+     */
+    public class Lease {
+
+        private final int index;
+        private boolean released;
+
+        Lease(int index) {
+            this.index = index;
+        }
+
+        public InetAddress getAddress() {
+            return addresses[index];
+        }
+
+        public void release() {
+            synchronized (LocalAddressPool.this) {
+                if (!released) {
+                    released = true;
+                    inFlight[index]--;
+                    LocalAddressPool.this.notifyAll();
+                }
+            }
+        }
+    }
+}
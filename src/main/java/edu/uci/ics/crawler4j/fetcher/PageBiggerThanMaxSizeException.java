@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.io.IOException;
+
+/**
+ * Thrown while reading the body of a page once more than max-download-size
+ * bytes have been read. The stream is left open at that point, so that the
+ * caller can abort the request instead of draining the rest of the body.
+ */
+public class PageBiggerThanMaxSizeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long bytesRead;
+
+    public PageBiggerThanMaxSizeException(long bytesRead) {
+        super("Page size exceeded max-download-size after reading " + bytesRead + " bytes");
+        this.bytesRead = bytesRead;
+    }
+
+    public PageBiggerThanMaxSizeException(long bytesRead, String message) {
+        super(message);
+        this.bytesRead = bytesRead;
+    }
+
+    /**
+     * Returns the number of bytes that had been read when the limit was hit.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+}
@@ -17,12 +17,17 @@
 
 package edu.uci.ics.crawler4j.fetcher;
 
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +46,15 @@ public class PageFetchResult {
     protected Header[] responseHeaders = null;
     protected String fetchedUrl = null;
     protected String movedToUrl = null;
+    protected HttpUriRequest request = null;
+    protected long discardedBytes = 0;
+    protected long timeToFirstByte = -1;
+    protected long deferredUntil = 0;
+    protected FetchWatch watch = null;
+    protected ProxyPool.Lease proxyLease = null;
+    protected LocalAddressPool.Lease localAddressLease = null;
+    protected RawCapture capture = null;
+    protected ContentDecoder contentDecoder = null;
 
     public int getStatusCode() {
         return statusCode;
@@ -66,6 +80,82 @@ public class PageFetchResult {
         this.responseHeaders = responseHeaders;
     }
 
+    /**
+     * Returns the time in milliseconds from sending the request until the
+     * response headers were received, or -1 if no response was received.
+     */
+    public long getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    public void setTimeToFirstByte(long timeToFirstByte) {
+        this.timeToFirstByte = timeToFirstByte;
+    }
+
+    /**
+     * Returns the time the fetch should be tried again if it was deferred,
+     * see {@link CustomFetchStatus#FetchDeferred}.
+     */
+    public long getDeferredUntil() {
+        return deferredUntil;
+    }
+
+    public void setDeferredUntil(long deferredUntil) {
+        this.deferredUntil = deferredUntil;
+    }
+
+    public HttpUriRequest getRequest() {
+        return request;
+    }
+
+    public void setRequest(HttpUriRequest request) {
+        this.request = request;
+    }
+
+    public FetchWatch getWatch() {
+        return watch;
+    }
+
+    public void setWatch(FetchWatch watch) {
+        this.watch = watch;
+    }
+
+    public ProxyPool.Lease getProxyLease() {
+        return proxyLease;
+    }
+
+    public void setProxyLease(ProxyPool.Lease proxyLease) {
+        this.proxyLease = proxyLease;
+    }
+
+    public LocalAddressPool.Lease getLocalAddressLease() {
+        return localAddressLease;
+    }
+
+    public void setLocalAddressLease(LocalAddressPool.Lease localAddressLease) {
+        this.localAddressLease = localAddressLease;
+    }
+
+    public RawCapture getCapture() {
+        return capture;
+    }
+
+    public void setCapture(RawCapture capture) {
+        this.capture = capture;
+    }
+
+    /**
+     * Returns the decoder of the content, or null if the content has already
+     * been decoded while it was downloaded.
+     */
+    public ContentDecoder getContentDecoder() {
+        return contentDecoder;
+    }
+
+    public void setContentDecoder(ContentDecoder contentDecoder) {
+        this.contentDecoder = contentDecoder;
+    }
+
     public String getFetchedUrl() {
         return fetchedUrl;
     }
@@ -80,16 +170,77 @@ public class PageFetchResult {
 
     public boolean fetchContent(Page page, int maxLength) {
         try {
-            page.load(entity, maxLength);
+            if (contentDecoder == null) {
+                page.load(entity, maxLength);
+            } else {
+                page.loadEncoded(entity, maxLength, contentDecoder);
+            }
+            // The body is read: parsing and visiting the page are not timed
+            releaseWatch();
             page.setFetchResponseHeaders(responseHeaders);
             return true;
+        } catch (PageBiggerThanMaxSizeException e) {
+            // Drop the connection rather than reading the rest of a body
+            // of unknown length just to keep the connection alive.
+            abort();
+            statusCode = CustomFetchStatus.PageTooBigWhileDownloading;
+            discardedBytes = e.getBytesRead();
+            logger.info("Aborted download of " + page.getWebURL().getURL() + " after " + e.getBytesRead()
+                    + " bytes: exceeded max-download-size (" + maxLength + ")");
         } catch (Exception e) {
+            if (watch != null && watch.isAborted()) {
+                statusCode = watch.getAbortStatus();
+                logger.info("Aborted download of " + page.getWebURL().getURL() + ": "
+                        + CustomFetchStatus.getStatusDescription(statusCode));
+                return false;
+            }
             logger.info("Exception while fetching content for: " + page.getWebURL().getURL() + " [" + e.getMessage()
                     + "]");
         }
         return false;
     }
 
+    /**
+     * Returns a stream over the content of the page, so that it can be parsed
+     * while it is being downloaded instead of being buffered first. The content
+     * type, encoding and charset of the page are loaded right away.
+     * <p/>
+     * If the download fails or exceeds maxLength bytes, reading the stream
+     * throws, and the status code of this result tells why. If retainContent is
+     * true, the bytes read are kept and set as the content data of the page
+     * when the stream is closed.
+     */
+    public InputStream openContent(Page page, int maxLength, boolean retainContent) throws IOException {
+        page.loadHeaders(entity);
+        page.setFetchResponseHeaders(responseHeaders);
+        HttpEntity decoded = (contentDecoder == null) ? entity : contentDecoder.decoding(entity);
+        return new ContentStream(decoded.getContent(), page, maxLength, retainContent);
+    }
+
+    /**
+     * Aborts the underlying request. The connection is closed instead of being
+     * returned to the pool, so any unread part of the body is never downloaded.
+     */
+    public void abort() {
+        try {
+            if (request != null) {
+                request.abort();
+            }
+        } catch (Exception e) {
+            logger.debug("Error while aborting request: " + e.getMessage());
+        }
+        entity = null;
+        releaseResources();
+    }
+
+    /**
+     * Returns the number of bytes that were downloaded and thrown away because
+     * the download was aborted.
+     */
+    public long getDiscardedBytes() {
+        return discardedBytes;
+    }
+
     public void discardContentIfNotConsumed() {
         try {
             if (entity != null) {
@@ -103,6 +254,115 @@ public class PageFetchResult {
             // closed.
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            releaseResources();
+        }
+    }
+
+    private void releaseWatch() {
+        if (watch != null) {
+            watch.release();
+        }
+    }
+
+    private void releaseResources() {
+        releaseWatch();
+        if (proxyLease != null) {
+            proxyLease.release();
+        }
+        if (localAddressLease != null) {
+            localAddressLease.release();
+        }
+        if (capture != null) {
+            capture.close();
+        }
+    }
+
+    private class ContentStream extends FilterInputStream {
+
+        private final Page page;
+        private final int maxLength;
+        private final ByteArrayOutputStream retained;
+        private final byte[] single = new byte[1];
+        private long bytesRead = 0;
+
+        ContentStream(InputStream in, Page page, int maxLength, boolean retainContent) {
+            super(in);
+            this.page = page;
+            this.maxLength = maxLength;
+            this.retained = retainContent ? new ByteArrayOutputStream() : null;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int n = read(single, 0, 1);
+            return (n == -1) ? -1 : (single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+            try {
+                n = super.read(b, off, len);
+            } catch (IOException e) {
+                if (watch != null && watch.isAborted()) {
+                    statusCode = watch.getAbortStatus();
+                } else if (statusCode == HttpStatus.SC_OK) {
+                    statusCode = CustomFetchStatus.FatalTransportError;
+                }
+                throw e;
+            }
+            if (n == -1) {
+                // The download is done, however long the parser takes
+                releaseWatch();
+            } else if (n > 0) {
+                bytesRead += n;
+                if (maxLength != -1 && bytesRead > maxLength) {
+                    abort();
+                    statusCode = CustomFetchStatus.PageTooBigWhileDownloading;
+                    discardedBytes = bytesRead;
+                    logger.info("Aborted download of " + page.getWebURL().getURL() + " after " + bytesRead
+                            + " bytes: exceeded max-download-size (" + maxLength + ")");
+                    throw new PageBiggerThanMaxSizeException(bytesRead);
+                }
+                if (retained != null) {
+                    retained.write(b, off, n);
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes still have to be counted and retained
+            byte[] buffer = new byte[(int) Math.min(n, 4096)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } catch (IOException e) {
+                // The request may have been aborted, in which case
+                // the stream can not be closed cleanly.
+            }
+            if (retained != null && statusCode == HttpStatus.SC_OK) {
+                page.setContentData(retained.toByteArray());
+            }
         }
     }
 
@@ -21,6 +21,7 @@ import edu.uci.ics.crawler4j.crawler.Configurable;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.Util;
 import org.apache.http.*;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -37,19 +38,31 @@ import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.impl.cookie.BasicClientCookie;
 import org.apache.http.params.*;
 import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ExecutionContext;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
@@ -58,8 +71,83 @@ public class PageFetcher extends Configurable {
 
     protected static final Logger logger = LoggerFactory.getLogger(PageFetcher.class);
 
+    protected PoolingClientConnectionManager connectionManager;
+
     protected DefaultHttpClient httpClient;
 
+    protected IdleConnectionMonitorThread connectionMonitorThread;
+
+    /**
+     * Opens connections to upcoming hosts in the background. It is null unless
+     * connection prewarming is enabled.
+     */
+    protected ConnectionPrewarmer prewarmer;
+
+    protected InflaterPool inflaterPool;
+
+    protected ContentDecoder contentDecoder;
+
+    /**
+     * Receives the raw responses in capture mode. It is null unless capture
+     * mode is enabled.
+     */
+    protected volatile CaptureSink captureSink;
+
+    /**
+     * Aborts fetches which exceed the configured deadline or are too slow. It
+     * is null if neither limit is configured.
+     */
+    protected FetchWatchdogThread watchdog;
+
+    /**
+     * The proxies fetches are spread over. It is null unless a proxy pool is
+     * configured.
+     */
+    protected ProxyPool proxyPool;
+
+    /**
+     * The local addresses outgoing connections are bound to. It is null unless
+     * local addresses are configured.
+     */
+    protected LocalAddressPool localAddressPool;
+
+    /**
+     * Spaces out the requests to each host by the politeness delay, or by the
+     * crawl delay the host asked for. It is null if the politeness delay is 0
+     * and Crawl-delay directives are ignored.
+     */
+    protected HostPoliteness hostPoliteness;
+
+    /**
+     * Throttles the download of page bodies. It is null unless a bandwidth
+     * limit is configured.
+     */
+    protected BandwidthLimiter bandwidthLimiter;
+
+    /**
+     * The number of fetches whose time to first byte was measured, and the
+     * sum of those times in milliseconds. They are only kept in memory, so
+     * that timing a fetch costs no database write.
+     */
+    protected final AtomicLong timedFetches = new AtomicLong();
+    protected final AtomicLong totalTimeToFirstByte = new AtomicLong();
+
+    /**
+     * Name of the context attribute holding the proxy of the current fetch.
+     */
+    private static final String PROXY_ATTRIBUTE = "crawler4j.proxy";
+
+    /**
+     * Name of the context attribute holding the watch of the current fetch.
+     */
+    private static final String WATCH_ATTRIBUTE = "crawler4j.watch";
+
+    /**
+     * Name of the context attribute which is set when the body of the current
+     * fetch has been left compressed for capturing.
+     */
+    private static final String CAPTURE_ATTRIBUTE = "crawler4j.capture";
+
     public PageFetcher(CrawlConfig config) {
         super(config);
 
@@ -77,29 +165,238 @@ public class PageFetcher extends Configurable {
         params.setParameter(ClientPNames.COOKIE_POLICY, CookiePolicy.BROWSER_COMPATIBILITY);
         params.setBooleanParameter("http.protocol.handle-redirects", false);
 
-        httpClient = new DefaultHttpClient(params);
+        connectionManager = new PoolingClientConnectionManager(SchemeRegistryFactory.createDefault());
+        connectionManager.setMaxTotal(config.getMaxTotalConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
+        httpClient = new DefaultHttpClient(connectionManager, params);
+        connectionMonitorThread = new IdleConnectionMonitorThread(connectionManager);
+        connectionMonitorThread.setDaemon(true);
+        connectionMonitorThread.start();
+        inflaterPool = new InflaterPool(config.getMaxTotalConnections());
+        contentDecoder = new ContentDecoder(inflaterPool, config.getMaxDownloadSize(), config.getMaxCompressionRatio());
+        if (config.getCaptureFolder() != null) {
+            captureSink = new FileCaptureSink(new File(config.getCaptureFolder()));
+        }
+
+        if (config.getPolitenessDelay() > 0 || config.getMaxCrawlDelay() > 0) {
+            hostPoliteness = new HostPoliteness(config.getPolitenessDelay(), config.getMinCrawlDelay(),
+                    config.getMaxCrawlDelay());
+        }
 
         handleProxySettings(config);
+        handleLocalAddresses(config);
         handleSSLCertificateIssues(config);
-        handleGzipCompression();
+        // Registered before the decompression, so that the limits apply to
+        // the bytes on the wire.
+        handleBandwidthLimits(config);
+        handleCompression();
+
+        if (config.getMaxFetchDuration() > 0 || config.getMinDownloadThroughput() > 0) {
+            watchdog = new FetchWatchdogThread(config);
+            watchdog.start();
+        }
+
+        // With a proxy pool or local address rotation the route of a fetch is
+        // only known once it starts, so there is nothing to prewarm.
+        if (config.getPrewarmHosts() > 0 && proxyPool == null && localAddressPool == null) {
+            prewarmer = new ConnectionPrewarmer(httpClient, connectionManager, config.getPrewarmHosts(),
+                    config.getConnectionTimeout());
+        }
+    }
+
+    /**
+     * Opens a connection to the host of the given url in the background, so
+     * that it is ready when the url is fetched. It does nothing unless
+     * connection prewarming is enabled.
+     */
+    public void prewarm(WebURL webUrl) {
+        if (prewarmer != null) {
+            prewarmer.prewarm(webUrl.getURL());
+        }
+    }
+
+    /**
+     * Returns the connection prewarmer, or null if connection prewarming is
+     * not enabled.
+     */
+    public ConnectionPrewarmer getPrewarmer() {
+        return prewarmer;
+    }
+
+    /**
+     * Returns the number of fetches whose time to first byte was measured,
+     * from sending the request until the response headers arrived.
+     */
+    public long getTimedFetches() {
+        return timedFetches.get();
+    }
+
+    /**
+     * Returns the sum of the times to first byte of the timed fetches, in
+     * milliseconds.
+     */
+    public long getTotalTimeToFirstByte() {
+        return totalTimeToFirstByte.get();
+    }
+
+    /**
+     * Returns the average time to first byte of the timed fetches in
+     * milliseconds, or -1 if there were none. Comparing it with and without
+     * connection prewarming shows what prewarming saves.
+     */
+    public double getAverageTimeToFirstByte() {
+        long fetches = timedFetches.get();
+        return (fetches == 0) ? -1 : (double) totalTimeToFirstByte.get() / fetches;
+    }
+
+    /**
+     * Turns on capture mode: every response is written to the given sink as
+     * it was received, with its body still compressed. Bodies are then only
+     * decompressed when their content is needed, see
+     * {@link edu.uci.ics.crawler4j.crawler.Page#getContentData()}. Passing
+     * null turns capture mode off.
+     */
+    public void setCaptureSink(CaptureSink captureSink) {
+        this.captureSink = captureSink;
+    }
+
+    public CaptureSink getCaptureSink() {
+        return captureSink;
+    }
+
+    /**
+     * Sets where the delays hosts ask for between two requests, with the
+     * Crawl-delay directive of their robots.txt, are looked up.
+     */
+    public void setCrawlDelayProvider(CrawlDelayProvider crawlDelayProvider) {
+        if (hostPoliteness != null) {
+            hostPoliteness.setCrawlDelayProvider(crawlDelayProvider);
+        }
     }
 
     public PageFetchResult fetchHeader(WebURL webUrl) {
+        return fetchHeader(webUrl, null);
+    }
+
+    /**
+     * Fetches the header of the given url. If validators of a previous fetch
+     * are given, the request is made conditional and an unchanged page is
+     * answered with {@link HttpStatus#SC_NOT_MODIFIED}.
+     */
+    public PageFetchResult fetchHeader(WebURL webUrl, FetchValidators validators) {
+        return fetchHeader(webUrl, validators, -1);
+    }
+
+    /**
+     * Fetches the header of the given url, like
+     * {@link #fetchHeader(WebURL, FetchValidators)}, unless the host can not
+     * be fetched within maxPolitenessWait milliseconds. In that case nothing
+     * is fetched, the status code is {@link CustomFetchStatus#FetchDeferred}
+     * and {@link PageFetchResult#getDeferredUntil()} tells when to try again.
+     * The slot of the host is booked meanwhile, and a fetch of the host tried
+     * again at that time waits for it.
+     *
+     * @param maxPolitenessWait the longest time to wait for the host, or -1 to
+     *                          always wait
+     */
+    public PageFetchResult fetchHeader(WebURL webUrl, FetchValidators validators, long maxPolitenessWait) {
+        return fetchHeader(webUrl, validators, maxPolitenessWait, true, true);
+    }
+
+    /**
+     * Fetches the header of the given url right away, for a caller which has
+     * already waited for the turn of its host with
+     * {@link #waitForTurn(WebURL, long)}.
+     */
+    public PageFetchResult fetchHeaderNow(WebURL webUrl, FetchValidators validators) {
+        return fetchHeader(webUrl, validators, -1, true, false);
+    }
+
+    /**
+     * Waits until the host of the given url may be fetched again and takes
+     * its fetch slot, unless that takes more than maxPolitenessWait
+     * milliseconds. In that case the slot is booked and the url should be
+     * tried again at the returned time, when a fetch of the host waits for
+     * the booked slot.
+     *
+     * @param maxPolitenessWait the longest time to wait for the host, or -1 to
+     *                          always wait
+     * @return 0 once the host may be fetched, or the time to try again
+     */
+    public long waitForTurn(WebURL webUrl, long maxPolitenessWait) throws InterruptedException {
+        String host;
+        try {
+            host = new URI(webUrl.getURL()).getHost();
+        } catch (URISyntaxException e) {
+            // Not fetchable anyway, fetchHeader reports it
+            return 0;
+        }
+        return waitForTurn(host, maxPolitenessWait);
+    }
+
+    private long waitForTurn(String host, long maxPolitenessWait) throws InterruptedException {
+        if (hostPoliteness == null || host == null) {
+            return 0;
+        }
+        long maxWait = (maxPolitenessWait < 0) ? Long.MAX_VALUE : maxPolitenessWait;
+        long wait = hostPoliteness.reserve(host.toLowerCase(), maxWait);
+        if (wait > maxWait) {
+            // The slot is booked: coming back maxWait ahead of it lets the
+            // retry wait for it and take it
+            return System.currentTimeMillis() + wait - maxWait;
+        }
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        return 0;
+    }
+
+    /**
+     * Fetches the header of a file the crawler reads itself, such as a
+     * robots.txt or a sitemap. Its content type and size are not checked
+     * against the allowed content types and the max download size, since the
+     * reader applies limits of its own.
+     */
+    public PageFetchResult fetchCrawlerFile(WebURL webUrl) {
+        return fetchHeader(webUrl, null, -1, false, true);
+    }
+
+    private PageFetchResult fetchHeader(WebURL webUrl, FetchValidators validators, long maxPolitenessWait,
+                                        boolean checkContent, boolean waitForTurn) {
         PageFetchResult fetchResult = new PageFetchResult();
         String toFetchURL = webUrl.getURL();
         HttpGet get = null;
+        FetchWatch watch = null;
 
-        final String proxyInfo = getProxyInfo();
+        String proxyInfo = getProxyInfo();
+        ProxyPool.Lease proxyLease = null;
 
         try {
             get = new HttpGet(toFetchURL);
-            get.addHeader("Accept-Encoding", "gzip");
+            if (waitForTurn) {
+                long deferredUntil = waitForTurn(get.getURI().getHost(), maxPolitenessWait);
+                if (deferredUntil > 0) {
+                    fetchResult.setStatusCode(CustomFetchStatus.FetchDeferred);
+                    fetchResult.setDeferredUntil(deferredUntil);
+                    return fetchResult;
+                }
+            }
+            get.addHeader("Accept-Encoding", "gzip, deflate");
             get.addHeader("Accept", "*/*");
 
             for (Map.Entry<String, String> entry : config.getCustomHeaders().entrySet()) {
                 get.addHeader(entry.getKey(), entry.getValue());
             }
 
+            if (validators != null) {
+                if (validators.getETag() != null) {
+                    get.addHeader("If-None-Match", validators.getETag());
+                }
+                if (validators.getLastModified() != null) {
+                    get.addHeader("If-Modified-Since", validators.getLastModified());
+                }
+            }
+
             // Create a local instance of cookie store, and bind to local context
             // Without this we get killed w/lots of threads, due to sync() on single cookie store.
             HttpContext localContext = new BasicHttpContext();
@@ -112,14 +409,67 @@ public class PageFetcher extends Configurable {
             }
             localContext.setAttribute(ClientContext.COOKIE_STORE, cookieStore);
 
+            if (proxyPool != null) {
+                proxyLease = proxyPool.acquire(get.getURI().getHost(), config.getConnectionTimeout());
+                if (proxyLease == null) {
+                    logger.warn("No proxy available for fetching " + toFetchURL);
+                    fetchResult.setStatusCode(CustomFetchStatus.NoProxyAvailable);
+                    return fetchResult;
+                }
+                fetchResult.setProxyLease(proxyLease);
+                ProxyServer proxy = proxyLease.getProxy();
+                get.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(proxy.getHost(), proxy.getPort()));
+                localContext.setAttribute(PROXY_ATTRIBUTE, proxy);
+                proxyInfo = ", Via-Proxy=" + proxy;
+            }
+
+            if (localAddressPool != null) {
+                LocalAddressPool.Lease localAddressLease = localAddressPool.acquire(get.getURI().getHost(),
+                        config.getConnectionTimeout());
+                if (localAddressLease == null) {
+                    logger.warn("No local address available for fetching " + toFetchURL);
+                    fetchResult.setStatusCode(CustomFetchStatus.NoLocalAddressAvailable);
+                    return fetchResult;
+                }
+                fetchResult.setLocalAddressLease(localAddressLease);
+                get.getParams().setParameter(ConnRoutePNames.LOCAL_ADDRESS, localAddressLease.getAddress());
+            }
+
+            if (watchdog != null) {
+                watch = watchdog.watch(get);
+                fetchResult.setWatch(watch);
+                localContext.setAttribute(WATCH_ATTRIBUTE, watch);
+            }
+
+            long startTime = System.currentTimeMillis();
             HttpResponse response = httpClient.execute(get, localContext);
+            fetchResult.setTimeToFirstByte(System.currentTimeMillis() - startTime);
+            timedFetches.incrementAndGet();
+            totalTimeToFirstByte.addAndGet(fetchResult.getTimeToFirstByte());
+            fetchResult.setRequest(get);
+            if (proxyLease != null) {
+                if (response.getStatusLine().getStatusCode() == HttpStatus.SC_PROXY_AUTHENTICATION_REQUIRED) {
+                    proxyLease.authenticationFailed();
+                } else {
+                    proxyLease.succeeded(fetchResult.getTimeToFirstByte());
+                }
+            }
+            if (watch != null && response.getEntity() != null) {
+                response.setEntity(new WatchedEntity(response.getEntity(), watch));
+            }
+            CaptureSink sink = captureSink;
+            if (sink != null && localContext.getAttribute(CAPTURE_ATTRIBUTE) != null) {
+                fetchResult.setCapture(RawCapture.start(sink, webUrl, response));
+                fetchResult.setContentDecoder(contentDecoder);
+            }
             fetchResult.setEntity(response.getEntity());
             fetchResult.setResponseHeaders(response.getAllHeaders());
 
             int statusCode = response.getStatusLine().getStatusCode();
             if (statusCode != HttpStatus.SC_OK) {
-                if (statusCode != HttpStatus.SC_NOT_FOUND) {
-                    if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY || statusCode == HttpStatus.SC_SEE_OTHER) {
+                if (statusCode != HttpStatus.SC_NOT_FOUND && statusCode != HttpStatus.SC_NOT_MODIFIED) {
+                    if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY
+                            || statusCode == HttpStatus.SC_SEE_OTHER || statusCode == HttpStatus.SC_TEMPORARY_REDIRECT) {
                         Header header = response.getFirstHeader("Location");
                         if (header != null) {
                             String movedToUrl = header.getValue();
@@ -157,13 +507,28 @@ public class PageFetcher extends Configurable {
                     }
                 }
 
-                if (size > config.getMaxDownloadSize()) {
+                if (checkContent && size > config.getMaxDownloadSize()) {
                     fetchResult.setStatusCode(CustomFetchStatus.PageTooBig);
                     get.abort();
                     logger.error("Failed: Page Size (" + size + ") exceeded max-download-size (" + config.getMaxDownloadSize() + ")" + proxyInfo);
                     return fetchResult;
                 }
 
+                Header contentType = fetchResult.getEntity().getContentType();
+                if (checkContent && !isContentTypeAllowed(webUrl, contentType == null ? null : contentType.getValue())) {
+                    fetchResult.setStatusCode(CustomFetchStatus.ContentTypeNotAllowed);
+                    if (fetchResult.getCapture() == null) {
+                        get.abort();
+                    } else {
+                        // In capture mode every response is archived whole,
+                        // whatever its type
+                        EntityUtils.consume(fetchResult.getEntity());
+                    }
+                    logger.info("Skipping: Content-Type (" + (contentType == null ? null : contentType.getValue())
+                            + ") is not allowed, while fetching " + toFetchURL + proxyInfo);
+                    return fetchResult;
+                }
+
                 fetchResult.setStatusCode(HttpStatus.SC_OK);
                 return fetchResult;
 
@@ -174,6 +539,15 @@ public class PageFetcher extends Configurable {
             get.abort();
 
         } catch (IOException e) {
+            if (watch != null && watch.isAborted()) {
+                fetchResult.setStatusCode(watch.getAbortStatus());
+                logger.warn("Aborted: " + CustomFetchStatus.getStatusDescription(watch.getAbortStatus())
+                        + " while fetching " + toFetchURL + proxyInfo);
+                return fetchResult;
+            }
+            if (proxyLease != null) {
+                proxyLease.failed();
+            }
             logger.error("Fatal transport error: " + e.getMessage() + " while fetching " + toFetchURL
                     + " (link found in doc #" + webUrl.getParentDocid() + ")" + proxyInfo);
             fetchResult.setStatusCode(CustomFetchStatus.FatalTransportError);
@@ -198,11 +572,62 @@ public class PageFetcher extends Configurable {
         return fetchResult;
     }
 
+    /**
+     * Decides, from the Content-Type header of a response, whether its body
+     * should be downloaded.
+     *
+     * @param webUrl      the url being fetched
+     * @param contentType the value of the Content-Type header, or null if the
+     *                    response did not have one
+     */
+    protected boolean isContentTypeAllowed(WebURL webUrl, String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        Set<String> allowedContentTypes = config.getAllowedContentTypes();
+        if (allowedContentTypes.isEmpty()) {
+            return config.isIncludeBinaryContentInCrawling() || !Util.hasBinaryContent(contentType);
+        }
+        String mimeType = contentType;
+        int paramsIndex = mimeType.indexOf(';');
+        if (paramsIndex >= 0) {
+            mimeType = mimeType.substring(0, paramsIndex);
+        }
+        mimeType = mimeType.trim().toLowerCase();
+        if (allowedContentTypes.contains(mimeType)) {
+            return true;
+        }
+        int slashIndex = mimeType.indexOf('/');
+        return slashIndex > 0 && allowedContentTypes.contains(mimeType.substring(0, slashIndex + 1));
+    }
+
+    /**
+     * Returns the proxy pool, which exposes the health and latency of each
+     * proxy, or null if no proxy pool is configured.
+     */
+    public ProxyPool getProxyPool() {
+        return proxyPool;
+    }
+
     public void shutdown() {
+        if (watchdog != null) {
+            watchdog.shutdown();
+        }
+        if (proxyPool != null) {
+            proxyPool.shutdown();
+        }
+        if (prewarmer != null) {
+            prewarmer.shutdown();
+        }
+        connectionMonitorThread.shutdown();
         httpClient.getConnectionManager().shutdown();
+        inflaterPool.close();
     }
 
     private String getProxyInfo() {
+        if (proxyPool != null) {
+            return "";
+        }
         if (config.getProxyHost() == null) {
             return ", Direct-Crawl";
         } else {
@@ -210,23 +635,39 @@ public class PageFetcher extends Configurable {
         }
     }
 
-    private void handleGzipCompression() {
+    private void handleBandwidthLimits(CrawlConfig config) {
+        if (config.getMaxBytesPerSecond() <= 0 && config.getMaxBytesPerSecondPerHost() <= 0) {
+            return;
+        }
+        bandwidthLimiter = new BandwidthLimiter(config);
         httpClient.addResponseInterceptor(new HttpResponseInterceptor() {
             @Override
             public void process(final HttpResponse response, final HttpContext context) throws HttpException, IOException {
                 HttpEntity entity = response.getEntity();
                 if (entity == null) return;
 
-                Header contentEncoding = entity.getContentEncoding();
-                if (contentEncoding != null) {
-                    HeaderElement[] codecs = contentEncoding.getElements();
-                    for (HeaderElement codec : codecs) {
-                        if (codec.getName().equalsIgnoreCase("gzip")) {
-                            response.setEntity(new GzipDecompressingEntity(response.getEntity()));
-                            return;
-                        }
-                    }
+                HttpHost target = (HttpHost) context.getAttribute(ExecutionContext.HTTP_TARGET_HOST);
+                FetchWatch watch = (FetchWatch) context.getAttribute(WATCH_ATTRIBUTE);
+                response.setEntity(new ThrottledEntity(entity, target == null ? null : target.getHostName(), watch));
+            }
+        });
+    }
+
+    private void handleCompression() {
+        httpClient.addResponseInterceptor(new HttpResponseInterceptor() {
+            @Override
+            public void process(final HttpResponse response, final HttpContext context) throws HttpException, IOException {
+                if (captureSink != null) {
+                    // In capture mode the body is kept compressed, and only
+                    // decoded when its content is needed.
+                    context.setAttribute(CAPTURE_ATTRIBUTE, Boolean.TRUE);
+                    return;
                 }
+
+                HttpEntity entity = response.getEntity();
+                if (entity == null) return;
+
+                response.setEntity(contentDecoder.decoding(entity));
             }
 
         });
@@ -252,7 +693,28 @@ public class PageFetcher extends Configurable {
     }
 
     private void handleProxySettings(CrawlConfig config) {
-        if (config.getProxyHost() != null) {
+        if (!config.getProxies().isEmpty()) {
+            proxyPool = new ProxyPool(config);
+            proxyPool.start();
+            for (ProxyServer proxy : config.getProxies()) {
+                if (proxy.getUsername() != null) {
+                    httpClient.getCredentialsProvider().setCredentials(new AuthScope(proxy.getHost(), proxy.getPort()),
+                            new UsernamePasswordCredentials(proxy.getUsername(), proxy.getPassword()));
+                }
+            }
+            httpClient.addRequestInterceptor(new HttpRequestInterceptor() {
+                @Override
+                public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+                    ProxyServer proxy = (ProxyServer) context.getAttribute(PROXY_ATTRIBUTE);
+                    if (proxy != null && proxy.getUsername() != null) {
+                        UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(proxy.getUsername(),
+                                proxy.getPassword());
+                        Header basicScheme = new BasicScheme().authenticate(credentials, request, null);
+                        request.addHeader("Proxy-Authorization", basicScheme.getValue());
+                    }
+                }
+            });
+        } else if (config.getProxyHost() != null) {
             if (config.getProxyUsername() != null) {
                 final AuthScope authscope = new AuthScope(config.getProxyHost(), config.getProxyPort());
                 final UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(config.getProxyUsername(), config.getProxyPassword());
@@ -271,23 +733,51 @@ public class PageFetcher extends Configurable {
         }
     }
 
-    private static class GzipDecompressingEntity extends HttpEntityWrapper {
+    private void handleLocalAddresses(CrawlConfig config) {
+        if (config.getLocalAddresses().isEmpty()) {
+            return;
+        }
+        List<InetAddress> addresses = new ArrayList<>();
+        for (String address : config.getLocalAddresses()) {
+            try {
+                addresses.add(InetAddress.getByName(address));
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Invalid local address: " + address, e);
+            }
+        }
+        localAddressPool = new LocalAddressPool(addresses, config.getMaxConnectionsPerLocalAddress(),
+                config.isLocalAddressHashByHost());
+    }
+
+    private class ThrottledEntity extends HttpEntityWrapper {
+
+        private final String host;
+        private final FetchWatch watch;
 
-        public GzipDecompressingEntity(final HttpEntity entity) {
+        public ThrottledEntity(final HttpEntity entity, final String host, final FetchWatch watch) {
             super(entity);
+            this.host = host;
+            this.watch = watch;
         }
 
         @Override
         public InputStream getContent() throws IOException, IllegalStateException {
-            // the wrapped entity's getContent() decides about repeatability
-            InputStream wrappedin = wrappedEntity.getContent();
-            return new GZIPInputStream(wrappedin);
+            return bandwidthLimiter.wrap(wrappedEntity.getContent(), host, watch);
+        }
+    }
+
+    private static class WatchedEntity extends HttpEntityWrapper {
+
+        private final FetchWatch watch;
+
+        public WatchedEntity(final HttpEntity entity, final FetchWatch watch) {
+            super(entity);
+            this.watch = watch;
         }
 
         @Override
-        public long getContentLength() {
-            // length of ungzipped content is not known
-            return -1;
+        public InputStream getContent() throws IOException, IllegalStateException {
+            return watch.wrap(wrappedEntity.getContent());
         }
     }
 }
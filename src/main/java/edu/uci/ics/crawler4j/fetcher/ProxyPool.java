@@ -0,0 +1,385 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A pool of outbound proxies. Every fetch leases a proxy from the pool: the
+ * healthy proxy with the lowest load (fetches in flight relative to its
+ * connection limit) is picked, and ties are broken by the lower average
+ * latency. With sticky assignment, all fetches of a host go through the same
+ * proxy for as long as it stays healthy.
+ * <p>
+ * A proxy is taken out of rotation after a few consecutive failures, and a
+ * background thread puts it back once it accepts connections again. A proxy
+ * that was taken out because it rejected its credentials stays out of rotation
+ * until a fetch through it succeeds: accepting connections says nothing about
+ * whether it accepts the credentials.
+ */
+public class ProxyPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProxyPool.class);
+
+    /**
+     * Number of consecutive failures after which a proxy is considered down.
+     */
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    /**
+     * Why a proxy was taken out of rotation.
+     */
+    public enum DownReason {
+        /** The proxy could not be connected to, or the connection failed. */
+        UNREACHABLE,
+        /** The proxy answered with 407 Proxy Authentication Required. */
+        AUTHENTICATION_FAILED
+    }
+
+    private final List<ProxyState> proxies;
+    private final boolean stickyPerHost;
+    private final int connectionTimeout;
+    private final int healthCheckInterval;
+
+    private HealthCheckThread healthChecker;
+
+    public ProxyPool(CrawlConfig config) {
+        List<ProxyState> states = new ArrayList<>();
+        for (ProxyServer proxy : config.getProxies()) {
+            int maxConnections = proxy.getMaxConnections() > 0 ? proxy.getMaxConnections()
+                    : config.getMaxConnectionsPerHost();
+            states.add(new ProxyState(proxy, maxConnections));
+        }
+        this.proxies = Collections.unmodifiableList(states);
+        this.stickyPerHost = config.isProxyStickyPerHost();
+        this.connectionTimeout = config.getConnectionTimeout();
+        this.healthCheckInterval = config.getProxyHealthCheckInterval();
+    }
+
+    /**
+     * Starts the health checks of the proxies, if they are enabled.
+     */
+    public void start() {
+        if (healthCheckInterval > 0) {
+            healthChecker = new HealthCheckThread();
+            healthChecker.start();
+        }
+    }
+
+    public void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdown();
+        }
+    }
+
+    public List<ProxyState> getProxies() {
+        return proxies;
+    }
+
+    /**
+     * Leases a proxy for fetching a page of the given host, waiting up to the
+     * given time for one to have a free connection.
+     *
+     * @return the lease, which must be released once the fetch is done, or
+     * null if no proxy became available in time.
+     */
+    public synchronized Lease acquire(String host, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            ProxyState proxy = choose(host);
+            if (proxy != null) {
+                proxy.inFlight++;
+                return new Lease(proxy);
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            wait(remaining);
+        }
+    }
+
+    private ProxyState choose(String host) {
+        // If every proxy is down, keep trying all of them rather than stopping
+        // the crawl until a health check succeeds.
+        boolean anyHealthy = false;
+        for (ProxyState proxy : proxies) {
+            if (proxy.healthy) {
+                anyHealthy = true;
+                break;
+            }
+        }
+
+        if (stickyPerHost && host != null) {
+            // Rendezvous hashing: a host only moves to another proxy when its
+            // own proxy goes down.
+            ProxyState sticky = null;
+            int bestScore = 0;
+            for (ProxyState proxy : proxies) {
+                if (proxy.healthy || !anyHealthy) {
+                    int score = mix(host.hashCode() * 31 + proxy.hash);
+                    if (sticky == null || score > bestScore) {
+                        sticky = proxy;
+                        bestScore = score;
+                    }
+                }
+            }
+            return sticky != null && sticky.inFlight < sticky.maxConnections ? sticky : null;
+        }
+
+        ProxyState best = null;
+        for (ProxyState proxy : proxies) {
+            if ((!proxy.healthy && anyHealthy) || proxy.inFlight >= proxy.maxConnections) {
+                continue;
+            }
+            if (best == null) {
+                best = proxy;
+                continue;
+            }
+            long load = (long) proxy.inFlight * best.maxConnections;
+            long bestLoad = (long) best.inFlight * proxy.maxConnections;
+            if (load < bestLoad || (load == bestLoad && proxy.averageLatency < best.averageLatency)) {
+                best = proxy;
+            }
+        }
+        return best;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Checks whether each proxy accepts connections, and takes it out of or
+     * puts it back into rotation accordingly. Proxies that rejected their
+     * credentials are left alone.
+     */
+    void checkHealth() {
+        for (ProxyState proxy : proxies) {
+            if (proxy.downReason == DownReason.AUTHENTICATION_FAILED) {
+                continue;
+            }
+            boolean reachable = isReachable(proxy.proxy);
+            synchronized (this) {
+                // The proxy may have rejected its credentials while it was probed
+                if (proxy.downReason != DownReason.AUTHENTICATION_FAILED) {
+                    setHealthy(proxy, reachable, DownReason.UNREACHABLE);
+                }
+            }
+        }
+    }
+
+    private boolean isReachable(ProxyServer proxy) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(proxy.getHost(), proxy.getPort()), connectionTimeout);
+            return true;
+        } catch (IOException e) {
+            logger.debug("Health check of proxy " + proxy + " failed: " + e.getMessage());
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Do nothing
+            }
+        }
+    }
+
+    private synchronized void setHealthy(ProxyState proxy, boolean healthy, DownReason reason) {
+        if (proxy.healthy != healthy) {
+            proxy.healthy = healthy;
+            proxy.consecutiveFailures = 0;
+            if (healthy) {
+                proxy.downReason = null;
+                logger.info("Proxy " + proxy.proxy + " is back in rotation.");
+                notifyAll();
+            } else {
+                proxy.downReason = reason;
+                logger.warn("Proxy " + proxy.proxy + " is taken out of rotation: " + reason);
+            }
+        }
+    }
+
+    /**
+     * The state of a proxy in the pool.
+     */
+    public static class ProxyState {
+
+        private final ProxyServer proxy;
+        private final int maxConnections;
+        private final int hash;
+
+        private int inFlight;
+        private int consecutiveFailures;
+        private volatile boolean healthy = true;
+        private volatile DownReason downReason;
+        private volatile long averageLatency;
+
+        ProxyState(ProxyServer proxy, int maxConnections) {
+            this.proxy = proxy;
+            this.maxConnections = maxConnections;
+            this.hash = proxy.toString().hashCode();
+        }
+
+        public ProxyServer getProxy() {
+            return proxy;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /**
+         * Returns why the proxy is out of rotation, or null if it is healthy.
+         */
+        public DownReason getDownReason() {
+            return downReason;
+        }
+
+        /**
+         * Returns the moving average of the time (in milliseconds) until
+         * response headers were received through this proxy.
+         */
+        public long getAverageLatency() {
+            return averageLatency;
+        }
+    }
+
+    /**
+     * A proxy leased for a single fetch.
+     */
+    public class Lease {
+
+        private final ProxyState state;
+        private boolean released;
+
+        Lease(ProxyState state) {
+            this.state = state;
+        }
+
+        public ProxyServer getProxy() {
+            return state.proxy;
+        }
+
+        /**
+         * Records that a response was received through the proxy after the
+         * given number of milliseconds. A proxy that was out of rotation (and
+         * was used because every proxy was) is put back.
+         */
+        public void succeeded(long latency) {
+            synchronized (ProxyPool.this) {
+                state.consecutiveFailures = 0;
+                state.averageLatency = state.averageLatency == 0 ? latency : (state.averageLatency * 7 + latency) / 8;
+                setHealthy(state, true, null);
+            }
+        }
+
+        /**
+         * Records that the fetch failed because the proxy could not be reached.
+         */
+        public void failed() {
+            failed(DownReason.UNREACHABLE);
+        }
+
+        /**
+         * Records that the proxy rejected its credentials.
+         */
+        public void authenticationFailed() {
+            failed(DownReason.AUTHENTICATION_FAILED);
+        }
+
+        private void failed(DownReason reason) {
+            synchronized (ProxyPool.this) {
+                if (!state.healthy) {
+                    // Used while every proxy is down: a rejection of its
+                    // credentials is news the health check cannot undo.
+                    if (reason == DownReason.AUTHENTICATION_FAILED) {
+                        state.downReason = reason;
+                    }
+                    return;
+                }
+                state.consecutiveFailures++;
+                if (state.consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                    setHealthy(state, false, reason);
+                }
+            }
+        }
+
+        public void release() {
+            synchronized (ProxyPool.this) {
+                if (!released) {
+                    released = true;
+                    state.inFlight--;
+                    ProxyPool.this.notifyAll();
+                }
+            }
+        }
+    }
+
+    private class HealthCheckThread extends Thread {
+
+        private volatile boolean shutdown;
+
+        HealthCheckThread() {
+            super("Proxy Health Check");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!shutdown) {
+                    synchronized (this) {
+                        wait(healthCheckInterval);
+                    }
+                    if (!shutdown) {
+                        checkHealth();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                // terminate
+            }
+        }
+
+        public void shutdown() {
+            shutdown = true;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+}
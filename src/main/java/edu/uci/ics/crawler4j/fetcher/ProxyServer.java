@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+/**
+ * An outbound proxy which is part of the proxy pool of a crawl.
+ */
+public class ProxyServer {
+
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final int maxConnections;
+
+    /**
+     * @param host           the host of the proxy
+     * @param port           the port of the proxy
+     * @param username       the username for proxy authentication, or null
+     * @param password       the password for proxy authentication, or null
+     * @param maxConnections the maximum number of concurrent fetches through
+     *                       this proxy, or 0 to use the max connections per
+     *                       host of the crawl config
+     */
+    public ProxyServer(String host, int port, String username, String password, int maxConnections) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.maxConnections = maxConnections;
+    }
+
+    public ProxyServer(String host, int port) {
+        this(host, port, null, null, 0);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Copies a response to a channel opened by a {@link CaptureSink}. A record
+ * header with the url and the fetch time, the status line and the headers
+ * are written when the capture starts, and the body is
+ * written as it is read by the crawler, so it is never buffered twice. The
+ * body is captured after the transfer encoding has been removed, but still
+ * in its content encoding.
+ * <p/>
+ * A failure to open or write to the channel is logged and ends the capture,
+ * but does not fail the fetch. The sink is told when a capture lacks part of
+ * the body, so that it never archives it as a complete response.
+ */
+public class RawCapture {
+
+    private static final Logger logger = LoggerFactory.getLogger(RawCapture.class);
+
+    private static final Charset HEADER_CHARSET = Charset.forName("ISO-8859-1");
+
+    private final CaptureSink sink;
+    private final String url;
+    private WritableByteChannel channel;
+
+    /**
+     * Whether the body has been read to its end, or there is none.
+     */
+    private boolean bodyRead = false;
+
+    /**
+     * Whether writing to the channel has failed.
+     */
+    private boolean failed = false;
+
+    private RawCapture(CaptureSink sink, String url, WritableByteChannel channel) {
+        this.sink = sink;
+        this.url = url;
+        this.channel = channel;
+    }
+
+    /**
+     * Starts capturing the given response, and makes its entity copy the body
+     * to the capture while it is read.
+     *
+     * @return the capture, which must be closed once the fetch is finished, or
+     * null if the sink did not want this response or could not open a channel
+     */
+    public static RawCapture start(CaptureSink sink, WebURL webUrl, HttpResponse response) {
+        WritableByteChannel channel;
+        try {
+            channel = sink.open(webUrl);
+        } catch (IOException e) {
+            logger.error("Couldn't open the capture of " + webUrl.getURL() + ": " + e.getMessage());
+            return null;
+        }
+        if (channel == null) {
+            return null;
+        }
+        RawCapture capture = new RawCapture(sink, webUrl.getURL(), channel);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder head = new StringBuilder();
+        head.append("URL: ").append(webUrl.getURL()).append("\r\n");
+        head.append("Fetch-Date: ").append(dateFormat.format(new Date())).append("\r\n");
+        head.append("\r\n");
+        head.append(response.getStatusLine()).append("\r\n");
+        for (Header header : response.getAllHeaders()) {
+            head.append(header.getName()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        head.append("\r\n");
+        capture.write(ByteBuffer.wrap(head.toString().getBytes(HEADER_CHARSET)));
+        if (response.getEntity() != null) {
+            response.setEntity(capture.new CapturingEntity(response.getEntity()));
+        } else {
+            capture.bodyRead = true;
+        }
+        return capture;
+    }
+
+    /**
+     * Ends the capture. If the body has not been read to its end by then, as
+     * when the fetch is aborted, the sink is told that the capture is
+     * incomplete.
+     */
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            sink.close(channel, bodyRead && !failed);
+        } catch (IOException e) {
+            logger.warn("Couldn't close the capture of " + url + ": " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private synchronized void write(ByteBuffer buffer) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            logger.error("Couldn't capture the response of " + url + ": " + e.getMessage());
+            failed = true;
+            close();
+        }
+    }
+
+    private synchronized void endOfBody() {
+        bodyRead = true;
+    }
+
+    private class CapturingEntity extends HttpEntityWrapper {
+
+        CapturingEntity(HttpEntity entity) {
+            super(entity);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new CapturingInputStream(wrappedEntity.getContent());
+        }
+    }
+
+    private class CapturingInputStream extends FilterInputStream {
+
+        private final ByteBuffer singleByte = ByteBuffer.allocate(1);
+
+        CapturingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                singleByte.clear();
+                singleByte.put((byte) b).flip();
+                write(singleByte);
+            } else {
+                endOfBody();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                write(ByteBuffer.wrap(b, off, n));
+            } else if (n == -1) {
+                endOfBody();
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Closing a response stream reads the rest of the body to keep the
+            // connection alive, so it is read here to capture it as well
+            try {
+                byte[] buffer = new byte[4096];
+                while (read(buffer, 0, buffer.length) != -1) {
+                    // Captured by read
+                }
+            } finally {
+                super.close();
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Read instead of skipping, so that no part of the body is lost
+            byte[] buffer = new byte[(int) Math.min(n, 4096)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+    }
+}
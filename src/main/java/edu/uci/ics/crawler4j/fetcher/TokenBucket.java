@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+/**
+ * A token bucket limiting a flow of bytes to a rate, with bursts of up to one
+ * second worth of bytes. Callers take the bytes they have used and are told
+ * how long to wait; the bucket may go into debt, so a caller never has to poll
+ * until enough tokens are available.
+ */
+public class TokenBucket {
+
+    private final long bytesPerSecond;
+
+    private double tokens;
+    private long lastRefillTime;
+
+    public TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    /**
+     * Takes the given number of bytes from the bucket.
+     *
+     * @return the time in nanoseconds the caller should wait before using more
+     * bytes, 0 if it can go on right away.
+     */
+    public synchronized long take(long bytes) {
+        refill(System.nanoTime());
+        tokens -= bytes;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) (-tokens * 1000000000L / bytesPerSecond);
+    }
+
+    /**
+     * Returns true if the bucket is full, which means it has not been used for
+     * at least a second and can be dropped without changing any limit.
+     */
+    public synchronized boolean isFull() {
+        refill(System.nanoTime());
+        return tokens >= bytesPerSecond;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillTime;
+        if (elapsed > 0) {
+            tokens = Math.min(bytesPerSecond, tokens + (double) elapsed * bytesPerSecond / 1000000000L);
+            lastRefillTime = now;
+        }
+    }
+}
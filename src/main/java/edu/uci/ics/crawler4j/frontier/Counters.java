@@ -34,6 +34,11 @@ public class Counters extends Configurable {
     public class ReservedCounterNames {
         public final static String SCHEDULED_PAGES = "Scheduled-Pages";
         public final static String PROCESSED_PAGES = "Processed-Pages";
+        public final static String ABORTED_OVERSIZED_PAGES = "Aborted-Oversized-Pages";
+        public final static String ABORTED_OVERSIZED_BYTES = "Aborted-Oversized-Bytes";
+        public final static String ABORTED_DEADLINE_EXCEEDED = "Aborted-Deadline-Exceeded";
+        public final static String ABORTED_TOO_SLOW = "Aborted-Too-Slow";
+        public final static String RETRIED_PAGES = "Retried-Pages";
     }
 
     protected Database statisticsDB = null;
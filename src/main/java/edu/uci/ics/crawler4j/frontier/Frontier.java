@@ -26,7 +26,11 @@ import edu.uci.ics.crawler4j.url.WebURL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
@@ -40,6 +44,14 @@ public class Frontier extends Configurable {
 
     protected InProcessPagesDB inProcessPages;
 
+    protected RetryURLsDB retryURLs;
+
+    /**
+     * The time at which the first URL in the retry database becomes due, or
+     * Long.MAX_VALUE if there is no URL waiting for a retry.
+     */
+    protected long nextRetryTime = Long.MAX_VALUE;
+
     protected final Object mutex = new Object();
     protected final Object waitingList = new Object();
 
@@ -47,6 +59,14 @@ public class Frontier extends Configurable {
 
     protected long scheduledPages;
 
+    /**
+     * The discovered urls which are waiting for the robots.txt of their host
+     * before they are scheduled. They are only kept in memory, and only get a
+     * docid once they are released, so that a url lost when the crawl stops
+     * is not taken for seen when a resumed crawl finds it again.
+     */
+    protected final Set<String> parkedURLs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     protected DocIDServer docIdServer;
 
     protected Counters counters;
@@ -57,6 +77,9 @@ public class Frontier extends Configurable {
         this.docIdServer = docIdServer;
         try {
             workQueues = new WorkQueues(env, "PendingURLsDB", config.isResumableCrawling());
+            retryURLs = new RetryURLsDB(env, config.isResumableCrawling());
+            // Taking nothing just looks up the first due time
+            nextRetryTime = retryURLs.takeDue(0, 0, new ArrayList<WebURL>());
             if (config.isResumableCrawling()) {
                 scheduledPages = counters.getValue(ReservedCounterNames.SCHEDULED_PAGES);
                 inProcessPages = new InProcessPagesDB(env);
@@ -123,14 +146,112 @@ public class Frontier extends Configurable {
         }
     }
 
+    /**
+     * Puts a url aside until the robots.txt of its host is known. The crawl is
+     * not finished while there are parked urls.
+     *
+     * @return false if the url is already parked
+     */
+    public boolean park(WebURL url) {
+        return parkedURLs.add(url.getURL());
+    }
+
+    /**
+     * Schedules a parked url, once the robots.txt of its host allows it. The
+     * url gets its docid here, unless it was seen in the meantime.
+     */
+    public void releaseParked(WebURL url) {
+        if (!isFinished && !docIdServer.isSeenBefore(url.getURL())) {
+            url.setDocid(docIdServer.getNewDocID(url.getURL()));
+            schedule(url);
+        }
+        // Only now, so that the queue never looks empty in between
+        parkedURLs.remove(url.getURL());
+        synchronized (waitingList) {
+            waitingList.notifyAll();
+        }
+    }
+
+    /**
+     * Forgets a parked url which the robots.txt of its host disallows.
+     */
+    public void dropParked(WebURL url) {
+        parkedURLs.remove(url.getURL());
+    }
+
+    /**
+     * Schedules a URL whose fetch failed with a transient error to be fetched
+     * again after an exponentially growing delay.
+     *
+     * @param url        the url to retry
+     * @param minDelay   the minimum delay in milliseconds, e.g. as requested by
+     *                   the server in a Retry-After header
+     * @return false if the url has already been retried the maximum number of
+     * times and is dropped.
+     */
+    public boolean scheduleRetry(WebURL url, long minDelay) {
+        if (retryURLs == null || url.getRetryCount() >= config.getMaxRetries()) {
+            return false;
+        }
+        long delay = (long) config.getRetryDelay() << Math.min(url.getRetryCount(), 20);
+        delay = Math.min(Math.max(delay, minDelay), config.getMaxRetryDelay());
+        url.setRetryCount((short) (url.getRetryCount() + 1));
+        url.setNotBefore(System.currentTimeMillis() + delay);
+        synchronized (mutex) {
+            try {
+                retryURLs.put(url);
+                nextRetryTime = Math.min(nextRetryTime, url.getNotBefore());
+                counters.increment(ReservedCounterNames.RETRIED_PAGES);
+            } catch (DatabaseException e) {
+                logger.error("Error while puting the url in the retry queue.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Puts the given url aside until the given time, without counting it as a
+     * retry. This is used when its host can not be fetched again before then.
+     */
+    public boolean scheduleDeferred(WebURL url, long notBefore) {
+        url.setNotBefore(notBefore);
+        synchronized (mutex) {
+            try {
+                retryURLs.put(url);
+                nextRetryTime = Math.min(nextRetryTime, notBefore);
+            } catch (DatabaseException e) {
+                logger.error("Error while puting the url in the retry queue.");
+                return false;
+            }
+        }
+        synchronized (waitingList) {
+            waitingList.notifyAll();
+        }
+        return true;
+    }
+
     public void getNextURLs(int max, List<WebURL> result) {
         while (true) {
+            long waitTime = 0;
             synchronized (mutex) {
                 if (isFinished) {
                     return;
                 }
                 try {
-                    List<WebURL> curResults = workQueues.get(max);
+                    long now = System.currentTimeMillis();
+                    if (nextRetryTime <= now) {
+                        nextRetryTime = retryURLs.takeDue(now, max, result);
+                        if (inProcessPages != null) {
+                            for (WebURL curPage : result) {
+                                inProcessPages.put(curPage);
+                            }
+                        }
+                    }
+                    if (nextRetryTime != Long.MAX_VALUE) {
+                        waitTime = Math.max(nextRetryTime - now, 1);
+                    }
+                    List<WebURL> curResults = workQueues.get(max - result.size());
                     workQueues.delete(curResults.size());
                     if (inProcessPages != null) {
                         for (WebURL curPage : curResults) {
@@ -148,7 +269,8 @@ public class Frontier extends Configurable {
             }
             try {
                 synchronized (waitingList) {
-                    waitingList.wait();
+                    // Wake up when the next retry becomes due, if any
+                    waitingList.wait(waitTime);
                 }
             } catch (InterruptedException ignored) {
                 // Do nothing
@@ -168,8 +290,24 @@ public class Frontier extends Configurable {
         }
     }
 
+    /**
+     * Takes a url which was put back into the frontier off the list of pages
+     * in process, without counting it as processed.
+     */
+    public void setRescheduled(WebURL webURL) {
+        if (inProcessPages != null) {
+            if (!inProcessPages.removeURL(webURL)) {
+                logger.warn("Could not remove: " + webURL.getURL() + " from list of processed pages.");
+            }
+        }
+    }
+
     public long getQueueLength() {
-        return workQueues.getLength();
+        long length = workQueues.getLength() + parkedURLs.size();
+        if (retryURLs != null) {
+            length += retryURLs.getLength();
+        }
+        return length;
     }
 
     public long getNumberOfAssignedPages() {
@@ -180,8 +318,15 @@ public class Frontier extends Configurable {
         return counters.getValue(ReservedCounterNames.PROCESSED_PAGES);
     }
 
+    public Counters getCounters() {
+        return counters;
+    }
+
     public void sync() {
         workQueues.sync();
+        if (retryURLs != null) {
+            retryURLs.sync();
+        }
         docIdServer.sync();
         counters.sync();
     }
@@ -193,6 +338,12 @@ public class Frontier extends Configurable {
     public void close() {
         sync();
         workQueues.close();
+        if (retryURLs != null) {
+            retryURLs.close();
+        }
+        if (inProcessPages != null) {
+            inProcessPages.close();
+        }
         counters.close();
     }
 
@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import com.sleepycat.je.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class remembers permanent (301) redirects, keyed by the URL that was
+ * moved. It is kept between crawls, so that links to known-moved URLs can be
+ * rewritten to their new location before they are ever fetched.
+ */
+public class RedirectsDB {
+
+    protected static final Logger logger = LoggerFactory.getLogger(RedirectsDB.class);
+
+    protected Database redirectsDB = null;
+
+    protected final Object mutex = new Object();
+
+    public RedirectsDB(Environment env) throws DatabaseException {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(false);
+        dbConfig.setDeferredWrite(true);
+        redirectsDB = env.openDatabase(null, "PermanentRedirects", dbConfig);
+        long count = redirectsDB.count();
+        if (count > 0) {
+            logger.info("Loaded " + count + " permanent redirects from previous crawls.");
+        }
+    }
+
+    /**
+     * Returns the URL the given url was permanently moved to, or null if it is
+     * not known to be moved.
+     */
+    public String get(String url) {
+        synchronized (mutex) {
+            try {
+                DatabaseEntry value = new DatabaseEntry();
+                OperationStatus result = redirectsDB.get(null, new DatabaseEntry(url.getBytes("UTF-8")), value, null);
+                if (result == OperationStatus.SUCCESS && value.getData().length > 0) {
+                    return new String(value.getData(), "UTF-8");
+                }
+            } catch (Exception e) {
+                logger.error("Error while reading the redirect of " + url, e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Follows the known permanent redirects starting from the given url.
+     *
+     * @param url      the url to resolve
+     * @param maxHops  the maximum number of redirects to follow
+     * @return the final location of the url, or null if it is not known to be
+     * moved or the redirects form a loop.
+     */
+    public String resolve(String url, int maxHops) {
+        Set<String> visited = new HashSet<>();
+        visited.add(url);
+        String target = url;
+        for (int hops = 0; hops < maxHops; hops++) {
+            String next = get(target);
+            if (next == null) {
+                break;
+            }
+            if (!visited.add(next)) {
+                // A loop of redirects, none of these URLs leads anywhere
+                return null;
+            }
+            target = next;
+        }
+        return target.equals(url) ? null : target;
+    }
+
+    public void put(String url, String movedToUrl) {
+        synchronized (mutex) {
+            try {
+                redirectsDB.put(null, new DatabaseEntry(url.getBytes("UTF-8")),
+                        new DatabaseEntry(movedToUrl.getBytes("UTF-8")));
+            } catch (Exception e) {
+                logger.error("Error while storing the redirect of " + url, e);
+            }
+        }
+    }
+
+    public void sync() {
+        if (redirectsDB == null) {
+            return;
+        }
+        try {
+            redirectsDB.sync();
+        } catch (DatabaseException e) {
+            logger.error("Error while writing the redirects to disk", e);
+        }
+    }
+
+    public void close() {
+        try {
+            redirectsDB.close();
+        } catch (DatabaseException e) {
+            logger.error("Error while closing the redirects database", e);
+        }
+    }
+}
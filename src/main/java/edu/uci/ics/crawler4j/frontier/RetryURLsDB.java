@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import com.sleepycat.je.*;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.Util;
+
+import java.util.List;
+
+/**
+ * This class keeps the URLs which are waiting to be retried after a transient
+ * failure, or whose fetch was deferred because their host could not be
+ * fetched again yet. The entries are keyed by the time they become due, so the ones
+ * that can be fetched now are always at the front of the database and the
+ * rest never has to be looked at.
+ */
+public class RetryURLsDB extends WorkQueues {
+
+    public RetryURLsDB(Environment env, boolean resumable) throws DatabaseException {
+        super(env, "RetryURLsDB", resumable);
+    }
+
+    /*
+     * Keys are 12 bytes: the first 8 bytes come from the not-before time of
+     * the URL and the rest come from its docid.
+     */
+    @Override
+    protected DatabaseEntry getDatabaseEntryKey(WebURL url) {
+        byte[] keyData = new byte[12];
+        long notBefore = url.getNotBefore();
+        for (int i = 0, shift = 56; i < 8; i++, shift -= 8) {
+            keyData[i] = (byte) (0xFF & (notBefore >> shift));
+        }
+        Util.putIntInByteArray(url.getDocid(), keyData, 8);
+        return new DatabaseEntry(keyData);
+    }
+
+    private static long getNotBefore(DatabaseEntry key) {
+        byte[] keyData = key.getData();
+        long notBefore = 0;
+        for (int i = 0; i < 8; i++) {
+            notBefore = (notBefore << 8) | (keyData[i] & 0xFF);
+        }
+        return notBefore;
+    }
+
+    /**
+     * Removes up to max URLs which are due at the given time from this
+     * database and adds them to the result.
+     *
+     * @return the time at which the next remaining URL becomes due, or
+     * Long.MAX_VALUE if there is none.
+     */
+    public long takeDue(long now, int max, List<WebURL> result) throws DatabaseException {
+        synchronized (mutex) {
+            int matches = 0;
+            long nextDue = Long.MAX_VALUE;
+
+            Cursor cursor = null;
+            OperationStatus status;
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry value = new DatabaseEntry();
+            Transaction txn;
+            if (resumable) {
+                txn = env.beginTransaction(null, null);
+            } else {
+                txn = null;
+            }
+            try {
+                cursor = urlsDB.openCursor(txn, null);
+                status = cursor.getFirst(key, value, null);
+
+                while (status == OperationStatus.SUCCESS) {
+                    long notBefore = getNotBefore(key);
+                    if (notBefore > now || matches == max) {
+                        nextDue = notBefore;
+                        break;
+                    }
+                    if (value.getData().length > 0) {
+                        result.add(webURLBinding.entryToObject(value));
+                        matches++;
+                    }
+                    cursor.delete();
+                    status = cursor.getNext(key, value, null);
+                }
+            } catch (DatabaseException e) {
+                if (txn != null) {
+                    txn.abort();
+                    txn = null;
+                }
+                throw e;
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+                if (txn != null) {
+                    txn.commit();
+                }
+            }
+            return nextDue;
+        }
+    }
+}
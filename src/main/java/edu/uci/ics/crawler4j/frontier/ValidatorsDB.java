@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import com.sleepycat.je.*;
+import edu.uci.ics.crawler4j.fetcher.FetchValidators;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class keeps the cache validators (ETag and Last-Modified) of fetched
+ * pages, keyed by URL, together with the outgoing URLs of each page. Unlike
+ * the frontier databases, it lives in an environment which is kept between
+ * crawls, so that a recurring crawl can issue conditional requests for pages
+ * it has seen in a previous run, and still follow the links of the pages
+ * which have not changed.
+ */
+public class ValidatorsDB {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ValidatorsDB.class);
+
+    protected Database validatorsDB = null;
+
+    protected final Object mutex = new Object();
+
+    public ValidatorsDB(Environment env) throws DatabaseException {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(false);
+        dbConfig.setDeferredWrite(true);
+        validatorsDB = env.openDatabase(null, "Validators", dbConfig);
+        long count = validatorsDB.count();
+        if (count > 0) {
+            logger.info("Loaded cache validators of " + count + " URLs from previous crawls.");
+        }
+    }
+
+    /**
+     * Returns the validators stored for the given url, or null if the page has
+     * not been fetched before or the server did not send any validators.
+     */
+    public FetchValidators get(String url) {
+        Entry entry = getEntry(url);
+        return (entry == null) ? null : entry.validators;
+    }
+
+    /**
+     * Returns the outgoing urls of the page the stored validators belong to,
+     * or null if no validators are stored for the given url. A page which is
+     * not modified since is not parsed again, so these are its links.
+     */
+    public List<String> getOutgoingUrls(String url) {
+        Entry entry = getEntry(url);
+        return (entry == null) ? null : entry.outgoingUrls;
+    }
+
+    /**
+     * Stores the validators of the given url and the outgoing urls of the
+     * page. Passing null validators removes any previously stored ones, so
+     * that the next fetch is unconditional.
+     */
+    public void put(String url, FetchValidators validators, List<String> outgoingUrls) {
+        synchronized (mutex) {
+            try {
+                DatabaseEntry key = new DatabaseEntry(url.getBytes("UTF-8"));
+                if (validators == null) {
+                    validatorsDB.delete(null, key);
+                } else {
+                    validatorsDB.put(null, key, new DatabaseEntry(encode(validators, outgoingUrls)));
+                }
+            } catch (Exception e) {
+                logger.error("Error while storing the cache validators of " + url, e);
+            }
+        }
+    }
+
+    public void sync() {
+        if (validatorsDB == null) {
+            return;
+        }
+        try {
+            validatorsDB.sync();
+        } catch (DatabaseException e) {
+            logger.error("Error while writing the cache validators to disk", e);
+        }
+    }
+
+    public void close() {
+        try {
+            validatorsDB.close();
+        } catch (DatabaseException e) {
+            logger.error("Error while closing the cache validators database", e);
+        }
+    }
+
+    private Entry getEntry(String url) {
+        synchronized (mutex) {
+            try {
+                DatabaseEntry value = new DatabaseEntry();
+                OperationStatus result = validatorsDB.get(null, new DatabaseEntry(url.getBytes("UTF-8")), value, null);
+                if (result == OperationStatus.SUCCESS && value.getData().length > 0) {
+                    return decode(value.getData());
+                }
+            } catch (Exception e) {
+                logger.error("Error while reading the cache validators of " + url, e);
+            }
+            return null;
+        }
+    }
+
+    /*
+     * Entries are stored as "etag\nlast-modified\n" followed by the outgoing
+     * urls, one per line. None of these can contain a line break since they
+     * come from HTTP header values and canonicalized urls.
+     */
+    static byte[] encode(FetchValidators validators, List<String> outgoingUrls) throws UnsupportedEncodingException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(validators.getETag() == null ? "" : validators.getETag()).append('\n');
+        sb.append(validators.getLastModified() == null ? "" : validators.getLastModified()).append('\n');
+        if (outgoingUrls != null) {
+            for (int i = 0; i < outgoingUrls.size(); i++) {
+                if (i > 0) {
+                    sb.append('\n');
+                }
+                sb.append(outgoingUrls.get(i));
+            }
+        }
+        return sb.toString().getBytes("UTF-8");
+    }
+
+    static Entry decode(byte[] data) throws UnsupportedEncodingException {
+        String str = new String(data, "UTF-8");
+        int first = str.indexOf('\n');
+        int second = (first < 0) ? -1 : str.indexOf('\n', first + 1);
+        if (second < 0) {
+            return null;
+        }
+        String eTag = str.substring(0, first);
+        String lastModified = str.substring(first + 1, second);
+        String urls = str.substring(second + 1);
+        Entry entry = new Entry();
+        entry.validators = new FetchValidators(eTag.isEmpty() ? null : eTag,
+                lastModified.isEmpty() ? null : lastModified);
+        entry.outgoingUrls = urls.isEmpty() ? new ArrayList<String>()
+                : new ArrayList<>(Arrays.asList(urls.split("\n")));
+        return entry;
+    }
+
+    static class Entry {
+        FetchValidators validators;
+        List<String> outgoingUrls;
+    }
+}
@@ -38,6 +38,14 @@ public class WebURLTupleBinding extends TupleBinding<WebURL> {
         webURL.setDepth(input.readShort());
         webURL.setPriority(input.readByte());
         webURL.setAnchor(input.readString());
+        // Entries written by older versions don't have the retry fields
+        if (input.available() > 0) {
+            webURL.setRetryCount(input.readShort());
+            webURL.setNotBefore(input.readLong());
+        }
+        if (input.available() > 0) {
+            webURL.setLastModified(input.readLong());
+        }
         return webURL;
     }
 
@@ -50,5 +58,8 @@ public class WebURLTupleBinding extends TupleBinding<WebURL> {
         output.writeShort(url.getDepth());
         output.writeByte(url.getPriority());
         output.writeString(url.getAnchor());
+        output.writeShort(url.getRetryCount());
+        output.writeLong(url.getNotBefore());
+        output.writeLong(url.getLastModified());
     }
 }
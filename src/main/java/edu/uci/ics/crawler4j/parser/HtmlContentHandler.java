@@ -55,6 +55,12 @@ public class HtmlContentHandler extends DefaultHandler {
     private boolean isWithinBodyElement;
     private StringBuilder bodyText;
 
+    /**
+     * The maximum number of characters of body text which are kept, or -1 for
+     * no limit.
+     */
+    private final int maxTextLength;
+
     private boolean entirePageNoFollow;
 
     private List<ExtractedUrlAnchorPair> outgoingUrls;
@@ -64,6 +70,15 @@ public class HtmlContentHandler extends DefaultHandler {
     private StringBuilder anchorText = new StringBuilder();
 
     public HtmlContentHandler() {
+        this(-1);
+    }
+
+    /**
+     * @param maxTextLength the maximum number of characters of body text which
+     *                      are kept, 0 to keep none or -1 for no limit
+     */
+    public HtmlContentHandler(int maxTextLength) {
+        this.maxTextLength = maxTextLength;
         isWithinBodyElement = false;
         bodyText = new StringBuilder();
         outgoingUrls = new ArrayList<>();
@@ -106,7 +121,7 @@ public class HtmlContentHandler extends DefaultHandler {
         }
 
         if (element == Element.BASE) {
-            if (base != null) { // We only consider the first occurrence of the
+            if (base == null) { // We only consider the first occurrence of the
                 // Base element.
                 String href = attributes.getValue("href");
                 if (href != null) {
@@ -166,14 +181,19 @@ public class HtmlContentHandler extends DefaultHandler {
         if (element == Element.A || element == Element.LINK) {
             anchorFlag = false;
             if (curUrl != null) {
-                String anchor = anchorText.toString().replaceAll("\n", " ").replaceAll("\t", " ").trim();
-                if (!anchor.isEmpty()) {
-                    if (anchor.length() > MAX_ANCHOR_LENGTH) {
-                        anchor = anchor.substring(0, MAX_ANCHOR_LENGTH) + "...";
-                    }
-                    curUrl.setAnchor(anchor);
+                // Leading whitespace was never appended
+                int length = anchorText.length();
+                while (length > 0 && anchorText.charAt(length - 1) <= ' ') {
+                    length--;
+                }
+                if (length > MAX_ANCHOR_LENGTH) {
+                    anchorText.setLength(MAX_ANCHOR_LENGTH);
+                    anchorText.append("...");
+                    curUrl.setAnchor(anchorText.toString());
+                } else if (length > 0) {
+                    curUrl.setAnchor(anchorText.substring(0, length));
                 }
-                anchorText.delete(0, anchorText.length());
+                anchorText.setLength(0);
             }
             curUrl = null;
         }
@@ -185,18 +205,67 @@ public class HtmlContentHandler extends DefaultHandler {
     @Override
     public void characters(char ch[], int start, int length) throws SAXException {
         if (isWithinBodyElement) {
-            bodyText.append(ch, start, length);
+            if (maxTextLength < 0) {
+                bodyText.append(ch, start, length);
+            } else if (bodyText.length() < maxTextLength) {
+                bodyText.append(ch, start, Math.min(length, maxTextLength - bodyText.length()));
+            }
 
             if (anchorFlag) {
-                anchorText.append(new String(ch, start, length));
+                appendAnchorText(ch, start, length);
+            }
+        }
+    }
+
+    /**
+     * Appends to the anchor text with line breaks and tabs turned into spaces,
+     * without leading whitespace, and only until it is known to be longer than
+     * MAX_ANCHOR_LENGTH once trimmed.
+     */
+    private void appendAnchorText(char[] ch, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            int anchorLength = anchorText.length();
+            if (anchorLength > MAX_ANCHOR_LENGTH && anchorText.charAt(anchorLength - 1) > ' ') {
+                return;
+            }
+            char c = ch[i];
+            if (c == '\n' || c == '\t') {
+                c = ' ';
+            }
+            if (anchorLength > 0 || c > ' ') {
+                anchorText.append(c);
             }
         }
     }
 
+    /**
+     * Returns whether text passed to {@link #characters(char[], int, int)} at
+     * this point would be kept, either as body text or as anchor text.
+     */
+    public boolean needsCharacters() {
+        return isWithinBodyElement && (anchorFlag || maxTextLength < 0 || bodyText.length() < maxTextLength);
+    }
+
     public String getBodyText() {
         return bodyText.toString();
     }
 
+    /**
+     * Returns the body text without leading and trailing whitespace, copying
+     * it only once.
+     */
+    public String getTrimmedBodyText() {
+        int start = 0;
+        int end = bodyText.length();
+        while (start < end && bodyText.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && bodyText.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return bodyText.substring(start, end);
+    }
+
     public List<ExtractedUrlAnchorPair> getOutgoingUrls() {
         return outgoingUrls;
     }
@@ -19,8 +19,16 @@ package edu.uci.ics.crawler4j.parser;
 
 import edu.uci.ics.crawler4j.url.WebURL;
 
+import java.nio.charset.Charset;
 import java.util.List;
 
+/**
+ * The data parsed from an HTML page.
+ * <p/>
+ * The html, text and outgoing urls of a page are only materialized the first
+ * time they are asked for, and then kept: a crawler whose visit() only looks
+ * at the url or title of a page never decodes or copies its content.
+ */
 public class HtmlParseData implements ParseData {
 
     private String html;
@@ -30,20 +38,74 @@ public class HtmlParseData implements ParseData {
 
     private List<WebURL> outgoingUrls;
 
+    /*
+     * What html, text and outgoingUrls are computed from, until they are.
+     */
+    private byte[] content;
+    private Charset charset;
+    private HtmlContentHandler contentHandler;
+    private String contextURL;
+    private int maxOutgoingUrls;
+    private boolean textPending;
+    private boolean outgoingUrlsPending;
+
     public String getHtml() {
+        if (html == null && content != null) {
+            html = (charset == null) ? new String(content) : new String(content, charset);
+            content = null;
+        }
         return html;
     }
 
     public void setHtml(String html) {
         this.html = html;
+        this.content = null;
+    }
+
+    /**
+     * Sets the content the html is decoded from when it is first asked for.
+     * A null charset stands for the platform default.
+     */
+    void setHtmlSource(byte[] content, Charset charset) {
+        this.html = null;
+        this.content = content;
+        this.charset = charset;
     }
 
     public String getText() {
+        if (textPending) {
+            text = contentHandler.getTrimmedBodyText();
+            textPending = false;
+            releaseSource();
+        }
         return text;
     }
 
     public void setText(String text) {
         this.text = text;
+        this.textPending = false;
+        releaseSource();
+    }
+
+    /**
+     * Sets the handler a page was parsed with, which the text and the outgoing
+     * urls are taken from when they are first asked for. The urls are
+     * resolved against contextURL.
+     */
+    void setSource(HtmlContentHandler contentHandler, String contextURL, int maxOutgoingUrls) {
+        this.contentHandler = contentHandler;
+        this.contextURL = contextURL;
+        this.maxOutgoingUrls = maxOutgoingUrls;
+        this.text = null;
+        this.outgoingUrls = null;
+        this.textPending = true;
+        this.outgoingUrlsPending = true;
+    }
+
+    private void releaseSource() {
+        if (!textPending && !outgoingUrlsPending) {
+            contentHandler = null;
+        }
     }
 
     public String getTitle() {
@@ -55,11 +117,18 @@ public class HtmlParseData implements ParseData {
     }
 
     public List<WebURL> getOutgoingUrls() {
+        if (outgoingUrlsPending) {
+            outgoingUrls = Parser.toWebURLs(contentHandler.getOutgoingUrls(), contextURL, maxOutgoingUrls);
+            outgoingUrlsPending = false;
+            releaseSource();
+        }
         return outgoingUrls;
     }
 
     public void setOutgoingUrls(List<WebURL> outgoingUrls) {
         this.outgoingUrls = outgoingUrls;
+        this.outgoingUrlsPending = false;
+        releaseSource();
     }
 
     public String getCanonicalUrl() {
@@ -72,7 +141,7 @@ public class HtmlParseData implements ParseData {
 
     @Override
     public String toString() {
-        return text;
+        return getText();
     }
 
 }
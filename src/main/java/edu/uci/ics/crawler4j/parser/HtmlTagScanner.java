@@ -0,0 +1,589 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.parser;
+
+import edu.uci.ics.crawler4j.util.Util;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A lightweight alternative to Tika's HTML parser, for crawls which only need
+ * the links, title and the few head elements of pages.
+ * <p/>
+ * It scans the raw bytes of a page for tags and feeds the ones
+ * {@link HtmlContentHandler} reacts to, with their attributes, to it as SAX
+ * events, so both parsers follow the same rules for links, base, canonical,
+ * meta robots and refresh. The attributes of other tags are skipped without
+ * being decoded, and scripts, styles and comments are skipped entirely. Text
+ * is only decoded once the body has started, and only if the handler keeps
+ * it.
+ * <p/>
+ * Unlike Tika it does not build a DOM-like XHTML view of the page: markup is
+ * taken as it is, without fixing misnested tags. Only charsets in which ASCII
+ * characters are single bytes can be scanned; see
+ * {@link #detectCharset(byte[], int, String)}.
+ */
+public class HtmlTagScanner {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    /**
+     * How far into a page a meta charset declaration is looked for.
+     */
+    private static final int CHARSET_SNIFF_LENGTH = 1024;
+
+    private static final int OTHER = -1;
+    private static final int A = 0;
+    private static final int LINK = 1;
+    private static final int IFRAME = 2;
+    private static final int FRAME = 3;
+    private static final int BASE = 4;
+    private static final int META = 5;
+    private static final int BODY = 6;
+    private static final int TITLE = 7;
+    private static final int SCRIPT = 8;
+    private static final int STYLE = 9;
+    private static final int HTML = 10;
+    private static final int HEAD = 11;
+    private static final int NOSCRIPT = 12;
+
+    /**
+     * The names of the tags above, indexed by their code. The first seven are
+     * passed to the content handler.
+     */
+    private static final String[] TAG_NAMES = {
+        "a", "link", "iframe", "frame", "base", "meta", "body",
+        "title", "script", "style", "html", "head", "noscript"
+    };
+
+    private static final byte[][] TAG_NAME_BYTES = new byte[TAG_NAMES.length][];
+
+    static {
+        for (int i = 0; i < TAG_NAMES.length; i++) {
+            TAG_NAME_BYTES[i] = TAG_NAMES[i].getBytes(ISO_8859_1);
+        }
+    }
+
+    /**
+     * The named entities of HTML 4, and &amp;apos;, with their code points.
+     */
+    private static final String ENTITY_TABLE = ""
+            + "quot=34 amp=38 apos=39 lt=60 gt=62 nbsp=160 iexcl=161 cent=162 pound=163 curren=164 yen=165 "
+            + "brvbar=166 sect=167 uml=168 copy=169 ordf=170 laquo=171 not=172 shy=173 reg=174 macr=175 "
+            + "deg=176 plusmn=177 sup2=178 sup3=179 acute=180 micro=181 para=182 middot=183 cedil=184 "
+            + "sup1=185 ordm=186 raquo=187 frac14=188 frac12=189 frac34=190 iquest=191 Agrave=192 "
+            + "Aacute=193 Acirc=194 Atilde=195 Auml=196 Aring=197 AElig=198 Ccedil=199 Egrave=200 "
+            + "Eacute=201 Ecirc=202 Euml=203 Igrave=204 Iacute=205 Icirc=206 Iuml=207 ETH=208 Ntilde=209 "
+            + "Ograve=210 Oacute=211 Ocirc=212 Otilde=213 Ouml=214 times=215 Oslash=216 Ugrave=217 "
+            + "Uacute=218 Ucirc=219 Uuml=220 Yacute=221 THORN=222 szlig=223 agrave=224 aacute=225 "
+            + "acirc=226 atilde=227 auml=228 aring=229 aelig=230 ccedil=231 egrave=232 eacute=233 "
+            + "ecirc=234 euml=235 igrave=236 iacute=237 icirc=238 iuml=239 eth=240 ntilde=241 ograve=242 "
+            + "oacute=243 ocirc=244 otilde=245 ouml=246 divide=247 oslash=248 ugrave=249 uacute=250 "
+            + "ucirc=251 uuml=252 yacute=253 thorn=254 yuml=255 OElig=338 oelig=339 Scaron=352 "
+            + "scaron=353 Yuml=376 fnof=402 circ=710 tilde=732 Alpha=913 Beta=914 Gamma=915 Delta=916 "
+            + "Epsilon=917 Zeta=918 Eta=919 Theta=920 Iota=921 Kappa=922 Lambda=923 Mu=924 Nu=925 Xi=926 "
+            + "Omicron=927 Pi=928 Rho=929 Sigma=931 Tau=932 Upsilon=933 Phi=934 Chi=935 Psi=936 "
+            + "Omega=937 alpha=945 beta=946 gamma=947 delta=948 epsilon=949 zeta=950 eta=951 theta=952 "
+            + "iota=953 kappa=954 lambda=955 mu=956 nu=957 xi=958 omicron=959 pi=960 rho=961 sigmaf=962 "
+            + "sigma=963 tau=964 upsilon=965 phi=966 chi=967 psi=968 omega=969 thetasym=977 upsih=978 "
+            + "piv=982 ensp=8194 emsp=8195 thinsp=8201 zwnj=8204 zwj=8205 lrm=8206 rlm=8207 ndash=8211 "
+            + "mdash=8212 lsquo=8216 rsquo=8217 sbquo=8218 ldquo=8220 rdquo=8221 bdquo=8222 dagger=8224 "
+            + "Dagger=8225 bull=8226 hellip=8230 permil=8240 prime=8242 Prime=8243 lsaquo=8249 "
+            + "rsaquo=8250 oline=8254 frasl=8260 euro=8364 image=8465 weierp=8472 real=8476 trade=8482 "
+            + "alefsym=8501 larr=8592 uarr=8593 rarr=8594 darr=8595 harr=8596 crarr=8629 lArr=8656 "
+            + "uArr=8657 rArr=8658 dArr=8659 hArr=8660 forall=8704 part=8706 exist=8707 empty=8709 "
+            + "nabla=8711 isin=8712 notin=8713 ni=8715 prod=8719 sum=8721 minus=8722 lowast=8727 "
+            + "radic=8730 prop=8733 infin=8734 ang=8736 and=8743 or=8744 cap=8745 cup=8746 int=8747 "
+            + "there4=8756 sim=8764 cong=8773 asymp=8776 ne=8800 equiv=8801 le=8804 ge=8805 sub=8834 "
+            + "sup=8835 nsub=8836 sube=8838 supe=8839 oplus=8853 otimes=8855 perp=8869 sdot=8901 "
+            + "lceil=8968 rceil=8969 lfloor=8970 rfloor=8971 lang=9001 rang=9002 loz=9674 spades=9824 "
+            + "clubs=9827 hearts=9829 diams=9830";
+
+    /**
+     * The longest entity name, or character reference, after the ampersand.
+     */
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    private static final Map<String, Character> ENTITIES = new HashMap<>();
+
+    static {
+        for (String entry : ENTITY_TABLE.split(" ")) {
+            int equals = entry.indexOf('=');
+            ENTITIES.put(entry.substring(0, equals), (char) Integer.parseInt(entry.substring(equals + 1)));
+        }
+    }
+
+    private final byte[] data;
+    private final int length;
+    private final Charset charset;
+    private final HtmlContentHandler handler;
+
+    private final AttributesImpl attributes = new AttributesImpl();
+    private boolean selfClosing;
+
+    private boolean inBody;
+    private boolean inAnchor;
+    private String title;
+
+    public HtmlTagScanner(byte[] data, int length, Charset charset, HtmlContentHandler handler) {
+        this.data = data;
+        this.length = length;
+        this.charset = charset;
+        this.handler = handler;
+    }
+
+    /**
+     * Returns the text of the first title element, or null if the page has
+     * none.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    public void scan() throws SAXException {
+        int pos = 0;
+        int textStart = 0;
+        while (true) {
+            int lt = indexOf((byte) '<', pos, length);
+            if (lt < 0 || lt + 1 >= length) {
+                break;
+            }
+            byte next = data[lt + 1];
+            if (next == '!' || next == '?') {
+                text(textStart, lt);
+                pos = skipDeclaration(lt);
+                textStart = pos;
+                continue;
+            }
+            boolean endTag = (next == '/');
+            int nameStart = endTag ? lt + 2 : lt + 1;
+            if (nameStart >= length || !isLetter(data[nameStart])) {
+                // A '<' which doesn't start a tag is text
+                pos = lt + 1;
+                continue;
+            }
+            text(textStart, lt);
+            int nameEnd = nameStart;
+            while (nameEnd < length && isNameChar(data[nameEnd])) {
+                nameEnd++;
+            }
+            int tag = tagCode(nameStart, nameEnd);
+            pos = endTag ? endTag(tag, nameEnd) : startTag(tag, nameEnd);
+            textStart = pos;
+        }
+        text(textStart, length);
+        if (inAnchor) {
+            handler.endElement("", TAG_NAMES[A], TAG_NAMES[A]);
+        }
+        if (inBody) {
+            handler.endElement("", TAG_NAMES[BODY], TAG_NAMES[BODY]);
+        }
+    }
+
+    private int startTag(int tag, int pos) throws SAXException {
+        boolean handled = tag >= 0 && tag <= BODY;
+        pos = parseAttributes(pos, handled);
+
+        if (tag == SCRIPT || tag == STYLE) {
+            return selfClosing ? pos : skipRawText(pos, tag);
+        }
+        if (tag == TITLE) {
+            int end = indexOfEndTag(pos, TITLE);
+            if (title == null) {
+                title = decodeEntities(new String(data, pos, end - pos, charset)).trim();
+            }
+            return skipEndTag(end);
+        }
+        if (!inBody && (tag == BODY || !isHeadTag(tag))) {
+            // Like browsers, the body starts with the first element which
+            // can't be in the head, if there is no body tag
+            inBody = true;
+            if (tag == BODY) {
+                handler.startElement("", TAG_NAMES[BODY], TAG_NAMES[BODY], attributes);
+                return pos;
+            }
+            handler.startElement("", TAG_NAMES[BODY], TAG_NAMES[BODY], new AttributesImpl());
+        }
+        if (!handled || tag == BODY) {
+            return pos;
+        }
+        if (tag == A && inAnchor) {
+            // Anchors can't be nested; a new one closes the previous one
+            handler.endElement("", TAG_NAMES[A], TAG_NAMES[A]);
+        }
+        handler.startElement("", TAG_NAMES[tag], TAG_NAMES[tag], attributes);
+        if (tag == A && !selfClosing) {
+            inAnchor = true;
+        } else if (tag != IFRAME) {
+            // Void elements end right away
+            handler.endElement("", TAG_NAMES[tag], TAG_NAMES[tag]);
+        }
+        return pos;
+    }
+
+    private int endTag(int tag, int pos) throws SAXException {
+        int gt = indexOf((byte) '>', pos, length);
+        if (tag == A && inAnchor) {
+            inAnchor = false;
+            handler.endElement("", TAG_NAMES[A], TAG_NAMES[A]);
+        }
+        return (gt < 0) ? length : gt + 1;
+    }
+
+    /**
+     * Hands the text between two tags to the handler, once the body has
+     * started. Text which is not whitespace starts the body.
+     */
+    private void text(int from, int to) throws SAXException {
+        if (from >= to) {
+            return;
+        }
+        if (!inBody) {
+            if (isBlank(from, to)) {
+                return;
+            }
+            inBody = true;
+            handler.startElement("", TAG_NAMES[BODY], TAG_NAMES[BODY], new AttributesImpl());
+        }
+        if (!handler.needsCharacters()) {
+            // Don't decode text which would be thrown away
+            return;
+        }
+        char[] chars = decodeEntities(new String(data, from, to - from, charset)).toCharArray();
+        handler.characters(chars, 0, chars.length);
+    }
+
+    /**
+     * Parses the attributes of a tag up to its closing '>'. They are only
+     * decoded if keep is true.
+     *
+     * @return the position after the tag
+     */
+    private int parseAttributes(int pos, boolean keep) {
+        attributes.clear();
+        selfClosing = false;
+        while (pos < length) {
+            byte b = data[pos];
+            if (b == '>') {
+                return pos + 1;
+            }
+            if (b == '/' && pos + 1 < length && data[pos + 1] == '>') {
+                selfClosing = true;
+                return pos + 2;
+            }
+            if (isWhitespace(b) || b == '/') {
+                pos++;
+                continue;
+            }
+            int nameStart = pos;
+            while (pos < length && !isWhitespace(data[pos]) && data[pos] != '=' && data[pos] != '>'
+                    && data[pos] != '/') {
+                pos++;
+            }
+            int nameEnd = pos;
+            while (pos < length && isWhitespace(data[pos])) {
+                pos++;
+            }
+            int valueStart = pos;
+            int valueEnd = pos;
+            if (pos < length && data[pos] == '=') {
+                pos++;
+                while (pos < length && isWhitespace(data[pos])) {
+                    pos++;
+                }
+                if (pos < length && (data[pos] == '"' || data[pos] == '\'')) {
+                    byte quote = data[pos];
+                    valueStart = ++pos;
+                    while (pos < length && data[pos] != quote) {
+                        pos++;
+                    }
+                    valueEnd = pos;
+                    if (pos < length) {
+                        pos++;
+                    }
+                } else {
+                    valueStart = pos;
+                    while (pos < length && !isWhitespace(data[pos]) && data[pos] != '>') {
+                        pos++;
+                    }
+                    valueEnd = pos;
+                }
+            }
+            if (keep && nameEnd > nameStart) {
+                String name = new String(data, nameStart, nameEnd - nameStart, ISO_8859_1).toLowerCase();
+                // Like browsers, the first of duplicate attributes wins
+                if (attributes.getIndex(name) < 0) {
+                    String value = decodeEntities(new String(data, valueStart, valueEnd - valueStart, charset));
+                    attributes.addAttribute("", name, name, "CDATA", value);
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Skips a comment, doctype, CDATA section or processing instruction.
+     */
+    private int skipDeclaration(int lt) {
+        if (startsWith(lt, "<!--")) {
+            int end = indexOf("-->", lt + 4);
+            return (end < 0) ? length : end + 3;
+        }
+        if (startsWith(lt, "<![CDATA[")) {
+            int end = indexOf("]]>", lt + 9);
+            return (end < 0) ? length : end + 3;
+        }
+        int gt = indexOf((byte) '>', lt, length);
+        return (gt < 0) ? length : gt + 1;
+    }
+
+    /**
+     * Skips the content of a script or style element, which is not markup.
+     */
+    private int skipRawText(int pos, int tag) {
+        return skipEndTag(indexOfEndTag(pos, tag));
+    }
+
+    private int skipEndTag(int end) {
+        if (end >= length) {
+            return length;
+        }
+        int gt = indexOf((byte) '>', end, length);
+        return (gt < 0) ? length : gt + 1;
+    }
+
+    /**
+     * Returns the position of the end tag of the given element, or the end of
+     * the page if it is not closed.
+     */
+    private int indexOfEndTag(int pos, int tag) {
+        byte[] name = TAG_NAME_BYTES[tag];
+        while (true) {
+            int lt = indexOf((byte) '<', pos, length);
+            if (lt < 0 || lt + 2 + name.length > length) {
+                return length;
+            }
+            if (data[lt + 1] == '/' && equalsIgnoreCase(lt + 2, lt + 2 + name.length, name)
+                    && (lt + 2 + name.length == length || !isNameChar(data[lt + 2 + name.length]))) {
+                return lt;
+            }
+            pos = lt + 1;
+        }
+    }
+
+    private int tagCode(int from, int to) {
+        for (int i = 0; i < TAG_NAME_BYTES.length; i++) {
+            if (equalsIgnoreCase(from, to, TAG_NAME_BYTES[i])) {
+                return i;
+            }
+        }
+        return OTHER;
+    }
+
+    private static boolean isHeadTag(int tag) {
+        return tag == TITLE || tag == META || tag == LINK || tag == BASE || tag == SCRIPT || tag == STYLE
+                || tag == HTML || tag == HEAD || tag == NOSCRIPT;
+    }
+
+    private boolean equalsIgnoreCase(int from, int to, byte[] lowerCase) {
+        if (to - from != lowerCase.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length; i++) {
+            if (toLowerCase(data[from + i]) != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWith(int pos, String prefix) {
+        if (pos + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (toLowerCase(data[pos + i]) != Character.toLowerCase(prefix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(String str, int from) {
+        byte first = (byte) str.charAt(0);
+        for (int i = indexOf(first, from, length); i >= 0; i = indexOf(first, i + 1, length)) {
+            if (startsWith(i, str)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isWhitespace(data[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+    }
+
+    private static boolean isLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static boolean isNameChar(byte b) {
+        return isLetter(b) || (b >= '0' && b <= '9') || b == '-' || b == ':' || b == '_';
+    }
+
+    private static byte toLowerCase(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /**
+     * Replaces character references and the named entities of HTML 4.
+     * Unknown entities, and ampersands which don't start one, are left as
+     * they are.
+     */
+    static String decodeEntities(String str) {
+        int amp = str.indexOf('&');
+        if (amp < 0) {
+            return str;
+        }
+        StringBuilder sb = new StringBuilder(str.length());
+        int pos = 0;
+        while (amp >= 0) {
+            int end = amp + 1;
+            int limit = Math.min(str.length(), end + MAX_ENTITY_LENGTH);
+            while (end < limit && isEntityChar(str.charAt(end))) {
+                end++;
+            }
+            int codePoint = -1;
+            if (end > amp + 1 && end < str.length() && str.charAt(end) == ';') {
+                codePoint = entity(str, amp + 1, end);
+            }
+            if (codePoint >= 0) {
+                sb.append(str, pos, amp);
+                sb.appendCodePoint(codePoint);
+                pos = end + 1;
+            }
+            amp = str.indexOf('&', amp + 1);
+        }
+        sb.append(str, pos, str.length());
+        return sb.toString();
+    }
+
+    private static boolean isEntityChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '#';
+    }
+
+    private static int entity(String str, int from, int to) {
+        if (from < to && str.charAt(from) == '#') {
+            try {
+                int codePoint;
+                if (from + 1 < to && (str.charAt(from + 1) == 'x' || str.charAt(from + 1) == 'X')) {
+                    codePoint = Integer.parseInt(str.substring(from + 2, to), 16);
+                } else {
+                    codePoint = Integer.parseInt(str.substring(from + 1, to));
+                }
+                return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        Character c = ENTITIES.get(str.substring(from, to));
+        return (c == null) ? -1 : c;
+    }
+
+    /**
+     * Picks the charset to scan a page with: the declared one if it is
+     * supported, else the one of a meta declaration near the start of the
+     * page, else UTF-8 if the page is valid UTF-8, else windows-1252.
+     *
+     * @return the charset, or null if it is not one the scanner can handle,
+     * such as UTF-16
+     */
+    public static Charset detectCharset(byte[] data, int length, String declaredCharset) {
+        Charset charset = forName(declaredCharset);
+        if (charset == null) {
+            String head = new String(data, 0, Math.min(length, CHARSET_SNIFF_LENGTH), ISO_8859_1).toLowerCase();
+            int pos = head.indexOf("charset=");
+            if (pos >= 0) {
+                pos += 8;
+                while (pos < head.length() && (head.charAt(pos) == '"' || head.charAt(pos) == '\'')) {
+                    pos++;
+                }
+                int end = pos;
+                while (end < head.length() && isCharsetNameChar(head.charAt(end))) {
+                    end++;
+                }
+                charset = forName(head.substring(pos, end));
+            }
+        }
+        if (charset == null) {
+            charset = Util.isValidUtf8(data, length) ? UTF_8 : WINDOWS_1252;
+        }
+        return isAsciiCompatible(charset) ? charset : null;
+    }
+
+    private static Charset forName(String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isCharsetNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.' || c == ':';
+    }
+
+    /**
+     * Checks that the markup characters are encoded as single ASCII bytes.
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        String markup = "<a href=\"/x\" title='y'>&amp;</a>!-?[] \t\r\n";
+        return Arrays.equals(markup.getBytes(charset), markup.getBytes(ISO_8859_1));
+    }
+}
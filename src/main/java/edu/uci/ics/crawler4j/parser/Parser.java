@@ -29,12 +29,15 @@ import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.html.HtmlParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -63,6 +66,10 @@ public class Parser extends Configurable {
             page.setParseData(BinaryParseData.getInstance());
             return true;
 
+        } else if (page.getContentData() == null) {
+            // The content could not be decoded, see Page.getContentData()
+            return false;
+
         } else if (Util.hasPlainTextContent(page.getContentType())) {
             try {
                 TextParseData parseData = new TextParseData();
@@ -79,19 +86,61 @@ public class Parser extends Configurable {
             return false;
         }
 
+        if (config.isLightweightHtmlParsing()) {
+            return scanHtml(page, page.getContentData(), page.getContentData().length, contextURL);
+        }
+        return parseHtml(page, new ByteArrayInputStream(page.getContentData()), contextURL);
+    }
+
+    /**
+     * Parses an HTML page while reading it from the given stream, so the page
+     * does not have to be buffered in memory first. The stream is closed once
+     * it is parsed. The html of the parse data is only set if the page has
+     * content data after the stream is closed. The lightweight parser reads
+     * the whole page before scanning it, so the crawler never streams pages
+     * when it is used.
+     */
+    public boolean parseHtml(Page page, InputStream inputStream, String contextURL) {
+        if (config.isLightweightHtmlParsing()) {
+            // The scanner needs the whole page
+            byte[] buffer = new byte[16 * 1024];
+            int length = 0;
+            try {
+                int n;
+                while ((n = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+                    length += n;
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                }
+            } catch (IOException e) {
+                logger.error(e.getMessage() + ", while parsing: " + page.getWebURL().getURL());
+            } finally {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    logger.error(e.getMessage() + ", while parsing: " + page.getWebURL().getURL());
+                }
+            }
+            return scanHtml(page, buffer, length, contextURL);
+        }
+        return parseWithTika(page, inputStream, contextURL);
+    }
+
+    private boolean parseWithTika(Page page, InputStream inputStream, String contextURL) {
         Metadata metadata = new Metadata();
-        HtmlContentHandler contentHandler = new HtmlContentHandler();
-        InputStream inputStream = null;
+        HtmlContentHandler contentHandler = new HtmlContentHandler(config.getMaxTextLength());
         try {
-            inputStream = new ByteArrayInputStream(page.getContentData());
+            if (!inputStream.markSupported()) {
+                // Tika marks the stream to detect the encoding
+                inputStream = new BufferedInputStream(inputStream);
+            }
             htmlParser.parse(inputStream, contentHandler, metadata, parseContext);
         } catch (Exception e) {
             logger.error(e.getMessage() + ", while parsing: " + page.getWebURL().getURL());
         } finally {
             try {
-                if (inputStream != null) {
-                    inputStream.close();
-                }
+                inputStream.close();
             } catch (IOException e) {
                 logger.error(e.getMessage() + ", while parsing: " + page.getWebURL().getURL());
             }
@@ -100,14 +149,36 @@ public class Parser extends Configurable {
         if (page.getContentCharset() == null) {
             page.setContentCharset(metadata.get("Content-Encoding"));
         }
+        return setParseData(page, contentHandler, metadata.get(DublinCore.TITLE), contextURL);
+    }
+
+    /**
+     * Parses an HTML page with {@link HtmlTagScanner} instead of Tika. Pages in
+     * a charset the scanner can't handle are still parsed with Tika.
+     */
+    private boolean scanHtml(Page page, byte[] data, int length, String contextURL) {
+        Charset charset = HtmlTagScanner.detectCharset(data, length, page.getContentCharset());
+        if (charset == null) {
+            return parseWithTika(page, new ByteArrayInputStream(data, 0, length), contextURL);
+        }
+        if (page.getContentCharset() == null) {
+            page.setContentCharset(charset.name());
+        }
+        HtmlContentHandler contentHandler = new HtmlContentHandler(config.getMaxTextLength());
+        HtmlTagScanner scanner = new HtmlTagScanner(data, length, charset, contentHandler);
+        try {
+            scanner.scan();
+        } catch (SAXException e) {
+            logger.error(e.getMessage() + ", while parsing: " + page.getWebURL().getURL());
+        }
+        return setParseData(page, contentHandler, scanner.getTitle(), contextURL);
+    }
 
+    private boolean setParseData(Page page, HtmlContentHandler contentHandler, String title, String contextURL) {
         HtmlParseData parseData = new HtmlParseData();
-        parseData.setText(contentHandler.getBodyText().trim());
-        parseData.setTitle(metadata.get(DublinCore.TITLE));
+        parseData.setTitle(title);
         page.setMetaRefresh(contentHandler.getMetaRefresh());
 
-        List<WebURL> outgoingUrls = new ArrayList<>();
-
         String baseURL = contentHandler.getBaseUrl();
         if (baseURL != null) {
             contextURL = baseURL;
@@ -116,9 +187,42 @@ public class Parser extends Configurable {
             parseData.setCanonicalUrl(URLCanonicalizer.getCanonicalURL(contentHandler.getCanonicalUrl(), contextURL));
         }
 
+        // The text and links are only copied out of the handler when asked for
+        parseData.setSource(contentHandler, contextURL, config.getMaxOutgoingLinksToFollow());
+
+        if (config.isIncludeHtmlInParseData() && page.getContentData() != null) {
+            Charset charset = null;
+            if (page.getContentCharset() != null) {
+                try {
+                    charset = Charset.forName(page.getContentCharset());
+                } catch (IllegalArgumentException e) {
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+            parseData.setHtmlSource(page.getContentData(), charset);
+        }
+
+        page.setParseData(parseData);
+        page.setCanonicalUrl(parseData.getCanonicalUrl());
+        return true;
+
+    }
+
+    /**
+     * Resolves the links extracted from a page against contextURL, skipping
+     * the ones which can't be crawled.
+     */
+    static List<WebURL> toWebURLs(List<ExtractedUrlAnchorPair> extractedUrls, String contextURL,
+                                  int maxOutgoingLinks) {
+        List<WebURL> outgoingUrls = new ArrayList<>();
         int urlCount = 0;
-        for (ExtractedUrlAnchorPair urlAnchorPair : contentHandler.getOutgoingUrls()) {
+        for (ExtractedUrlAnchorPair urlAnchorPair : extractedUrls) {
             String href = urlAnchorPair.getHref();
+            if (href == null) {
+                // A meta refresh without a url
+                continue;
+            }
             href = href.trim();
             if (href.length() == 0) {
                 continue;
@@ -136,30 +240,13 @@ public class Parser extends Configurable {
                     webURL.setAnchor(urlAnchorPair.getAnchor());
                     outgoingUrls.add(webURL);
                     urlCount++;
-                    if (urlCount > config.getMaxOutgoingLinksToFollow()) {
+                    if (urlCount > maxOutgoingLinks) {
                         break;
                     }
                 }
             }
         }
-
-        parseData.setOutgoingUrls(outgoingUrls);
-
-        try {
-            if (page.getContentCharset() == null) {
-                parseData.setHtml(new String(page.getContentData()));
-            } else {
-                parseData.setHtml(new String(page.getContentData(), page.getContentCharset()));
-            }
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return false;
-        }
-
-        page.setParseData(parseData);
-        page.setCanonicalUrl(parseData.getCanonicalUrl());
-        return true;
-
+        return outgoingUrls;
     }
 
 }
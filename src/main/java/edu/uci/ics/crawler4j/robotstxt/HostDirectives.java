@@ -17,6 +17,9 @@
 
 package edu.uci.ics.crawler4j.robotstxt;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
  */
@@ -24,44 +27,163 @@ public class HostDirectives {
 
     // If we fetched the directives for this host more than
     // 24 hours, we have to re-fetch it.
-    private static final long EXPIRATION_DELAY = 24 * 60 * 1000L;
+    private static final long EXPIRATION_DELAY = 24 * 60 * 60 * 1000L;
+
+    private final List<String> disallows = new ArrayList<>();
+    private final List<String> allows = new ArrayList<>();
 
-    private RuleSet disallows = new RuleSet();
-    private RuleSet allows = new RuleSet();
+    private RobotsRules.Builder rulesBuilder = new RobotsRules.Builder();
+
+    /**
+     * The compiled rules, or null if rules have been added since they were
+     * last compiled.
+     */
+    private volatile RobotsRules rules = RobotsRules.EMPTY;
 
     private long timeFetched;
     private long timeLastAccessed;
 
+    /**
+     * The status code of the robots.txt fetch these directives come from, or
+     * 0 if it is not known.
+     */
+    private int statusCode;
+
+    /**
+     * The delay in milliseconds the host asked for between two requests with
+     * a Crawl-delay directive, or -1 if it did not.
+     */
+    private long crawlDelay = -1;
+
+    /**
+     * The urls of the sitemaps listed in the robots.txt file.
+     */
+    private final List<String> sitemaps = new ArrayList<>();
+
     public HostDirectives() {
         timeFetched = System.currentTimeMillis();
     }
 
+    /**
+     * Creates directives which were fetched at the given time, for restoring
+     * them from a {@link RobotstxtDB}.
+     */
+    HostDirectives(long timeFetched, int statusCode) {
+        this.timeFetched = timeFetched;
+        this.statusCode = statusCode;
+    }
+
     public boolean needsRefetch() {
         return (System.currentTimeMillis() - timeFetched > EXPIRATION_DELAY);
     }
 
+    /**
+     * Returns whether the given path, including its query string, may be
+     * crawled. The longest matching rule decides; see {@link RobotsRules}.
+     */
     public boolean allows(String path) {
         timeLastAccessed = System.currentTimeMillis();
-        return !disallows.containsPrefixOf(path) || allows.containsPrefixOf(path);
+        RobotsRules rules = this.rules;
+        if (rules == null) {
+            rules = compile();
+        }
+        return rules.allows(path);
     }
 
-    public void addDisallow(String path) {
+    public synchronized void addDisallow(String path) {
         disallows.add(path);
+        rulesBuilder.add(path, false);
+        rules = null;
     }
 
-    public void addAllow(String path) {
+    public synchronized void addAllow(String path) {
         allows.add(path);
+        rulesBuilder.add(path, true);
+        rules = null;
+    }
+
+    private synchronized RobotsRules compile() {
+        if (rules == null) {
+            rules = rulesBuilder.build();
+        }
+        return rules;
     }
 
     public long getLastAccessTime() {
         return timeLastAccessed;
     }
 
+    public long getTimeFetched() {
+        return timeFetched;
+    }
+
+    /**
+     * Returns the delay in milliseconds the host asked for between two
+     * requests, or -1 if it has no Crawl-delay directive for us.
+     */
+    public long getCrawlDelay() {
+        return crawlDelay;
+    }
+
+    public void setCrawlDelay(long crawlDelay) {
+        this.crawlDelay = crawlDelay;
+    }
+
+    public synchronized void addSitemap(String url) {
+        sitemaps.add(url);
+    }
+
+    /**
+     * Returns the urls of the sitemaps listed in the robots.txt file, in the
+     * order they appeared.
+     */
+    public synchronized List<String> getSitemaps() {
+        return new ArrayList<>(sitemaps);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Returns the allow rules, as they appeared in the robots.txt file.
+     */
+    public synchronized List<String> getAllowPatterns() {
+        return new ArrayList<>(allows);
+    }
+
+    /**
+     * Returns the disallow rules, as they appeared in the robots.txt file.
+     */
+    public synchronized List<String> getDisallowPatterns() {
+        return new ArrayList<>(disallows);
+    }
+
+    /**
+     * @deprecated the rules are matched by {@link RobotsRules} now; this set
+     * does not take wildcards into account. Use {@link #getAllowPatterns()}.
+     */
+    @Deprecated
     public RuleSet getAllows() {
-        return allows;
+        return toRuleSet(getAllowPatterns());
     }
 
+    /**
+     * @deprecated the rules are matched by {@link RobotsRules} now; this set
+     * does not take wildcards into account. Use {@link #getDisallowPatterns()}.
+     */
+    @Deprecated
     public RuleSet getDisallows() {
-        return disallows;
+        return toRuleSet(getDisallowPatterns());
+    }
+
+    private static RuleSet toRuleSet(List<String> patterns) {
+        RuleSet ruleSet = new RuleSet();
+        ruleSet.addAll(patterns);
+        return ruleSet;
     }
-}
\ No newline at end of file
+}
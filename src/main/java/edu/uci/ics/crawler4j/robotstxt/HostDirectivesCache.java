@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A bounded cache of the directives of each host, shared by all crawler
+ * threads.
+ * <p/>
+ * Lookups of cached hosts don't take any lock. When a host is missing or its
+ * directives have expired, only one thread loads them, and the other threads
+ * asking for the same host wait for its result instead of fetching the same
+ * robots.txt again.
+ * <p/>
+ * Hosts are evicted with the CLOCK algorithm, an approximation of LRU: a
+ * lookup only sets a flag on the entry, and eviction passes over the hosts in
+ * insertion order, giving flagged hosts a second chance. Each insertion
+ * evicts in amortized constant time.
+ */
+public class HostDirectivesCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(HostDirectivesCache.class);
+
+    private final int maxSize;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The cached hosts, in the order the eviction hand passes over them.
+     */
+    private final Queue<String> clock = new ConcurrentLinkedQueue<>();
+
+    private final Object evictionLock = new Object();
+
+    /**
+     * @param maxSize the maximum number of hosts kept
+     */
+    public HostDirectivesCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the directives of the given host, or null if they are not
+     * cached, still being loaded or expired. This never blocks.
+     */
+    public HostDirectives getIfPresent(String host) {
+        Entry entry = entries.get(host);
+        if (entry == null || !entry.task.isDone()) {
+            return null;
+        }
+        HostDirectives directives = entry.result(host);
+        if (directives == null || directives.needsRefetch()) {
+            return null;
+        }
+        entry.referenced = true;
+        return directives;
+    }
+
+    /**
+     * Returns the directives of the given host, loading them with the given
+     * loader if they are not cached or have expired. If another thread is
+     * already loading them, this waits for its result.
+     *
+     * @return the directives, or null if the loader failed
+     */
+    public HostDirectives get(String host, Callable<HostDirectives> loader) {
+        while (true) {
+            Entry entry = entries.get(host);
+            if (entry != null) {
+                if (!entry.task.isDone()) {
+                    return entry.result(host);
+                }
+                HostDirectives directives = entry.result(host);
+                if (directives != null && !directives.needsRefetch()) {
+                    entry.referenced = true;
+                    return directives;
+                }
+                Entry newEntry = new Entry(loader);
+                if (entries.replace(host, entry, newEntry)) {
+                    return load(host, newEntry);
+                }
+            } else {
+                Entry newEntry = new Entry(loader);
+                if (entries.putIfAbsent(host, newEntry) == null) {
+                    clock.offer(host);
+                    evictIfNeeded();
+                    return load(host, newEntry);
+                }
+            }
+            // Another thread changed the entry of this host; look again
+        }
+    }
+
+    /**
+     * Returns the number of hosts in the cache, including those being loaded.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private HostDirectives load(String host, Entry entry) {
+        entry.task.run();
+        HostDirectives directives = entry.result(host);
+        if (directives == null && entries.remove(host, entry)) {
+            // Let the next lookup try again. It puts the host back on the
+            // clock, so it must not stay there meanwhile.
+            clock.remove(host);
+        }
+        return directives;
+    }
+
+    /**
+     * Returns the number of hosts the eviction hand passes over.
+     */
+    int clockSize() {
+        return clock.size();
+    }
+
+    private void evictIfNeeded() {
+        if (entries.size() <= maxSize) {
+            return;
+        }
+        synchronized (evictionLock) {
+            // Every host is passed over at most twice, since its flag is
+            // cleared the first time
+            int budget = 2 * clock.size();
+            while (entries.size() > maxSize && budget-- > 0) {
+                String host = clock.poll();
+                if (host == null) {
+                    return;
+                }
+                Entry entry = entries.get(host);
+                if (entry == null) {
+                    continue;
+                }
+                if (entry.referenced || !entry.task.isDone()) {
+                    entry.referenced = false;
+                    clock.offer(host);
+                } else {
+                    entries.remove(host, entry);
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+
+        final FutureTask<HostDirectives> task;
+
+        /**
+         * Set when the entry is looked up, and cleared when the eviction hand
+         * passes over it.
+         */
+        volatile boolean referenced = true;
+
+        Entry(Callable<HostDirectives> loader) {
+            task = new FutureTask<>(loader);
+        }
+
+        /**
+         * Returns the loaded directives, waiting for them if they are still
+         * being loaded, or null if loading them failed.
+         */
+        HostDirectives result(String host) {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                logger.warn("Failed to load the robots.txt directives of " + host + ": " + e.getCause());
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Receives the urls which were put aside by
+ * {@link RobotstxtServer#allowsOrPark(WebURL, ParkedURLHandler)} once the
+ * robots.txt of their host has been fetched. It is called from a robots.txt
+ * prefetch thread.
+ */
+public interface ParkedURLHandler {
+
+    /**
+     * Called when the robots.txt of the host allows the url to be fetched.
+     */
+    void allowed(WebURL url);
+
+    /**
+     * Called when the robots.txt of the host disallows the url.
+     */
+    void disallowed(WebURL url);
+}
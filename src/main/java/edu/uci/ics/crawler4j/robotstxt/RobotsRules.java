@@ -0,0 +1,330 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The allow and disallow rules of a host, compiled into an immutable matcher.
+ * <p/>
+ * Rules follow the robots.txt conventions of the major search engines: a
+ * {@code *} matches any sequence of characters, a trailing {@code $} anchors
+ * the rule at the end of the path, and the longest matching rule decides,
+ * with allow winning over disallow when both are equally long. A path which
+ * no rule matches is allowed.
+ * <p/>
+ * Rules without wildcards are kept in a character trie, which is walked once
+ * along the path. The few rules with wildcards are checked afterwards, longest
+ * first, and only while they could still beat the best match of the trie. A
+ * wildcard rule is skipped without scanning the path if the path lacks one of
+ * its characters. Matching does not allocate.
+ */
+public final class RobotsRules {
+
+    /**
+     * Matches every path against no rule, so everything is allowed.
+     */
+    public static final RobotsRules EMPTY = new Builder().build();
+
+    private final Node root;
+
+    /**
+     * Rules containing a wildcard, by decreasing priority.
+     */
+    private final WildcardRule[] wildcardRules;
+
+    private RobotsRules(Node root, WildcardRule[] wildcardRules) {
+        this.root = root;
+        this.wildcardRules = wildcardRules;
+    }
+
+    /**
+     * Returns whether the given path, including its query string, may be
+     * crawled.
+     */
+    public boolean allows(String path) {
+        int best = 0;
+        Node node = root;
+        int length = path.length();
+        for (int i = 0; i < length; i++) {
+            node = node.child(path.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.priority > best) {
+                best = node.priority;
+            }
+            if (i == length - 1 && node.anchoredPriority > best) {
+                best = node.anchoredPriority;
+            }
+        }
+        long pathChars = 0;
+        for (WildcardRule rule : wildcardRules) {
+            if (rule.priority <= best) {
+                break;
+            }
+            if (pathChars == 0) {
+                pathChars = charMask(path, length);
+            }
+            if ((rule.requiredChars & ~pathChars) != 0) {
+                continue;
+            }
+            if (rule.matches(path)) {
+                best = rule.priority;
+                break;
+            }
+        }
+        return best == 0 || isAllow(best);
+    }
+
+    /*
+     * The priority of a rule is its length, doubled so that an allow rule
+     * ranks above a disallow rule of the same length. 0 means no rule.
+     */
+    private static int priority(int length, boolean allow) {
+        return (length << 1) | (allow ? 1 : 0);
+    }
+
+    private static boolean isAllow(int priority) {
+        return (priority & 1) != 0;
+    }
+
+    /*
+     * A set of the characters of the given string, hashed into the 64 bits of
+     * a long. The bit of '/' is always set, so that the mask of a path is
+     * never 0.
+     */
+    private static long charMask(CharSequence s, int length) {
+        long mask = 1L << ('/' & 63);
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c != '*') {
+                mask |= 1L << (c & 63);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Collects rules in any order and compiles them into {@link RobotsRules}.
+     */
+    public static class Builder {
+
+        private final Node root = new Node();
+        private final List<WildcardRule> wildcardRules = new ArrayList<>();
+
+        /**
+         * Adds an allow or disallow rule. Empty rules are ignored, as an
+         * empty disallow allows everything and an empty allow never decides.
+         */
+        public Builder add(String pattern, boolean allow) {
+            if (pattern.isEmpty()) {
+                return this;
+            }
+            int priority = priority(pattern.length(), allow);
+            String normalized = normalize(pattern);
+            boolean anchored = normalized.endsWith("$");
+            String body = anchored ? normalized.substring(0, normalized.length() - 1) : normalized;
+            if (body.indexOf('*') >= 0) {
+                wildcardRules.add(new WildcardRule(body.toCharArray(), anchored, priority));
+                return this;
+            }
+            Node node = root;
+            for (int i = 0; i < body.length(); i++) {
+                node = node.getOrAddChild(body.charAt(i));
+            }
+            if (node == root) {
+                // Only "*" or "$": the first applies to everything, the
+                // second to the empty path, which is never requested
+                if (!anchored) {
+                    wildcardRules.add(new WildcardRule(new char[]{'*'}, false, priority));
+                }
+            } else if (anchored) {
+                node.anchoredPriority = Math.max(node.anchoredPriority, priority);
+            } else {
+                node.priority = Math.max(node.priority, priority);
+            }
+            return this;
+        }
+
+        public RobotsRules build() {
+            List<WildcardRule> sorted = new ArrayList<>(wildcardRules);
+            Collections.sort(sorted, new Comparator<WildcardRule>() {
+                @Override
+                public int compare(WildcardRule a, WildcardRule b) {
+                    return Integer.compare(b.priority, a.priority);
+                }
+            });
+            return new RobotsRules(root.freeze(), sorted.toArray(new WildcardRule[sorted.size()]));
+        }
+
+        /*
+         * Collapses runs of '*', and drops trailing wildcards, which are
+         * implied since rules match prefixes.
+         */
+        private static String normalize(String pattern) {
+            StringBuilder sb = new StringBuilder(pattern.length());
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c != '*' || sb.length() == 0 || sb.charAt(sb.length() - 1) != '*') {
+                    sb.append(c);
+                }
+            }
+            while (true) {
+                int length = sb.length();
+                if (length > 0 && sb.charAt(length - 1) == '*') {
+                    sb.setLength(length - 1);
+                } else if (length > 1 && sb.charAt(length - 1) == '$' && sb.charAt(length - 2) == '*') {
+                    sb.setLength(length - 2);
+                } else {
+                    break;
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final class Node {
+
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        /**
+         * The labels of the children, sorted so that they can be searched.
+         */
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+
+        /**
+         * The priority of the best rule which ends at this node and matches
+         * any path continuing from here, or 0.
+         */
+        int priority;
+
+        /**
+         * The priority of the best rule ending with '$' at this node, which
+         * only matches a path ending here, or 0.
+         */
+        int anchoredPriority;
+
+        Node child(char c) {
+            char[] labels = this.labels;
+            if (labels.length <= 8) {
+                for (int i = 0; i < labels.length; i++) {
+                    if (labels[i] == c) {
+                        return children[i];
+                    }
+                }
+                return null;
+            }
+            int index = Arrays.binarySearch(labels, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddChild(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            Node child = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newLabels[index] = c;
+            newChildren[index] = child;
+            System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        /**
+         * Returns a copy of this subtree which is no longer shared with the
+         * builder, so that adding more rules does not change it.
+         */
+        Node freeze() {
+            Node copy = new Node();
+            copy.labels = labels.length == 0 ? NO_LABELS : labels.clone();
+            copy.children = children.length == 0 ? NO_CHILDREN : new Node[children.length];
+            for (int i = 0; i < children.length; i++) {
+                copy.children[i] = children[i].freeze();
+            }
+            copy.priority = priority;
+            copy.anchoredPriority = anchoredPriority;
+            return copy;
+        }
+    }
+
+    private static final class WildcardRule {
+
+        final char[] pattern;
+        final boolean anchored;
+        final int priority;
+
+        /**
+         * The characters a path needs to match, see charMask.
+         */
+        final long requiredChars;
+
+        WildcardRule(char[] pattern, boolean anchored, int priority) {
+            this.pattern = pattern;
+            this.anchored = anchored;
+            this.priority = priority;
+            this.requiredChars = charMask(new String(pattern), pattern.length);
+        }
+
+        /*
+         * Greedy glob matching, going back to the last '*' on a mismatch.
+         * This is linear for the patterns found in practice.
+         */
+        boolean matches(String path) {
+            int p = 0;
+            int s = 0;
+            int starP = -1;
+            int starS = 0;
+            int length = path.length();
+            while (s < length) {
+                if (p < pattern.length && pattern[p] == '*') {
+                    starP = p++;
+                    starS = s;
+                } else if (p < pattern.length && pattern[p] == path.charAt(s)) {
+                    p++;
+                    s++;
+                } else if (p == pattern.length && !anchored) {
+                    return true;
+                } else if (starP >= 0) {
+                    p = starP + 1;
+                    s = ++starS;
+                } else {
+                    return false;
+                }
+            }
+            while (p < pattern.length && pattern[p] == '*') {
+                p++;
+            }
+            return p == pattern.length;
+        }
+    }
+}
@@ -36,6 +36,28 @@ public class RobotstxtConfig {
      */
     private int cacheSize = 500;
 
+    /**
+     * The maximum number of bytes of a robots.txt file that are read. The
+     * rest of a larger file is ignored.
+     */
+    private int maxRobotstxtSize = 500 * 1024;
+
+    /**
+     * The number of threads which fetch the robots.txt of hosts discovered in
+     * the outgoing links of pages, so that crawler threads don't wait for
+     * them. Links to such hosts are put aside until their robots.txt has been
+     * fetched. If set to 0, crawler threads fetch them themselves.
+     */
+    private int prefetchThreads = 4;
+
+    /**
+     * The folder in which the robots.txt directives of each host are kept
+     * across crawls, so that a robots.txt file is fetched at most once per
+     * expiration period however often the crawl is restarted and however many
+     * hosts it visits. If null, directives are only cached in memory.
+     */
+    private String persistentCacheFolder = null;
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -60,4 +82,40 @@ public class RobotstxtConfig {
         this.cacheSize = cacheSize;
     }
 
+    public int getMaxRobotstxtSize() {
+        return maxRobotstxtSize;
+    }
+
+    public void setMaxRobotstxtSize(int maxRobotstxtSize) {
+        this.maxRobotstxtSize = maxRobotstxtSize;
+    }
+
+    /**
+     * The number of threads which fetch the robots.txt of hosts discovered in
+     * the outgoing links of pages, so that crawler threads don't wait for
+     * them. Links to such hosts are put aside until their robots.txt has been
+     * fetched. If set to 0, crawler threads fetch them themselves.
+     */
+    public int getPrefetchThreads() {
+        return prefetchThreads;
+    }
+
+    public void setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+    }
+
+    public String getPersistentCacheFolder() {
+        return persistentCacheFolder;
+    }
+
+    /**
+     * The folder in which the robots.txt directives of each host are kept
+     * across crawls, so that a robots.txt file is fetched at most once per
+     * expiration period however often the crawl is restarted and however many
+     * hosts it visits. If null, directives are only cached in memory.
+     */
+    public void setPersistentCacheFolder(String persistentCacheFolder) {
+        this.persistentCacheFolder = persistentCacheFolder;
+    }
+
 }
@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import com.sleepycat.je.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This class keeps the robots.txt directives of each host, with the time and
+ * status of their fetch. It lives in an environment which is kept between
+ * crawls, so that a restarted crawl, or one which visits more hosts than fit
+ * in the memory cache of {@link RobotstxtServer}, does not fetch the
+ * robots.txt of a host again until its directives expire.
+ */
+public class RobotstxtDB {
+
+    protected static final Logger logger = LoggerFactory.getLogger(RobotstxtDB.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The database is written to disk after this many directives have been
+     * put, so that a crawl which does not finish cleanly loses at most that
+     * many fetches of robots.txt files.
+     */
+    private static final int SYNC_INTERVAL = 100;
+
+    protected Database robotstxtDB = null;
+
+    protected final Object mutex = new Object();
+
+    private int unsyncedPuts = 0;
+
+    public RobotstxtDB(Environment env) throws DatabaseException {
+        DatabaseConfig dbConfig = new DatabaseConfig();
+        dbConfig.setAllowCreate(true);
+        dbConfig.setTransactional(false);
+        dbConfig.setDeferredWrite(true);
+        robotstxtDB = env.openDatabase(null, "Robotstxt", dbConfig);
+        long count = robotstxtDB.count();
+        if (count > 0) {
+            logger.info("Loaded robots.txt directives of " + count + " hosts from previous crawls.");
+        }
+    }
+
+    /**
+     * Returns the directives stored for the given host, which may have
+     * expired, or null if none are stored.
+     */
+    public HostDirectives get(String host) {
+        synchronized (mutex) {
+            try {
+                DatabaseEntry value = new DatabaseEntry();
+                OperationStatus result = robotstxtDB.get(null, new DatabaseEntry(host.getBytes("UTF-8")), value, null);
+                if (result == OperationStatus.SUCCESS) {
+                    return decode(value.getData());
+                }
+            } catch (Exception e) {
+                logger.error("Error while reading the robots.txt directives of " + host, e);
+            }
+            return null;
+        }
+    }
+
+    public void put(String host, HostDirectives directives) {
+        synchronized (mutex) {
+            try {
+                robotstxtDB.put(null, new DatabaseEntry(host.getBytes("UTF-8")), new DatabaseEntry(encode(directives)));
+                if (++unsyncedPuts >= SYNC_INTERVAL) {
+                    sync();
+                }
+            } catch (Exception e) {
+                logger.error("Error while storing the robots.txt directives of " + host, e);
+            }
+        }
+    }
+
+    public void sync() {
+        if (robotstxtDB == null) {
+            return;
+        }
+        synchronized (mutex) {
+            try {
+                robotstxtDB.sync();
+                unsyncedPuts = 0;
+            } catch (DatabaseException e) {
+                logger.error("Error while writing the robots.txt directives to disk", e);
+            }
+        }
+    }
+
+    public void close() {
+        sync();
+        try {
+            robotstxtDB.close();
+        } catch (DatabaseException e) {
+            logger.error("Error while closing the robots.txt directives database", e);
+        }
+    }
+
+    /*
+     * The rules are stored as they appeared in the robots.txt file and are
+     * compiled again when loaded, which is cheaper than fetching the file.
+     * Strings are stored as their length followed by their UTF-8 bytes, since
+     * writeUTF() can't hold more than 64 KB and a robots.txt line may.
+     */
+    static byte[] encode(HostDirectives directives) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        out.writeLong(directives.getTimeFetched());
+        out.writeInt(directives.getStatusCode());
+        out.writeLong(directives.getCrawlDelay());
+        writePatterns(out, directives.getAllowPatterns());
+        writePatterns(out, directives.getDisallowPatterns());
+        writePatterns(out, directives.getSitemaps());
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    static HostDirectives decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readByte() != FORMAT_VERSION) {
+            // Written by another version; fetch the robots.txt again
+            return null;
+        }
+        HostDirectives directives = new HostDirectives(in.readLong(), in.readInt());
+        directives.setCrawlDelay(in.readLong());
+        for (int i = in.readInt(); i > 0; i--) {
+            directives.addAllow(readString(in));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            directives.addDisallow(readString(in));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            directives.addSitemap(readString(in));
+        }
+        return directives;
+    }
+
+    private static void writePatterns(DataOutputStream out, List<String> patterns) throws IOException {
+        out.writeInt(patterns.size());
+        for (String pattern : patterns) {
+            byte[] bytes = pattern.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
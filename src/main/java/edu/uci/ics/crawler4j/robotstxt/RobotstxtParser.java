@@ -17,84 +17,303 @@
 
 package edu.uci.ics.crawler4j.robotstxt;
 
-import java.util.StringTokenizer;
+import edu.uci.ics.crawler4j.util.Util;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
+ * Parses robots.txt files in a single pass over their bytes, without regular
+ * expressions.
+ * <p/>
+ * Consecutive User-agent lines form a group, and the rules which follow apply
+ * to every agent of the group. The rules of the groups naming this crawler are
+ * used; only if there are none, the rules of the groups for "*" are used.
+ * Sitemap lines don't belong to any group and are all kept. HTML markup and
+ * comments are ignored.
+ * <p/>
+ * Paths and sitemap urls are decoded with the charset the server declared,
+ * else as UTF-8, or as ISO-8859-1 if the file is not valid UTF-8.
+ *
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
  */
-
-
 public class RobotstxtParser {
 
-    private static final String PATTERNS_USERAGENT = "(?i)^User-agent:.*";
-    private static final String PATTERNS_DISALLOW = "(?i)Disallow:.*";
-    private static final String PATTERNS_ALLOW = "(?i)Allow:.*";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
 
-    private static final int PATTERNS_USERAGENT_LENGTH = 11;
-    private static final int PATTERNS_DISALLOW_LENGTH = 9;
-    private static final int PATTERNS_ALLOW_LENGTH = 6;
+    private static final byte[] USER_AGENT = "user-agent".getBytes(UTF_8);
+    private static final byte[] USERAGENT = "useragent".getBytes(UTF_8);
+    private static final byte[] DISALLOW = "disallow".getBytes(UTF_8);
+    private static final byte[] ALLOW = "allow".getBytes(UTF_8);
+    private static final byte[] CRAWL_DELAY = "crawl-delay".getBytes(UTF_8);
+    private static final byte[] SITEMAP = "sitemap".getBytes(UTF_8);
 
     public static HostDirectives parse(String content, String myUserAgent) {
+        return parse(content.getBytes(UTF_8), myUserAgent);
+    }
+
+    /**
+     * Parses the given robots.txt file, which is read as UTF-8 if it is valid
+     * UTF-8, else as ISO-8859-1.
+     *
+     * @return the directives for myUserAgent, or null if the file has
+     * neither rules for it nor sitemaps
+     */
+    public static HostDirectives parse(byte[] content, String myUserAgent) {
+        return parse(content, null, myUserAgent);
+    }
 
-        HostDirectives directives = null;
-        boolean inMatchingUserAgent = false;
+    /**
+     * Parses the given robots.txt file, which is read with the declared
+     * charset if there is one the parser can handle.
+     *
+     * @param declaredCharset the charset of the Content-Type header, or null
+     * @return the directives for myUserAgent, or null if the file has
+     * neither rules for it nor sitemaps
+     */
+    public static HostDirectives parse(byte[] content, String declaredCharset, String myUserAgent) {
+        Charset charset = detectCharset(content, declaredCharset);
+        byte[] agent = myUserAgent.toLowerCase().getBytes(UTF_8);
 
-        StringTokenizer st = new StringTokenizer(content, "\n");
-        while (st.hasMoreTokens()) {
-            String line = st.nextToken();
+        HostDirectives mine = null;
+        HostDirectives any = null;
+        boolean foundMine = false;
 
-            int commentIndex = line.indexOf("#");
-            if (commentIndex > -1) {
-                line = line.substring(0, commentIndex);
-            }
+        // State of the current group
+        boolean inAgentLines = false;
+        boolean groupIsMine = false;
+        boolean groupIsAny = false;
 
-            // remove any html markup
-            line = line.replaceAll("<[^>]+>", "");
+        List<String> sitemaps = null;
 
-            line = line.trim();
+        byte[] line = new byte[256];
+        int pos = 0;
+        while (pos < content.length) {
+            // Copy the next line without markup and comments, then trim it
+            int length = 0;
+            boolean inTag = false;
+            boolean inComment = false;
+            for (; pos < content.length; pos++) {
+                byte b = content[pos];
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                if (inComment) {
+                    continue;
+                }
+                if (inTag) {
+                    inTag = (b != '>');
+                } else if (b == '<') {
+                    inTag = true;
+                } else if (b == '#') {
+                    inComment = true;
+                } else {
+                    if (length == line.length) {
+                        byte[] grown = new byte[length * 2];
+                        System.arraycopy(line, 0, grown, 0, length);
+                        line = grown;
+                    }
+                    line[length++] = b;
+                }
+            }
+            pos++;
 
-            if (line.length() == 0) {
+            int start = 0;
+            while (start < length && isWhitespace(line[start])) {
+                start++;
+            }
+            int colon = indexOf(line, start, length, (byte) ':');
+            if (colon < 0) {
                 continue;
             }
+            int keyEnd = colon;
+            while (keyEnd > start && isWhitespace(line[keyEnd - 1])) {
+                keyEnd--;
+            }
+            int valueStart = colon + 1;
+            while (valueStart < length && isWhitespace(line[valueStart])) {
+                valueStart++;
+            }
+            int valueEnd = length;
+            while (valueEnd > valueStart && isWhitespace(line[valueEnd - 1])) {
+                valueEnd--;
+            }
 
-            if (line.matches(PATTERNS_USERAGENT)) {
-                String ua = line.substring(PATTERNS_USERAGENT_LENGTH).trim().toLowerCase();
-                if (ua.equals("*") || ua.contains(myUserAgent)) {
-                    inMatchingUserAgent = true;
-                } else {
-                    inMatchingUserAgent = false;
+            if (keyEquals(line, start, keyEnd, USER_AGENT) || keyEquals(line, start, keyEnd, USERAGENT)) {
+                if (!inAgentLines) {
+                    // A User-agent line after rules starts a new group
+                    inAgentLines = true;
+                    groupIsMine = false;
+                    groupIsAny = false;
                 }
-            } else if (line.matches(PATTERNS_DISALLOW)) {
-                if (!inMatchingUserAgent) {
+                if (valueEnd - valueStart == 1 && line[valueStart] == '*') {
+                    groupIsAny = true;
+                } else if (containsIgnoreCase(line, valueStart, valueEnd, agent)) {
+                    groupIsMine = true;
+                    foundMine = true;
+                }
+            } else if (keyEquals(line, start, keyEnd, SITEMAP)) {
+                if (valueEnd > valueStart) {
+                    if (sitemaps == null) {
+                        sitemaps = new ArrayList<>();
+                    }
+                    sitemaps.add(new String(line, valueStart, valueEnd - valueStart, charset));
+                }
+            } else {
+                boolean allow = keyEquals(line, start, keyEnd, ALLOW);
+                boolean crawlDelay = !allow && keyEquals(line, start, keyEnd, CRAWL_DELAY);
+                if (!allow && !crawlDelay && !keyEquals(line, start, keyEnd, DISALLOW)) {
+                    // Other directives neither end nor belong to a group
                     continue;
                 }
-                String path = line.substring(PATTERNS_DISALLOW_LENGTH).trim();
-                if (path.endsWith("*")) {
-                    path = path.substring(0, path.length() - 1);
+                inAgentLines = false;
+                // Once a group for this crawler is found, the groups for "*"
+                // no longer matter
+                boolean applies = groupIsMine || (groupIsAny && !foundMine);
+                if (valueEnd == valueStart || !applies) {
+                    continue;
                 }
-                path = path.trim();
-                if (path.length() > 0) {
-                    if (directives == null) {
-                        directives = new HostDirectives();
+                HostDirectives directives;
+                if (groupIsMine) {
+                    if (mine == null) {
+                        mine = new HostDirectives();
                     }
-                    directives.addDisallow(path);
+                    directives = mine;
+                } else {
+                    if (any == null) {
+                        any = new HostDirectives();
+                    }
+                    directives = any;
                 }
-            } else if (line.matches(PATTERNS_ALLOW)) {
-                if (!inMatchingUserAgent) {
-                    continue;
+                if (crawlDelay) {
+                    long delay = parseDelay(line, valueStart, valueEnd);
+                    if (delay >= 0) {
+                        directives.setCrawlDelay(delay);
+                    }
+                } else {
+                    add(directives, new String(line, valueStart, valueEnd - valueStart, charset), allow);
+                }
+            }
+        }
+
+        HostDirectives result;
+        if (foundMine) {
+            // A group for this crawler overrides the groups for "*", even if
+            // it has no rules
+            result = (mine == null) ? new HostDirectives() : mine;
+        } else {
+            result = any;
+        }
+        if (sitemaps != null) {
+            if (result == null) {
+                result = new HostDirectives();
+            }
+            for (String sitemap : sitemaps) {
+                result.addSitemap(sitemap);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the declared charset if it is supported and encodes ASCII as
+     * single bytes, which the parser relies on. Otherwise the content is
+     * taken for UTF-8 if it is valid UTF-8, else for ISO-8859-1.
+     */
+    static Charset detectCharset(byte[] content, String declaredCharset) {
+        if (declaredCharset != null) {
+            try {
+                Charset charset = Charset.forName(declaredCharset);
+                if (charset.canEncode() && Arrays.equals(USER_AGENT, "user-agent".getBytes(charset))) {
+                    return charset;
                 }
-                String path = line.substring(PATTERNS_ALLOW_LENGTH).trim();
-                if (path.endsWith("*")) {
-                    path = path.substring(0, path.length() - 1);
+            } catch (IllegalArgumentException e) {
+                // Unknown or unsupported: detected below
+            }
+        }
+        return Util.isValidUtf8(content, content.length) ? UTF_8 : ISO_8859_1;
+    }
+
+    private static void add(HostDirectives directives, String path, boolean allow) {
+        if (allow) {
+            directives.addAllow(path);
+        } else {
+            directives.addDisallow(path);
+        }
+    }
+
+    /**
+     * Parses a delay in seconds, which may have a fractional part, into
+     * milliseconds. Returns -1 if the value is not a number.
+     */
+    private static long parseDelay(byte[] bytes, int from, int to) {
+        long millis = 0;
+        long scale = 1000;
+        boolean fraction = false;
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+            if (b == '.' && !fraction) {
+                fraction = true;
+            } else if (b >= '0' && b <= '9') {
+                if (!fraction) {
+                    millis = Math.min(millis * 10 + (b - '0') * 1000L, Integer.MAX_VALUE);
+                } else if (scale > 1) {
+                    scale /= 10;
+                    millis += (b - '0') * scale;
                 }
-                path = path.trim();
-                if (directives == null) {
-                    directives = new HostDirectives();
+            } else {
+                return -1;
+            }
+        }
+        return millis;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares an ASCII key case-insensitively to the given lower case name.
+     */
+    private static boolean keyEquals(byte[] bytes, int from, int to, byte[] name) {
+        if (to - from != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (toLowerCase(bytes[from + i]) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsIgnoreCase(byte[] bytes, int from, int to, byte[] lowerCase) {
+        int last = to - lowerCase.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < lowerCase.length; j++) {
+                if (toLowerCase(bytes[i + j]) != lowerCase[j]) {
+                    continue outer;
                 }
-                directives.addAllow(path);
             }
+            return true;
         }
+        return false;
+    }
 
-        return directives;
+    private static byte toLowerCase(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
     }
 }
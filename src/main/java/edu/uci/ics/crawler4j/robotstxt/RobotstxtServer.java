@@ -17,15 +17,31 @@
 
 package edu.uci.ics.crawler4j.robotstxt;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
 import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.fetcher.CrawlDelayProvider;
 import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
 import edu.uci.ics.crawler4j.url.WebURL;
@@ -34,17 +50,102 @@ import edu.uci.ics.crawler4j.util.Util;
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
  */
-public class RobotstxtServer {
+public class RobotstxtServer implements CrawlDelayProvider {
+
+    /**
+     * The answer of {@link #allowsOrPark(WebURL, ParkedURLHandler)}.
+     */
+    public enum Verdict {
+        ALLOWED,
+        DISALLOWED,
+        /**
+         * The robots.txt of the host is being fetched, the url is handed to
+         * the handler once it is known whether it is allowed.
+         */
+        PARKED
+    }
+
+    protected static final Logger logger = LoggerFactory.getLogger(RobotstxtServer.class);
 
     protected RobotstxtConfig config;
 
-    protected final Map<String, HostDirectives> host2directivesCache = new HashMap<>();
+    protected final HostDirectivesCache host2directivesCache;
 
     protected PageFetcher pageFetcher;
 
+    /**
+     * Keeps the directives between crawls, behind the memory cache. It is null
+     * unless a persistent cache folder is configured.
+     */
+    protected volatile RobotstxtDB persistentCache;
+
+    protected Environment persistentEnv;
+
+    /**
+     * The urls waiting for the robots.txt of their host to be fetched, by
+     * host. A host is in this map while its robots.txt is being prefetched.
+     */
+    private final Map<String, List<ParkedURL>> parkedURLs = new HashMap<>();
+
+    private ThreadPoolExecutor prefetchExecutor;
+
     public RobotstxtServer(RobotstxtConfig config, PageFetcher pageFetcher) {
         this.config = config;
         this.pageFetcher = pageFetcher;
+        this.host2directivesCache = new HostDirectivesCache(config.getCacheSize());
+        if (config.isEnabled() && pageFetcher != null) {
+            pageFetcher.setCrawlDelayProvider(this);
+        }
+        if (config.isEnabled() && config.getPersistentCacheFolder() != null) {
+            File folder = new File(config.getPersistentCacheFolder());
+            if (!folder.exists() && !folder.mkdirs()) {
+                throw new IllegalArgumentException("Couldn't create this folder: " + folder.getAbsolutePath());
+            }
+            EnvironmentConfig envConfig = new EnvironmentConfig();
+            envConfig.setAllowCreate(true);
+            persistentEnv = new Environment(folder, envConfig);
+            persistentCache = new RobotstxtDB(persistentEnv);
+        }
+    }
+
+    /**
+     * Returns the Crawl-delay of the given host in milliseconds, or -1 if it
+     * has none or its robots.txt is not in the cache.
+     */
+    @Override
+    public long getCrawlDelay(String host) {
+        HostDirectives directives = host2directivesCache.getIfPresent(host);
+        return (directives == null) ? -1 : directives.getCrawlDelay();
+    }
+
+    /**
+     * Returns the urls of the sitemaps listed in the robots.txt of the given
+     * host, or an empty list if it has none or its robots.txt is not in the
+     * cache.
+     */
+    public List<String> getSitemaps(String host) {
+        HostDirectives directives = host2directivesCache.getIfPresent(host.toLowerCase());
+        return (directives == null) ? new ArrayList<String>() : directives.getSitemaps();
+    }
+
+    /**
+     * Returns the store which directives are kept in between crawls, or null
+     * if they are only cached in memory.
+     */
+    public RobotstxtDB getPersistentCache() {
+        return persistentCache;
+    }
+
+    /**
+     * Writes the directives fetched so far to the persistent cache folder, if
+     * there is one. Crawls call this when they finish, since the server may
+     * outlive them.
+     */
+    public void sync() {
+        RobotstxtDB store = persistentCache;
+        if (store != null) {
+            store.sync();
+        }
     }
 
     private static String getHost(URL url) {
@@ -56,21 +157,22 @@ public class RobotstxtServer {
             return true;
         }
         try {
-            URL url = new URL(webURL.getURL());
+            final URL url = new URL(webURL.getURL());
             String host = getHost(url);
-            String path = url.getPath();
-
-            HostDirectives directives = host2directivesCache.get(host);
-
-            if (directives != null && directives.needsRefetch()) {
-                synchronized (host2directivesCache) {
-                    host2directivesCache.remove(host);
-                    directives = null;
-                }
-            }
+            // Rules apply to the query string as well
+            String path = url.getFile().isEmpty() ? "/" : url.getFile();
 
+            HostDirectives directives = host2directivesCache.getIfPresent(host);
             if (directives == null) {
-                directives = fetchDirectives(url);
+                directives = host2directivesCache.get(host, new Callable<HostDirectives>() {
+                    @Override
+                    public HostDirectives call() {
+                        return loadDirectives(url);
+                    }
+                });
+                if (directives == null) {
+                    return true;
+                }
             }
             return directives.allows(path);
         } catch (MalformedURLException e) {
@@ -79,7 +181,145 @@ public class RobotstxtServer {
         return true;
     }
 
-    private HostDirectives fetchDirectives(URL url) {
+    /**
+     * Checks whether the given url is allowed without waiting for the network.
+     * If the robots.txt of its host is not cached, it is fetched by a prefetch
+     * thread and the url is parked: once the robots.txt is known, the url is
+     * passed to {@link ParkedURLHandler#allowed(WebURL)} or
+     * {@link ParkedURLHandler#disallowed(WebURL)}, from the prefetch thread.
+     * <p/>
+     * If there are no prefetch threads, this waits for the robots.txt like
+     * {@link #allows(WebURL)} and never parks the url.
+     */
+    public Verdict allowsOrPark(WebURL webURL, ParkedURLHandler handler) {
+        if (!config.isEnabled()) {
+            return Verdict.ALLOWED;
+        }
+        if (config.getPrefetchThreads() <= 0) {
+            return allows(webURL) ? Verdict.ALLOWED : Verdict.DISALLOWED;
+        }
+        final URL url;
+        try {
+            url = new URL(webURL.getURL());
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+            return Verdict.ALLOWED;
+        }
+        final String host = getHost(url);
+        String path = url.getFile().isEmpty() ? "/" : url.getFile();
+
+        HostDirectives directives = host2directivesCache.getIfPresent(host);
+        if (directives == null) {
+            synchronized (parkedURLs) {
+                // The prefetch may have completed in the meantime
+                directives = host2directivesCache.getIfPresent(host);
+                if (directives == null) {
+                    List<ParkedURL> urls = parkedURLs.get(host);
+                    if (urls == null) {
+                        urls = new ArrayList<>();
+                        parkedURLs.put(host, urls);
+                        getPrefetchExecutor().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                prefetch(host, url);
+                            }
+                        });
+                    }
+                    urls.add(new ParkedURL(webURL, path, handler));
+                    return Verdict.PARKED;
+                }
+            }
+        }
+        return directives.allows(path) ? Verdict.ALLOWED : Verdict.DISALLOWED;
+    }
+
+    private void prefetch(String host, final URL url) {
+        HostDirectives directives = null;
+        try {
+            directives = host2directivesCache.get(host, new Callable<HostDirectives>() {
+                @Override
+                public HostDirectives call() {
+                    return loadDirectives(url);
+                }
+            });
+        } finally {
+            List<ParkedURL> urls;
+            synchronized (parkedURLs) {
+                urls = parkedURLs.remove(host);
+            }
+            for (ParkedURL parked : urls) {
+                try {
+                    // Like allows(), a robots.txt which could not be loaded
+                    // doesn't disallow anything
+                    if (directives == null || directives.allows(parked.path)) {
+                        parked.handler.allowed(parked.url);
+                    } else {
+                        parked.handler.disallowed(parked.url);
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Error while releasing the parked url " + parked.url.getURL(), e);
+                }
+            }
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            int threads = config.getPrefetchThreads();
+            prefetchExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Robotstxt Prefetcher " + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            prefetchExecutor.allowCoreThreadTimeOut(true);
+        }
+        return prefetchExecutor;
+    }
+
+    /**
+     * Stops the prefetch threads and closes the persistent cache. Urls which
+     * are still parked are never handed back.
+     */
+    public synchronized void shutdown() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+            prefetchExecutor = null;
+        }
+        RobotstxtDB store = persistentCache;
+        if (store != null) {
+            persistentCache = null;
+            store.close();
+            persistentEnv.close();
+            persistentEnv = null;
+        }
+    }
+
+    private HostDirectives loadDirectives(URL url) {
+        RobotstxtDB store = persistentCache;
+        if (store == null) {
+            return fetchDirectives(url);
+        }
+        String host = getHost(url);
+        HostDirectives directives = store.get(host);
+        if (directives != null && !directives.needsRefetch()) {
+            return directives;
+        }
+        directives = fetchDirectives(url);
+        int statusCode = directives.getStatusCode();
+        if ((statusCode >= 200 && statusCode < 300) || (statusCode >= 400 && statusCode < 500)) {
+            // Only keep definite answers: a server error or our own failure to
+            // reach the server is worth another try in the next crawl
+            store.put(host, directives);
+        }
+        return directives;
+    }
+
+    protected HostDirectives fetchDirectives(URL url) {
         WebURL robotsTxtUrl = new WebURL();
         String host = getHost(url);
         String port = (url.getPort() == url.getDefaultPort() || url.getPort() == -1) ? "" : ":" + url.getPort();
@@ -87,24 +327,25 @@ public class RobotstxtServer {
         HostDirectives directives = null;
         PageFetchResult fetchResult = null;
         try {
-            fetchResult = pageFetcher.fetchHeader(robotsTxtUrl);
+            fetchResult = pageFetcher.fetchCrawlerFile(robotsTxtUrl);
             if (fetchResult.getStatusCode() == HttpStatus.SC_OK) {
                 Page page = new Page(robotsTxtUrl);
-                fetchResult.fetchContent(page);
+                InputStream content = fetchResult.openContent(page, -1, false);
                 if (Util.hasPlainTextContent(page.getContentType())) {
-                    try {
-                        String content;
-                        if (page.getContentCharset() == null) {
-                            content = new String(page.getContentData());
-                        } else {
-                            content = new String(page.getContentData(), page.getContentCharset());
-                        }
-                        directives = RobotstxtParser.parse(content, config.getUserAgentName());
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                    byte[] data = readAtMost(content, config.getMaxRobotstxtSize());
+                    if (data.length == config.getMaxRobotstxtSize()) {
+                        logger.info("Ignoring the part of " + robotsTxtUrl.getURL() + " after "
+                                + data.length + " bytes");
+                        fetchResult.abort();
                     }
+                    directives = RobotstxtParser.parse(data, page.getContentCharset(), config.getUserAgentName());
+                } else {
+                    // Don't download a body which is not going to be parsed
+                    fetchResult.abort();
                 }
             }
+        } catch (IOException e) {
+            logger.info("Failed to read " + robotsTxtUrl.getURL() + ": " + e.getMessage());
         } finally {
             if (fetchResult != null) {
                 fetchResult.discardContentIfNotConsumed();
@@ -115,20 +356,38 @@ public class RobotstxtServer {
             // fetched it
             directives = new HostDirectives();
         }
-        synchronized (host2directivesCache) {
-            if (host2directivesCache.size() == config.getCacheSize()) {
-                String minHost = null;
-                long minAccessTime = Long.MAX_VALUE;
-                for (Entry<String, HostDirectives> entry : host2directivesCache.entrySet()) {
-                    if (entry.getValue().getLastAccessTime() < minAccessTime) {
-                        minAccessTime = entry.getValue().getLastAccessTime();
-                        minHost = entry.getKey();
-                    }
-                }
-                host2directivesCache.remove(minHost);
-            }
-            host2directivesCache.put(host, directives);
+        if (fetchResult != null) {
+            directives.setStatusCode(fetchResult.getStatusCode());
         }
         return directives;
     }
+
+    /**
+     * Reads the given stream until its end or until maxLength bytes have been
+     * read, whichever comes first.
+     */
+    private static byte[] readAtMost(InputStream in, int maxLength) throws IOException {
+        byte[] buffer = new byte[Math.min(maxLength, 8192)];
+        int length = 0;
+        int n;
+        while (length < maxLength && (n = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += n;
+            if (length == buffer.length && length < maxLength) {
+                buffer = Arrays.copyOf(buffer, Math.min(maxLength, buffer.length * 2));
+            }
+        }
+        return (length == buffer.length) ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    private static class ParkedURL {
+        final WebURL url;
+        final String path;
+        final ParkedURLHandler handler;
+
+        ParkedURL(WebURL url, String path, ParkedURLHandler handler) {
+            this.url = url;
+            this.path = path;
+            this.handler = handler;
+        }
+    }
 }
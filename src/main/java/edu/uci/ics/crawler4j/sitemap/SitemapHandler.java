@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.sitemap;
+
+/**
+ * Receives the entries of a sitemap, one by one, while it is being parsed.
+ */
+public interface SitemapHandler {
+
+    /**
+     * Called for each url listed in a sitemap.
+     *
+     * @param url          the location of the page
+     * @param lastModified the time the page was last modified, in milliseconds
+     *                     since the epoch, or -1 if it is not given
+     * @param priority     the priority of the page relative to the other pages
+     *                     of the site, between 0 and 1, or -1 if it is not given
+     */
+    void url(String url, long lastModified, float priority);
+
+    /**
+     * Called for each sitemap listed in a sitemap index.
+     */
+    void sitemap(String url);
+}
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.sitemap;
+
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Fetches sitemaps and parses them while they are downloaded. The sitemaps
+ * listed in a sitemap index are fetched as well.
+ */
+public class SitemapLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SitemapLoader.class);
+
+    /**
+     * Sitemap indexes can't list other indexes, but some do. They are followed
+     * this many levels deep.
+     */
+    private static final int MAX_INDEX_DEPTH = 2;
+
+    private final PageFetcher pageFetcher;
+
+    private final SitemapParser parser = new SitemapParser();
+
+    public SitemapLoader(PageFetcher pageFetcher) {
+        this.pageFetcher = pageFetcher;
+    }
+
+    /**
+     * Fetches the given sitemap, and the sitemaps it lists if it is an index,
+     * and passes their urls to the handler as they are parsed. Sitemaps which
+     * can not be fetched or parsed are logged and skipped.
+     * <p/>
+     * A sitemap may only list urls of its own host, so urls and sitemaps of
+     * other hosts are dropped.
+     *
+     * @return the number of sitemaps which were fetched
+     */
+    public int load(String sitemapUrl, SitemapHandler handler) {
+        return load(sitemapUrl, hostOf(sitemapUrl), handler);
+    }
+
+    /**
+     * Like {@link #load(String, SitemapHandler)}, but only keeps the urls and
+     * sitemaps of the given host. A robots.txt may list sitemaps which are
+     * hosted elsewhere, and these may only list urls of the robots.txt host.
+     *
+     * @param host the host the urls must have, in lower case
+     * @return the number of sitemaps which were fetched
+     */
+    public int load(String sitemapUrl, final String host, final SitemapHandler handler) {
+        if (host == null) {
+            logger.warn("Invalid sitemap URL: " + sitemapUrl);
+            return 0;
+        }
+        final Deque<String> pending = new ArrayDeque<>();
+        final Set<String> seen = new HashSet<>();
+        pending.add(sitemapUrl);
+        seen.add(sitemapUrl);
+        int loaded = 0;
+        for (int depth = 0; depth <= MAX_INDEX_DEPTH && !pending.isEmpty(); depth++) {
+            final boolean followIndexes = depth < MAX_INDEX_DEPTH;
+            for (int i = pending.size(); i > 0; i--) {
+                String url = pending.poll();
+                boolean fetched = fetch(url, new SitemapHandler() {
+                    @Override
+                    public void url(String url, long lastModified, float priority) {
+                        if (isOnHost(url, host)) {
+                            handler.url(url, lastModified, priority);
+                        }
+                    }
+
+                    @Override
+                    public void sitemap(String url) {
+                        if (!isOnHost(url, host)) {
+                            return;
+                        }
+                        handler.sitemap(url);
+                        if (followIndexes && seen.add(url)) {
+                            pending.add(url);
+                        }
+                    }
+                });
+                if (fetched) {
+                    loaded++;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private static boolean isOnHost(String url, String host) {
+        if (host.equals(hostOf(url))) {
+            return true;
+        }
+        logger.debug("Dropped " + url + " as it is not on " + host);
+        return false;
+    }
+
+    /**
+     * @return the host of the url in lower case, or null if it is not a valid
+     *         url
+     */
+    public static String hostOf(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private boolean fetch(String url, SitemapHandler handler) {
+        WebURL webURL = new WebURL();
+        webURL.setURL(url);
+        PageFetchResult fetchResult = null;
+        try {
+            fetchResult = pageFetcher.fetchCrawlerFile(webURL);
+            if (fetchResult.getStatusCode() != HttpStatus.SC_OK) {
+                logger.info("Couldn't fetch the sitemap " + url + ", status: " + fetchResult.getStatusCode());
+                return false;
+            }
+            parser.parse(fetchResult.openContent(new Page(webURL), -1, false), handler);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Failed to read the sitemap " + url + ": " + e.getMessage());
+            if (fetchResult != null) {
+                // Don't download the rest of a sitemap which can't be parsed
+                fetchResult.abort();
+            }
+            return false;
+        } finally {
+            if (fetchResult != null) {
+                fetchResult.discardContentIfNotConsumed();
+            }
+        }
+    }
+}
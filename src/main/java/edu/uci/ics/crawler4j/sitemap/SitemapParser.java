@@ -0,0 +1,347 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.sitemap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Parses sitemaps and sitemap indexes as defined at http://www.sitemaps.org/,
+ * in XML or as plain text with one url per line, and gzipped or not.
+ * <p/>
+ * The sitemap is parsed while it is read, and each entry is handed to a
+ * {@link SitemapHandler} as soon as it is complete, so that a sitemap is never
+ * held in memory as a whole.
+ */
+public class SitemapParser {
+
+    /**
+     * The protocol limits sitemaps to 50 MB, uncompressed.
+     */
+    public static final int DEFAULT_MAX_SIZE = 50 * 1024 * 1024;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final XMLInputFactory xmlInputFactory;
+
+    private final long maxSize;
+
+    public SitemapParser() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of bytes of an uncompressed sitemap
+     *                which are parsed
+     */
+    public SitemapParser(long maxSize) {
+        this.maxSize = maxSize;
+        xmlInputFactory = XMLInputFactory.newInstance();
+        // Sitemaps have no use for DTDs, and external entities could make us
+        // read local files
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Parses the sitemap read from the given stream. The entries read before
+     * an error are handed to the handler even if an exception is thrown.
+     *
+     * @throws IOException if the stream can not be read, the sitemap is not
+     *                     well-formed or it is larger than the maximum size
+     */
+    public void parse(InputStream in, SitemapHandler handler) throws IOException {
+        in = new BufferedInputStream(in);
+        in.mark(2);
+        boolean gzipped = (in.read() == 0x1f && in.read() == 0x8b);
+        in.reset();
+        if (gzipped) {
+            in = new BufferedInputStream(new GZIPInputStream(in));
+        }
+        in = new LimitedInputStream(in, maxSize);
+
+        if (isXml(in)) {
+            parseXml(in, handler);
+        } else {
+            parseText(in, handler);
+        }
+    }
+
+    /**
+     * Looks at the first byte which is not whitespace or a byte order mark.
+     */
+    private static boolean isXml(InputStream in) throws IOException {
+        in.mark(1024);
+        try {
+            for (int i = 0; i < 1024; i++) {
+                int b = in.read();
+                if (b == '<') {
+                    return true;
+                }
+                if (b == -1 || !(Character.isWhitespace(b) || b == 0xEF || b == 0xBB || b == 0xBF)) {
+                    return false;
+                }
+            }
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+
+    private void parseXml(InputStream in, SitemapHandler handler) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(in);
+            String loc = null;
+            long lastModified = -1;
+            float priority = -1;
+            // Only the direct children of an entry describe it: extensions
+            // such as image sitemaps have <loc> elements of their own, deeper
+            // inside the entry.
+            int depth = 0;
+            int entryDepth = -1;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String name = reader.getLocalName();
+                    if (entryDepth == -1 && (name.equals("url") || name.equals("sitemap"))) {
+                        entryDepth = depth;
+                        loc = null;
+                        lastModified = -1;
+                        priority = -1;
+                    } else if (entryDepth != -1 && depth == entryDepth + 1) {
+                        if (name.equals("loc")) {
+                            loc = reader.getElementText().trim();
+                            depth--;
+                        } else if (name.equals("lastmod")) {
+                            lastModified = parseLastModified(reader.getElementText().trim());
+                            depth--;
+                        } else if (name.equals("priority")) {
+                            priority = parsePriority(reader.getElementText().trim());
+                            depth--;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == entryDepth) {
+                        entryDepth = -1;
+                        if (loc != null && !loc.isEmpty()) {
+                            if (reader.getLocalName().equals("url")) {
+                                handler.url(loc, lastModified, priority);
+                            } else {
+                                handler.sitemap(loc);
+                            }
+                        }
+                        loc = null;
+                    }
+                    depth--;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed sitemap: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // Nothing more to read
+                }
+            }
+        }
+    }
+
+    private static void parseText(InputStream in, SitemapHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            line = line.trim();
+            if (line.startsWith("http://") || line.startsWith("https://")) {
+                handler.url(line, -1, -1);
+            }
+        }
+    }
+
+    private static float parsePriority(String value) {
+        try {
+            float priority = Float.parseFloat(value);
+            return (priority >= 0 && priority <= 1) ? priority : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a date in the W3C Datetime format used by sitemaps, from "YYYY"
+     * to "YYYY-MM-DDThh:mm:ss.sTZD". Returns -1 if it is not valid.
+     */
+    static long parseLastModified(String value) {
+        try {
+            int length = value.length();
+            int[] fields = {0, 1, 1, 0, 0, 0};
+            fields[0] = parseDigits(value, 0, 4);
+            int pos = 4;
+            if (pos < length) {
+                expect(value, pos, '-');
+                fields[1] = parseDigits(value, pos + 1, 2);
+                pos += 3;
+            }
+            if (pos < length) {
+                expect(value, pos, '-');
+                fields[2] = parseDigits(value, pos + 1, 2);
+                pos += 3;
+            }
+            int millis = 0;
+            int offset = 0;
+            if (pos < length) {
+                // A time is always followed by a time zone
+                expect(value, pos, 'T');
+                fields[3] = parseDigits(value, pos + 1, 2);
+                expect(value, pos + 3, ':');
+                fields[4] = parseDigits(value, pos + 4, 2);
+                pos += 6;
+                if (pos < length && value.charAt(pos) == ':') {
+                    fields[5] = parseDigits(value, pos + 1, 2);
+                    pos += 3;
+                    if (pos < length && value.charAt(pos) == '.') {
+                        pos++;
+                        for (int scale = 100; pos < length && Character.isDigit(value.charAt(pos)); pos++) {
+                            millis += (value.charAt(pos) - '0') * scale;
+                            scale /= 10;
+                        }
+                    }
+                }
+                char zone = value.charAt(pos);
+                if (zone == 'Z') {
+                    pos++;
+                } else if (zone == '+' || zone == '-') {
+                    expect(value, pos + 3, ':');
+                    offset = (parseDigits(value, pos + 1, 2) * 60 + parseDigits(value, pos + 4, 2)) * 60000;
+                    if (zone == '-') {
+                        offset = -offset;
+                    }
+                    pos += 6;
+                } else {
+                    return -1;
+                }
+            }
+            if (pos != length) {
+                return -1;
+            }
+            Calendar calendar = new GregorianCalendar(UTC);
+            calendar.clear();
+            calendar.setLenient(false);
+            calendar.set(fields[0], fields[1] - 1, fields[2], fields[3], fields[4], fields[5]);
+            calendar.set(Calendar.MILLISECOND, millis);
+            return calendar.getTimeInMillis() - offset;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static int parseDigits(String value, int from, int count) {
+        int result = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException();
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static void expect(String value, int pos, char c) {
+        if (value.charAt(pos) != c) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Fails once more than a given number of bytes have been read.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+        private long mark;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            super.mark(readLimit);
+            mark = count;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            super.reset();
+            count = mark;
+        }
+
+        private void count(long n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("Sitemap larger than " + limit + " bytes");
+            }
+        }
+    }
+}
@@ -43,6 +43,9 @@ public class WebURL implements Serializable {
     private String path;
     private String anchor;
     private byte priority;
+    private short retryCount;
+    private long notBefore;
+    private long lastModified = -1;
 
     /**
      * Returns the unique document id assigned to this Url.
@@ -200,4 +203,41 @@ public class WebURL implements Serializable {
         this.priority = priority;
     }
 
+    /**
+     * Returns the number of times fetching this URL has been retried after a
+     * transient failure.
+     */
+    public short getRetryCount() {
+        return retryCount;
+    }
+
+    public void setRetryCount(short retryCount) {
+        this.retryCount = retryCount;
+    }
+
+    /**
+     * Returns the time (in milliseconds since the epoch) before which this URL
+     * should not be fetched again, or 0 if it is not waiting for a retry.
+     */
+    public long getNotBefore() {
+        return notBefore;
+    }
+
+    public void setNotBefore(long notBefore) {
+        this.notBefore = notBefore;
+    }
+
+    /**
+     * Returns the time (in milliseconds since the epoch) the page was last
+     * modified according to the sitemap which listed this URL, or -1 if it is
+     * not known.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
 }
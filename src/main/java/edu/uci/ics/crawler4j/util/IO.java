@@ -18,14 +18,15 @@
 package edu.uci.ics.crawler4j.util;
 
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.PageBiggerThanMaxSizeException;
 import org.apache.http.HttpEntity;
-import org.apache.http.util.ByteArrayBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
@@ -65,15 +66,53 @@ public class IO {
         }
     }
 
+    /**
+     * Size of the per-thread read buffer that is allocated the first time a
+     * thread reads a body of unknown length.
+     */
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Read buffers which grew larger than this are not kept for reuse, so that
+     * one huge page does not pin memory in every crawler thread.
+     */
+    private static final int MAX_RETAINED_READ_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The largest array allocated up front for a body of declared length. A
+     * longer body is read into an array which grows as the data arrives, so
+     * a server can't make the crawler allocate memory it never sends.
+     */
+    private static final int MAX_PREALLOCATED_LENGTH = 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> readBuffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[READ_BUFFER_SIZE];
+        }
+    };
+
     /**
      * TAKEN from : org.apache.http.util.EntityUtils
      * <p/>
      * Read the contents of an entity and return it as a byte array.
+     * <p/>
+     * If the entity declares its length, the body is read directly into an
+     * array of that size, which is allocated in steps as the data arrives when
+     * the length is large. Otherwise it is read into a buffer that is reused
+     * by the current thread, and copied once into an array of the exact size.
+     * <p/>
+     * If more than maxContentLength bytes are read, the stream is left open and
+     * a {@link PageBiggerThanMaxSizeException} is thrown. Closing the stream would
+     * make HttpClient read the rest of the body to keep the connection alive, so
+     * the caller should abort the request instead.
      *
      * @param entity
+     * @param maxContentLength the maximum number of bytes to read, or -1 for no limit
      * @return byte array containing the entity content. May be null if
      * {@link org.apache.http.HttpEntity#getContent()} is null.
      * @throws IOException              if an error occurs reading the input stream
+     * @throws PageBiggerThanMaxSizeException if the content is larger than maxContentLength
      * @throws IllegalArgumentException if entity is null or if content length > Integer.MAX_VALUE
      */
     public static byte[] toByteArray(final HttpEntity entity, final int maxContentLength) throws IOException {
@@ -84,29 +123,60 @@ public class IO {
         if (instream == null) {
             return null;
         }
+        boolean leaveOpen = false;
         try {
-            if (entity.getContentLength() > Integer.MAX_VALUE) {
+            long contentLength = entity.getContentLength();
+            if (contentLength > Integer.MAX_VALUE) {
                 throw new IllegalArgumentException("HTTP entity too large to be buffered in memory");
             }
-            int i = -1;//(int)entity.getContentLength();
-            if (i < 0) {
-                i = 4096;
+            if (maxContentLength != -1 && contentLength > maxContentLength) {
+                logger.warn("SKIPPING Large Content, content length :" + contentLength);
+                leaveOpen = true;
+                throw new PageBiggerThanMaxSizeException(0);
+            }
+
+            if (contentLength >= 0) {
+                byte[] data = new byte[(int) Math.min(contentLength, MAX_PREALLOCATED_LENGTH)];
+                int totalBytes = 0;
+                while (totalBytes < contentLength) {
+                    if (totalBytes == data.length) {
+                        data = Arrays.copyOf(data, (int) Math.min(contentLength, data.length * 2L));
+                    }
+                    int bytesRead = instream.read(data, totalBytes, data.length - totalBytes);
+                    if (bytesRead == -1) {
+                        break;
+                    }
+                    totalBytes += bytesRead;
+                }
+                if (totalBytes < data.length) {
+                    // The connection was closed before the whole body arrived
+                    return Arrays.copyOf(data, totalBytes);
+                }
+                return data;
             }
-            ByteArrayBuffer buffer = new ByteArrayBuffer(i);
-            byte[] tmp = new byte[4096];
-            int bytesRead, totalBytes = 0;
-            while ((bytesRead = instream.read(tmp)) != -1) {
+
+            byte[] buffer = readBuffers.get();
+            int totalBytes = 0;
+            int bytesRead;
+            while ((bytesRead = instream.read(buffer, totalBytes, buffer.length - totalBytes)) != -1) {
                 totalBytes += bytesRead;
                 if (maxContentLength != -1 && totalBytes > maxContentLength) {
                     logger.warn("SKIPPING Large Content, bytes read :" + totalBytes);
-                    return new byte[]{}; //maxContentLength = -1, poor man's feature flag
+                    leaveOpen = true;
+                    throw new PageBiggerThanMaxSizeException(totalBytes);
+                }
+                if (totalBytes == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    if (buffer.length <= MAX_RETAINED_READ_BUFFER_SIZE) {
+                        readBuffers.set(buffer);
+                    }
                 }
-
-                buffer.append(tmp, 0, bytesRead);
             }
-            return buffer.toByteArray();
+            return Arrays.copyOf(buffer, totalBytes);
         } finally {
-            instream.close();
+            if (!leaveOpen) {
+                instream.close();
+            }
         }
     }
 }
@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.benchmarks;
+
+import edu.uci.ics.crawler4j.util.IO;
+import org.apache.http.entity.BasicHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the throughput and the allocation per page of reading page bodies
+ * with {@link IO#toByteArray}, for bodies of declared and of unknown length.
+ * <p/>
+ * Usage: BodyReadBenchmark [bodyLength]. The body is 60 KB by default.
+ */
+public class BodyReadBenchmark {
+
+    private static final int RUNS_FOR_ALLOCATION = 20000;
+
+    public static void main(String[] args) throws Exception {
+        final byte[] body = new byte[(args.length > 0) ? Integer.parseInt(args[0]) : 60 * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+
+        Throughput.Task declaredLength = new Throughput.Task() {
+            @Override
+            public void run() throws Exception {
+                IO.toByteArray(entity(body, true), -1);
+            }
+        };
+        Throughput.Task unknownLength = new Throughput.Task() {
+            @Override
+            public void run() throws Exception {
+                IO.toByteArray(entity(body, false), -1);
+            }
+        };
+        Throughput.measure("Declared length", body.length, declaredLength);
+        printAllocation("Declared length", declaredLength);
+        Throughput.measure("Unknown length", body.length, unknownLength);
+        printAllocation("Unknown length", unknownLength);
+    }
+
+    private static BasicHttpEntity entity(byte[] body, boolean declareLength) {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(body));
+        entity.setContentLength(declareLength ? body.length : -1);
+        return entity;
+    }
+
+    /**
+     * Prints the bytes the current thread allocates per run of the task, if
+     * the JVM can tell.
+     */
+    private static void printAllocation(String name, Throughput.Task task) throws Exception {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < RUNS_FOR_ALLOCATION; i++) {
+            task.run();
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        System.out.printf("%-30s %10.1f KB allocated per run%n", name, allocated / 1024.0 / RUNS_FOR_ALLOCATION);
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.benchmarks;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.parser.HtmlParseData;
+import edu.uci.ics.crawler4j.parser.Parser;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the throughput of parsing HTML pages with Tika and with the
+ * lightweight parser, with and without the text of the pages.
+ * <p/>
+ * Usage: ParserBenchmark [corpusFolder]. The .html and .htm files of the
+ * folder are parsed; without a folder, a generated page with 400 links is.
+ */
+public class ParserBenchmark {
+
+    private static final String CONTEXT_URL = "http://www.example.com/index.html";
+
+    public static void main(String[] args) throws Exception {
+        final List<byte[]> pages;
+        if (args.length > 0) {
+            pages = Throughput.readCorpus(new File(args[0]), ".html", ".htm");
+        } else {
+            pages = new ArrayList<>();
+            pages.add(generatePage());
+        }
+        long bytes = Throughput.totalLength(pages);
+        System.out.println(pages.size() + " pages, " + bytes + " bytes");
+
+        CrawlConfig tika = new CrawlConfig();
+        CrawlConfig lightweight = new CrawlConfig();
+        lightweight.setLightweightHtmlParsing(true);
+        CrawlConfig linksOnly = new CrawlConfig();
+        linksOnly.setLightweightHtmlParsing(true);
+        linksOnly.setMaxTextLength(0);
+        linksOnly.setIncludeHtmlInParseData(false);
+
+        Throughput.measure("Tika", bytes, parseAll(new Parser(tika), pages));
+        Throughput.measure("Lightweight", bytes, parseAll(new Parser(lightweight), pages));
+        Throughput.measure("Lightweight, links only", bytes, parseAll(new Parser(linksOnly), pages));
+    }
+
+    private static Throughput.Task parseAll(final Parser parser, final List<byte[]> pages) {
+        return new Throughput.Task() {
+            @Override
+            public void run() {
+                WebURL url = new WebURL();
+                url.setURL(CONTEXT_URL);
+                for (byte[] data : pages) {
+                    Page page = new Page(url);
+                    page.setContentData(data);
+                    page.setContentType("text/html");
+                    parser.parse(page, CONTEXT_URL);
+                    // Reading the links materializes them with both parsers
+                    if (page.getParseData() instanceof HtmlParseData) {
+                        ((HtmlParseData) page.getParseData()).getOutgoingUrls();
+                    }
+                }
+            }
+        };
+    }
+
+    private static byte[] generatePage() throws Exception {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Items</title>"
+                + "<meta charset=\"utf-8\"><script>var x = '<a href=1>';</script>"
+                + "<link rel=\"stylesheet\" href=\"/s.css\"></head><body>");
+        for (int i = 0; i < 400; i++) {
+            html.append("<div class=\"item c").append(i).append("\"><p>Some text about item ").append(i)
+                .append(" &amp; more</p><a href=\"/p/").append(i).append("?x=1&amp;y=2\" title=\"t\">Item ")
+                .append(i).append("</a><img src=\"/i/").append(i).append(".png\" alt=\"\"></div>\n");
+        }
+        html.append("</body></html>");
+        return html.toString().getBytes("UTF-8");
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.benchmarks;
+
+import edu.uci.ics.crawler4j.robotstxt.HostDirectives;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtParser;
+import edu.uci.ics.crawler4j.robotstxt.RuleSet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the throughput of parsing robots.txt files, and of matching paths
+ * against the parsed rules. Matching is measured with {@link HostDirectives},
+ * and with the prefix {@link RuleSet}s it used to match with, which ignore
+ * wildcards; both print the time per path.
+ * <p/>
+ * Usage: RobotstxtBenchmark [corpusFolder]. The .txt files of the folder are
+ * parsed; without a folder, a generated file with 300 rules in three groups
+ * is.
+ */
+public class RobotstxtBenchmark {
+
+    private static final String USER_AGENT = "crawler4j";
+
+    private static final String[] PATHS = {
+        "/", "/index.html", "/search?q=crawler", "/private/area/page.html", "/p/123/details?x=1&y=2",
+        "/images/logo.png", "/a/very/long/path/that/matches/nothing/at/all/index.php"
+    };
+
+    public static void main(String[] args) throws Exception {
+        final List<byte[]> files;
+        if (args.length > 0) {
+            files = Throughput.readCorpus(new File(args[0]), ".txt");
+        } else {
+            files = new ArrayList<>();
+            files.add(generateFile());
+        }
+        long bytes = Throughput.totalLength(files);
+        System.out.println(files.size() + " files, " + bytes + " bytes");
+
+        Throughput.measure("Parse", bytes, new Throughput.Task() {
+            @Override
+            public void run() {
+                for (byte[] file : files) {
+                    RobotstxtParser.parse(file, USER_AGENT);
+                }
+            }
+        });
+
+        final List<HostDirectives> parsed = new ArrayList<>();
+        for (byte[] file : files) {
+            HostDirectives directives = RobotstxtParser.parse(file, USER_AGENT);
+            if (directives != null) {
+                directives.allows("/");
+                parsed.add(directives);
+            }
+        }
+        double runs = Throughput.measure("Match " + PATHS.length + " paths", 0, new Throughput.Task() {
+            @Override
+            public void run() {
+                for (HostDirectives directives : parsed) {
+                    for (String path : PATHS) {
+                        directives.allows(path);
+                    }
+                }
+            }
+        });
+        printTimePerPath(runs, parsed.size());
+
+        final List<RuleSet[]> ruleSets = new ArrayList<>();
+        for (HostDirectives directives : parsed) {
+            RuleSet allows = new RuleSet();
+            allows.addAll(directives.getAllowPatterns());
+            RuleSet disallows = new RuleSet();
+            disallows.addAll(directives.getDisallowPatterns());
+            ruleSets.add(new RuleSet[] {allows, disallows});
+        }
+        runs = Throughput.measure("RuleSet " + PATHS.length + " paths", 0, new Throughput.Task() {
+            @Override
+            public void run() {
+                for (RuleSet[] rules : ruleSets) {
+                    for (String path : PATHS) {
+                        if (rules[1].containsPrefixOf(path)) {
+                            rules[0].containsPrefixOf(path);
+                        }
+                    }
+                }
+            }
+        });
+        printTimePerPath(runs, ruleSets.size());
+    }
+
+    private static void printTimePerPath(double runsPerSecond, int files) {
+        System.out.printf("%-30s %10.1f ns%n", "  per path", 1e9 / runsPerSecond / files / PATHS.length);
+    }
+
+    private static byte[] generateFile() throws Exception {
+        StringBuilder content = new StringBuilder("# Generated for the benchmark\n");
+        String[] agents = {"googlebot", "*", USER_AGENT};
+        for (String agent : agents) {
+            content.append("User-agent: ").append(agent).append('\n');
+            content.append("Crawl-delay: 1.5\n");
+            for (int i = 0; i < 100; i++) {
+                if (i % 10 == 0) {
+                    content.append("Allow: /section").append(i).append("/public/*.html$\n");
+                } else if (i % 3 == 0) {
+                    content.append("Disallow: /*?session=").append(i).append("\n");
+                } else {
+                    content.append("Disallow: /section").append(i).append("/private/ # not for robots\n");
+                }
+            }
+            content.append('\n');
+        }
+        content.append("Sitemap: http://www.example.com/sitemap.xml\n");
+        return content.toString().getBytes("UTF-8");
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times a task in a loop after a warm-up and prints its throughput. The
+ * benchmarks in this package are run from the command line with it; it is a
+ * plain timing loop, so compare numbers taken on the same machine only.
+ */
+public class Throughput {
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private static final long WARMUP_MILLIS = 5000;
+    private static final long MEASURE_MILLIS = 10000;
+
+    /**
+     * Runs the task for the warm-up time, then for the measurement time, and
+     * prints the number of runs and bytes per second.
+     *
+     * @param bytesPerRun the number of bytes a run of the task processes, or 0
+     *                    to only print the runs
+     * @return the number of runs per second
+     */
+    public static double measure(String name, long bytesPerRun, Task task) throws Exception {
+        loop(task, WARMUP_MILLIS);
+        long start = System.nanoTime();
+        long runs = loop(task, MEASURE_MILLIS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (bytesPerRun > 0) {
+            System.out.printf("%-30s %10.1f runs/s %10.1f MB/s%n", name, runs / seconds,
+                    runs * (double) bytesPerRun / seconds / 1e6);
+        } else {
+            System.out.printf("%-30s %10.1f runs/s%n", name, runs / seconds);
+        }
+        return runs / seconds;
+    }
+
+    private static long loop(Task task, long millis) throws Exception {
+        long end = System.nanoTime() + millis * 1000000;
+        long runs = 0;
+        while (System.nanoTime() < end) {
+            task.run();
+            runs++;
+        }
+        return runs;
+    }
+
+    /**
+     * Reads the files of a corpus folder, and of its sub folders, whose name
+     * ends with one of the given suffixes.
+     */
+    public static List<byte[]> readCorpus(File folder, String... suffixes) throws IOException {
+        List<byte[]> files = new ArrayList<>();
+        File[] children = folder.listFiles();
+        if (children == null) {
+            throw new IOException("Not a folder: " + folder.getAbsolutePath());
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                files.addAll(readCorpus(child, suffixes));
+                continue;
+            }
+            for (String suffix : suffixes) {
+                if (child.getName().toLowerCase().endsWith(suffix)) {
+                    files.add(Files.readAllBytes(child.toPath()));
+                    break;
+                }
+            }
+        }
+        return files;
+    }
+
+    public static long totalLength(List<byte[]> files) {
+        long length = 0;
+        for (byte[] file : files) {
+            length += file.length;
+        }
+        return length;
+    }
+}
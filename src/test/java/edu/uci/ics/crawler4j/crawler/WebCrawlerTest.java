@@ -0,0 +1,334 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.crawler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.frontier.Counters;
+import edu.uci.ics.crawler4j.frontier.Counters.ReservedCounterNames;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.IO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs whole crawls against a local server.
+ */
+public class WebCrawlerTest {
+
+    private static final List<String> visited = Collections.synchronizedList(new ArrayList<String>());
+
+    private static final List<String> notModified = Collections.synchronizedList(new ArrayList<String>());
+
+    private static volatile String lastUrl;
+
+    private static volatile CountDownLatch lastUrlVisited;
+
+    private HttpServer server;
+
+    private String base;
+
+    private File storageFolder;
+
+    private CrawlConfig config;
+
+    /**
+     * The responses of the server, by path. A page with an ETag is answered
+     * with 304 when the request has the same ETag.
+     */
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+
+    /**
+     * The number of requests the server answered, by path.
+     */
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    public static class RecordingCrawler extends WebCrawler {
+
+        @Override
+        public boolean shouldVisit(WebURL url) {
+            return url.getURL().startsWith("http://127.0.0.1:");
+        }
+
+        @Override
+        public void visit(Page page) {
+            visited.add(page.getWebURL().getURL());
+            if (page.getWebURL().getURL().equals(lastUrl)) {
+                lastUrlVisited.countDown();
+            }
+        }
+
+        @Override
+        protected void onPageNotModified(WebURL webUrl) {
+            notModified.add(webUrl.getURL());
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        visited.clear();
+        notModified.clear();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                requests.putIfAbsent(path, new AtomicInteger());
+                requests.get(path).incrementAndGet();
+                Response response = responses.get(path);
+                if (response == null) {
+                    send(exchange, 404, null, "");
+                    return;
+                }
+                if (response.eTag != null) {
+                    exchange.getResponseHeaders().set("ETag", response.eTag);
+                    if (response.eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        send(exchange, 304, null, "");
+                        return;
+                    }
+                }
+                if (response.location != null) {
+                    exchange.getResponseHeaders().set("Location", base + response.location);
+                }
+                if (response.trickle) {
+                    trickle(exchange);
+                    return;
+                }
+                send(exchange, response.statusCode, "text/html", response.body);
+            }
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+        storageFolder = Files.createTempDirectory("crawl").toFile();
+
+        config = new CrawlConfig();
+        config.setCrawlStorageFolder(storageFolder.getAbsolutePath());
+        config.setPolitenessDelay(0);
+        config.setConditionalFetching(true);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        IO.deleteFolder(storageFolder);
+    }
+
+    @Test
+    public void shouldFollowLinksOfUnchangedPagesInLaterCrawls() throws Exception {
+        responses.put("/", page("\"v1\"", "/page.html"));
+        responses.put("/page.html", page(null));
+
+        crawl(base + "/page.html");
+        assertTrue(visited.contains(base + "/"));
+        assertTrue(visited.contains(base + "/page.html"));
+
+        // The seed is not modified in the second crawl, which has forgotten
+        // every page it found behind it
+        visited.clear();
+        crawl(base + "/page.html");
+        assertEquals(Collections.singletonList(base + "/"), notModified);
+        assertEquals(Collections.singletonList(base + "/page.html"), visited);
+    }
+
+    @Test
+    public void shouldStopAtRedirectLoops() throws Exception {
+        responses.put("/", page(null, "/loop-a", "/page.html"));
+        responses.put("/loop-a", redirect(302, "/loop-b"));
+        responses.put("/loop-b", redirect(301, "/loop-c"));
+        responses.put("/loop-c", redirect(307, "/loop-b"));
+        responses.put("/page.html", page(null));
+
+        crawl(base + "/page.html");
+        assertEquals(1, requests.get("/loop-a").get());
+        assertEquals(1, requests.get("/loop-b").get());
+        assertEquals(1, requests.get("/loop-c").get());
+        assertEquals(Arrays.asList(base + "/", base + "/page.html"), visited);
+    }
+
+    @Test
+    public void shouldFollowAtMostMaxRedirects() throws Exception {
+        config.setMaxRedirects(2);
+        responses.put("/", page(null, "/r1", "/page.html"));
+        responses.put("/r1", redirect(302, "/r2"));
+        responses.put("/r2", redirect(302, "/r3"));
+        responses.put("/r3", redirect(302, "/r4"));
+        responses.put("/r4", page(null));
+        responses.put("/page.html", page(null));
+
+        crawl(base + "/page.html");
+        assertEquals(1, requests.get("/r3").get());
+        assertNull(requests.get("/r4"));
+        assertFalse(visited.contains(base + "/r4"));
+    }
+
+    @Test
+    public void shouldCountFetchesAbortedByTheWatchdog() throws Exception {
+        config.setMaxFetchDuration(1000);
+        responses.put("/", page(null, "/slow.html", "/page.html"));
+        Response slow = page(null);
+        slow.trickle = true;
+        responses.put("/slow.html", slow);
+        responses.put("/page.html", page(null));
+
+        Counters counters = crawl(base + "/page.html").getFrontier().getCounters();
+        assertEquals(1, counters.getValue(ReservedCounterNames.ABORTED_DEADLINE_EXCEEDED));
+        assertEquals(0, counters.getValue(ReservedCounterNames.ABORTED_TOO_SLOW));
+        assertFalse(visited.contains(base + "/slow.html"));
+    }
+
+    @Test
+    public void shouldOnlySeedSitemapUrlsOfItsHostWhichAreAccepted() throws Exception {
+        Response sitemap = new Response();
+        sitemap.statusCode = 200;
+        sitemap.body = "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<url><loc>" + base + "/page.html</loc></url>"
+                + "<url><loc>" + base + "/image.png</loc></url>"
+                + "<url><loc>http://other.example/page.html</loc></url>"
+                + "</urlset>";
+        responses.put("/sitemap.xml", sitemap);
+
+        PageFetcher pageFetcher = new PageFetcher(config);
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher);
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer) {
+            @Override
+            protected boolean shouldSeedFromSitemap(WebURL url) {
+                return !url.getURL().endsWith(".png");
+            }
+        };
+        try {
+            controller.addSitemap(base + "/sitemap.xml");
+            List<WebURL> seeds = new ArrayList<>();
+            controller.getFrontier().getNextURLs(10, seeds);
+            assertEquals(1, seeds.size());
+            assertEquals(base + "/page.html", seeds.get(0).getURL());
+        } finally {
+            // Never started, so the controller doesn't close its stores itself
+            controller.frontier.close();
+            controller.docIdServer.close();
+            controller.env.close();
+            robotstxtServer.shutdown();
+            pageFetcher.shutdown();
+        }
+    }
+
+    /**
+     * Crawls from the root page of the server with conditional fetching, until
+     * the given url has been visited. A single crawler thread fetches the urls
+     * in the order they were found, so the links of a page before the given
+     * url have all been fetched by then.
+     */
+    private CrawlController crawl(String waitFor) throws Exception {
+        lastUrl = waitFor;
+        lastUrlVisited = new CountDownLatch(1);
+
+        PageFetcher pageFetcher = new PageFetcher(config);
+        RobotstxtServer robotstxtServer = new RobotstxtServer(new RobotstxtConfig(), pageFetcher);
+        CrawlController controller = new CrawlController(config, pageFetcher, robotstxtServer);
+        try {
+            controller.addSeed(base + "/");
+            controller.startNonBlocking(RecordingCrawler.class, 1);
+            assertTrue("Not visited: " + waitFor, lastUrlVisited.await(30, TimeUnit.SECONDS));
+        } finally {
+            controller.shutdown();
+            controller.waitUntilFinish();
+            robotstxtServer.shutdown();
+            pageFetcher.shutdown();
+        }
+        return controller;
+    }
+
+    private static Response page(String eTag, String... links) {
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (String link : links) {
+            html.append("<a href=\"").append(link).append("\">link</a>");
+        }
+        Response response = new Response();
+        response.statusCode = 200;
+        response.eTag = eTag;
+        response.body = html.append("</body></html>").toString();
+        return response;
+    }
+
+    private static Response redirect(int statusCode, String location) {
+        Response response = new Response();
+        response.statusCode = statusCode;
+        response.location = location;
+        response.body = "";
+        return response;
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        exchange.sendResponseHeaders(statusCode, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Sends one byte every 100 ms, until the client hangs up or ten seconds
+     * have passed.
+     */
+    private static void trickle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/html");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (long end = System.currentTimeMillis() + 10000; System.currentTimeMillis() < end; ) {
+                out.write('x');
+                out.flush();
+                Thread.sleep(100);
+            }
+        } catch (IOException | InterruptedException e) {
+            // The client hung up
+        }
+    }
+
+    private static class Response {
+        int statusCode;
+        String eTag;
+        String location;
+        String body;
+        boolean trickle;
+    }
+}
@@ -19,9 +19,8 @@ package edu.uci.ics.crawler4j.examples.multiple;
 
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.crawler.CrawlController;
-import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.fetcher.FetchService;
 import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
-import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
 
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
@@ -52,26 +51,20 @@ public class MultipleCrawlerController {
 		config1.setCrawlStorageFolder(crawlStorageFolder + "/crawler1");
 		config2.setCrawlStorageFolder(crawlStorageFolder + "/crawler2");
 
-		config1.setPolitenessDelay(1000);
-		config2.setPolitenessDelay(2000);
-
 		config1.setMaxPagesToFetch(50);
 		config2.setMaxPagesToFetch(100);
 
 		/*
-		 * We will use different PageFetchers for the two crawlers.
+		 * Both crawlers fetch through the same FetchService, so they share
+		 * one connection pool, one robots.txt cache and the politeness state
+		 * of each host. Its config holds the fetch settings of both crawls.
 		 */
-		PageFetcher pageFetcher1 = new PageFetcher(config1);
-		PageFetcher pageFetcher2 = new PageFetcher(config2);
+		CrawlConfig fetchConfig = new CrawlConfig();
+		fetchConfig.setPolitenessDelay(1000);
+		FetchService fetchService = new FetchService(fetchConfig, new RobotstxtConfig());
 
-		/*
-		 * We will use the same RobotstxtServer for both of the crawlers.
-		 */
-		RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
-		RobotstxtServer robotstxtServer = new RobotstxtServer(robotstxtConfig, pageFetcher1);
-
-		CrawlController controller1 = new CrawlController(config1, pageFetcher1, robotstxtServer);
-		CrawlController controller2 = new CrawlController(config2, pageFetcher2, robotstxtServer);
+		CrawlController controller1 = new CrawlController(config1, fetchService);
+		CrawlController controller2 = new CrawlController(config2, fetchService);
 
 		String[] crawler1Domains = new String[] { "http://www.ics.uci.edu/", "http://www.cnn.com/" };
 		String[] crawler2Domains = new String[] { "http://en.wikipedia.org/" };
@@ -100,5 +93,7 @@ public class MultipleCrawlerController {
 
 		controller2.waitUntilFinish();
 		System.out.println("Crawler 2 is finished.");
+
+		fetchService.shutdown();
 	}
 }
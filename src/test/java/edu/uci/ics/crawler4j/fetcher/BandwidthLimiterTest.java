@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class BandwidthLimiterTest {
+
+    @Test
+    public void shouldGoIntoDebtInsteadOfPolling() {
+        TokenBucket bucket = new TokenBucket(100000);
+        assertEquals(0, bucket.take(100000));
+        long wait = bucket.take(50000);
+        assertTrue(wait > 400000000L && wait <= 500000000L);
+    }
+
+    @Test
+    public void shouldLimitGlobalRate() throws IOException {
+        BandwidthLimiter limiter = new BandwidthLimiter(200000, 0);
+        long start = System.currentTimeMillis();
+        // The first second worth of bytes is a burst, the rest takes 0.5s
+        read(limiter.wrap(body(300000), "a.com", null));
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("took " + elapsed, elapsed >= 450 && elapsed < 2000);
+    }
+
+    @Test
+    public void shouldLimitEachHostSeparately() throws IOException {
+        BandwidthLimiter limiter = new BandwidthLimiter(0, 200000);
+        long start = System.currentTimeMillis();
+        read(limiter.wrap(body(200000), "a.com", null));
+        read(limiter.wrap(body(200000), "b.com", null));
+        assertTrue(System.currentTimeMillis() - start < 300);
+
+        read(limiter.wrap(body(100000), "a.com", null));
+        assertTrue(System.currentTimeMillis() - start >= 450);
+    }
+
+    private static InputStream body(int length) {
+        return new ByteArrayInputStream(new byte[length]);
+    }
+
+    private static void read(InputStream in) throws IOException {
+        byte[] buffer = new byte[16384];
+        while (in.read(buffer) != -1) {
+            // Just consume the body
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConnectionPrewarmerTest {
+
+    /**
+     * The time the server spends on every new connection before it reads a
+     * request, like a TLS handshake.
+     */
+    private static final long HANDSHAKE = 500;
+
+    private ServerSocket serverSocket;
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private String base;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        base = "http://127.0.0.1:" + serverSocket.getLocalPort();
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        connections.incrementAndGet();
+                        Thread connection = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                        connection.setDaemon(true);
+                        connection.start();
+                    } catch (IOException e) {
+                        // Closed
+                    }
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        serverSocket.close();
+    }
+
+    @Test
+    public void shouldSaveTheConnectionSetupOfTheFirstFetch() throws Exception {
+        CrawlConfig config = new CrawlConfig();
+        config.setPolitenessDelay(0);
+        config.setPrewarmHosts(1);
+        PageFetcher pageFetcher = new PageFetcher(config);
+        try {
+            WebURL url = new WebURL();
+            url.setURL(base + "/page.html");
+            pageFetcher.prewarm(url);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (pageFetcher.getPrewarmer().getWarmedConnections() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, pageFetcher.getPrewarmer().getWarmedConnections());
+            // The page is only fetched once the handshake is done
+            Thread.sleep(HANDSHAKE + 200);
+
+            PageFetchResult result = pageFetcher.fetchHeader(url);
+            assertEquals(200, result.getStatusCode());
+            result.discardContentIfNotConsumed();
+            assertEquals(1, connections.get());
+            assertTrue("TTFB " + result.getTimeToFirstByte(), result.getTimeToFirstByte() < HANDSHAKE);
+        } finally {
+            pageFetcher.shutdown();
+        }
+
+        // Without prewarming, the first fetch waits for the handshake
+        config.setPrewarmHosts(0);
+        pageFetcher = new PageFetcher(config);
+        try {
+            WebURL url = new WebURL();
+            url.setURL(base + "/page.html");
+            PageFetchResult result = pageFetcher.fetchHeader(url);
+            assertEquals(200, result.getStatusCode());
+            result.discardContentIfNotConsumed();
+            assertEquals(2, connections.get());
+            assertTrue("TTFB " + result.getTimeToFirstByte(), result.getTimeToFirstByte() >= HANDSHAKE);
+        } finally {
+            pageFetcher.shutdown();
+        }
+    }
+
+    /**
+     * Answers every request of a keep-alive connection with a small page,
+     * after the handshake delay.
+     */
+    private static void serve(Socket socket) {
+        byte[] body = "<html></html>".getBytes();
+        byte[] head = ("HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nContent-Length: " + body.length
+                + "\r\n\r\n").getBytes();
+        try (Socket s = socket) {
+            Thread.sleep(HANDSHAKE);
+            InputStream in = s.getInputStream();
+            OutputStream out = s.getOutputStream();
+            while (readRequest(in)) {
+                out.write(head);
+                out.write(body);
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // The client hung up
+        }
+    }
+
+    /**
+     * Reads a request without a body, up to the empty line after its headers.
+     *
+     * @return false if the connection was closed
+     */
+    private static boolean readRequest(InputStream in) throws IOException {
+        int matched = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            matched = (b == "\r\n\r\n".charAt(matched)) ? matched + 1 : (b == '\r' ? 1 : 0);
+            if (matched == 4) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
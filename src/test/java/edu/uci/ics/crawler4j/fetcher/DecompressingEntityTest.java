@@ -0,0 +1,113 @@
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.util.IO;
+import org.apache.http.entity.ByteArrayEntity;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.Assert.*;
+
+public class DecompressingEntityTest {
+
+    private InflaterPool inflaterPool = new InflaterPool(4);
+
+    @Test
+    public void shouldDecompressGzip() throws IOException {
+        byte[] content = content(100000);
+        for (int i = 0; i < 3; i++) {
+            // Inflaters are returned to the pool and reused between pages
+            assertArrayEquals(content, IO.toByteArray(entity(gzip(content), true, 1000000, 0), -1));
+        }
+    }
+
+    @Test
+    public void shouldKeepReturningEndOfStreamUntilClosed() throws IOException {
+        InputStream in = entity(gzip(content(100)), true, 1000000, 0).getContent();
+        assertEquals(100, in.read(new byte[200], 0, 200));
+        assertEquals(-1, in.read());
+        assertEquals(-1, in.read(new byte[10], 0, 10));
+        in.close();
+        try {
+            in.read();
+            fail();
+        } catch (IOException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void shouldDecompressMultipleGzipMembers() throws IOException {
+        byte[] first = content(70000);
+        byte[] second = "and the second member".getBytes("UTF-8");
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        members.write(gzip(first));
+        members.write(gzip(second));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(second);
+        assertArrayEquals(expected.toByteArray(), IO.toByteArray(entity(members.toByteArray(), true, 1000000, 0), -1));
+    }
+
+    @Test(expected = ZipException.class)
+    public void shouldRejectCorruptGzipTrailer() throws IOException {
+        byte[] compressed = gzip(content(1000));
+        // Flip a bit of the CRC32
+        compressed[compressed.length - 8] ^= 1;
+        IO.toByteArray(entity(compressed, true, 1000000, 0), -1);
+    }
+
+    @Test
+    public void shouldDecompressZlibAndRawDeflate() throws IOException {
+        byte[] content = content(100000);
+        assertArrayEquals(content, IO.toByteArray(entity(deflate(content, false), false, 1000000, 0), -1));
+        assertArrayEquals(content, IO.toByteArray(entity(deflate(content, true), false, 1000000, 0), -1));
+    }
+
+    @Test(expected = PageBiggerThanMaxSizeException.class)
+    public void shouldRejectTooLargeDecompressedContent() throws IOException {
+        IO.toByteArray(entity(gzip(content(100000)), true, 50000, 0), -1);
+    }
+
+    @Test(expected = PageBiggerThanMaxSizeException.class)
+    public void shouldRejectCompressionBomb() throws IOException {
+        byte[] zeros = new byte[10 * 1024 * 1024];
+        IO.toByteArray(entity(gzip(zeros), true, -1, 100), -1);
+    }
+
+    private DecompressingEntity entity(byte[] compressed, boolean gzip, long maxLength, int maxRatio) {
+        return new DecompressingEntity(new ByteArrayEntity(compressed), gzip, inflaterPool, maxLength, maxLength,
+                maxRatio);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(content);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] content, boolean nowrap) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap));
+        deflate.write(content);
+        deflate.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] content(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + (i * 7 + i / 13) % 26);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class FetchServiceTest {
+
+    @Test
+    public void shouldLetSingleCrawlUseAllFetches() throws InterruptedException {
+        FetchService service = service(4);
+        FetchService.Share share = service.register();
+        service.register();
+        for (int i = 0; i < 4; i++) {
+            share.acquire();
+        }
+        assertEquals(4, share.getInFlight());
+        service.shutdown();
+    }
+
+    @Test
+    public void shouldShareFetchesFairly() throws InterruptedException {
+        FetchService service = service(4);
+        final FetchService.Share first = service.register();
+        final FetchService.Share second = service.register();
+        FetchService.Slot[] slots = new FetchService.Slot[4];
+        for (int i = 0; i < 4; i++) {
+            slots[i] = first.acquire();
+        }
+
+        // While the second crawl waits for a free fetch, the first one can not
+        // take more than its half.
+        Thread firstWaiting = acquireInBackground(first, new AtomicReference<FetchService.Slot>());
+        Thread secondWaiting = acquireInBackground(second, new AtomicReference<FetchService.Slot>());
+        Thread.sleep(100);
+        slots[0].release();
+        secondWaiting.join(1000);
+        assertFalse(secondWaiting.isAlive());
+        assertEquals(1, second.getInFlight());
+
+        AtomicReference<FetchService.Slot> secondSlot = new AtomicReference<>();
+        secondWaiting = acquireInBackground(second, secondSlot);
+        Thread.sleep(100);
+        slots[1].release();
+        secondWaiting.join(1000);
+        assertFalse(secondWaiting.isAlive());
+        assertEquals(2, second.getInFlight());
+        assertEquals(2, first.getInFlight());
+        assertTrue(firstWaiting.isAlive());
+
+        // With nobody else waiting, the first crawl may use a free fetch again
+        secondSlot.get().release();
+        firstWaiting.join(1000);
+        assertFalse(firstWaiting.isAlive());
+        assertEquals(3, first.getInFlight());
+        service.shutdown();
+    }
+
+    private static Thread acquireInBackground(final FetchService.Share share,
+                                              final AtomicReference<FetchService.Slot> slot) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    slot.set(share.acquire());
+                } catch (InterruptedException ignored) {
+                    // Do nothing
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private static FetchService service(int maxConcurrentFetches) {
+        CrawlConfig config = new CrawlConfig();
+        config.setMaxTotalConnections(maxConcurrentFetches);
+        return new FetchService(config, new RobotstxtConfig());
+    }
+}
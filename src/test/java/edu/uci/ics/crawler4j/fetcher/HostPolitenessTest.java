@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HostPolitenessTest {
+
+    @Test
+    public void shouldSpaceOutRequestsToSameHost() {
+        HostPoliteness politeness = new HostPoliteness(1000);
+        assertEquals(0, politeness.reserve("a.com"));
+        long wait = politeness.reserve("a.com");
+        assertTrue(wait > 900 && wait <= 1000);
+        wait = politeness.reserve("a.com");
+        assertTrue(wait > 1900 && wait <= 2000);
+        assertEquals(0, politeness.reserve("b.com"));
+    }
+
+    @Test
+    public void shouldHonorCrawlDelayWithinBounds() {
+        HostPoliteness politeness = new HostPoliteness(1000, 2000, 5000);
+        politeness.setCrawlDelayProvider(new CrawlDelayProvider() {
+            @Override
+            public long getCrawlDelay(String host) {
+                if (host.equals("slow.com")) {
+                    return 60000;
+                }
+                return host.equals("fast.com") ? 10 : -1;
+            }
+        });
+        assertEquals(5000, politeness.getDelay("slow.com"));
+        assertEquals(2000, politeness.getDelay("fast.com"));
+        assertEquals(1000, politeness.getDelay("other.com"));
+
+        assertEquals(0, politeness.reserve("slow.com", 1000));
+        long wait = politeness.reserve("slow.com", 1000);
+        assertTrue(wait > 4900 && wait <= 5000);
+        assertEquals(0, politeness.reserve("other.com", 1000));
+    }
+
+    @Test
+    public void shouldBookSlotsForDeferredFetches() {
+        HostPoliteness politeness = new HostPoliteness(1000);
+        assertEquals(0, politeness.reserve("a.com", 100));
+        // Too far away: each deferred fetch books its own slot
+        long first = politeness.reserve("a.com", 100);
+        long second = politeness.reserve("a.com", 100);
+        assertTrue(first > 900 && first <= 1000);
+        assertTrue(second > 1900 && second <= 2000);
+
+        // A fetch which can wait long enough takes the first booked slot
+        assertEquals(first, politeness.reserve("a.com", 1000), 50);
+        assertEquals(second, politeness.reserve("a.com", 2000), 50);
+        long third = politeness.reserve("a.com");
+        assertTrue(third > 2900 && third <= 3000);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LocalAddressPoolTest {
+
+    @Test
+    public void shouldRotateAddresses() throws Exception {
+        LocalAddressPool pool = new LocalAddressPool(loopback(3), 0, false);
+        assertEquals("127.0.0.1", pool.acquire("a.com", 0).getAddress().getHostAddress());
+        assertEquals("127.0.0.2", pool.acquire("a.com", 0).getAddress().getHostAddress());
+        assertEquals("127.0.0.3", pool.acquire("a.com", 0).getAddress().getHostAddress());
+        assertEquals("127.0.0.1", pool.acquire("a.com", 0).getAddress().getHostAddress());
+    }
+
+    @Test
+    public void shouldSkipFullAddresses() throws Exception {
+        LocalAddressPool pool = new LocalAddressPool(loopback(2), 1, false);
+        LocalAddressPool.Lease first = pool.acquire(null, 0);
+        LocalAddressPool.Lease second = pool.acquire(null, 0);
+        assertNotSame(first.getAddress(), second.getAddress());
+        assertNull(pool.acquire(null, 50));
+
+        second.release();
+        assertEquals(second.getAddress(), pool.acquire(null, 0).getAddress());
+        assertEquals(1, pool.getInFlight(first.getAddress()));
+    }
+
+    @Test
+    public void shouldKeepHostOnSameAddress() throws Exception {
+        LocalAddressPool pool = new LocalAddressPool(loopback(4), 0, true);
+        InetAddress address = pool.acquire("www.example.com", 0).getAddress();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(address, pool.acquire("www.example.com", 0).getAddress());
+        }
+    }
+
+    private static List<InetAddress> loopback(int count) throws UnknownHostException {
+        List<InetAddress> addresses = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            addresses.add(InetAddress.getByName("127.0.0." + i));
+        }
+        return addresses;
+    }
+}
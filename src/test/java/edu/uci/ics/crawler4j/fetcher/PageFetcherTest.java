@@ -0,0 +1,436 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.parser.HtmlParseData;
+import edu.uci.ics.crawler4j.parser.Parser;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.http.Header;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fetches pages from a local server the way a crawler thread does.
+ */
+public class PageFetcherTest {
+
+    private HttpServer server;
+
+    private CrawlConfig config;
+
+    private PageFetcher pageFetcher;
+
+    private String base;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        config = new CrawlConfig();
+        config.setPolitenessDelay(0);
+        pageFetcher = new PageFetcher(config);
+    }
+
+    @After
+    public void tearDown() {
+        pageFetcher.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldAnswerUnchangedPageWithNotModified() throws IOException {
+        final AtomicReference<String> eTag = new AtomicReference<>("\"v1\"");
+        server.createContext("/page.html", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String current = eTag.get();
+                exchange.getResponseHeaders().set("ETag", current);
+                exchange.getResponseHeaders().set("Last-Modified", "Tue, 15 Nov 1994 12:45:26 GMT");
+                if (current.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    send(exchange, 304, "");
+                } else {
+                    exchange.getResponseHeaders().set("Content-Type", "text/html");
+                    send(exchange, 200, "<html>" + current + "</html>");
+                }
+            }
+        });
+        WebURL webURL = url(base + "/page.html");
+
+        PageFetchResult result = pageFetcher.fetchHeader(webURL);
+        assertEquals(200, result.getStatusCode());
+        FetchValidators validators = FetchValidators.fromHeaders(result.getResponseHeaders());
+        result.discardContentIfNotConsumed();
+        assertEquals("\"v1\"", validators.getETag());
+        assertEquals("Tue, 15 Nov 1994 12:45:26 GMT", validators.getLastModified());
+
+        result = pageFetcher.fetchHeader(webURL, validators);
+        assertEquals(304, result.getStatusCode());
+        result.discardContentIfNotConsumed();
+
+        // Once the page changes, the same validators fetch it again
+        eTag.set("\"v2\"");
+        result = pageFetcher.fetchHeader(webURL, validators);
+        assertEquals(200, result.getStatusCode());
+        assertEquals("\"v2\"", FetchValidators.fromHeaders(result.getResponseHeaders()).getETag());
+        result.discardContentIfNotConsumed();
+    }
+
+    @Test
+    public void shouldLeaveRedirectsToTheCrawler() throws IOException {
+        redirect("/old", 301, "new?x=1");
+        serveHtml("/new", "<html></html>");
+        redirect("/loop-a", 302, base + "/loop-b");
+        redirect("/loop-b", 307, "/loop-a");
+
+        // Each hop is a fetch of its own, so that the crawler can check it
+        // against robots.txt and shouldVisit() before following it
+        PageFetchResult result = pageFetcher.fetchHeader(url(base + "/old"));
+        assertEquals(301, result.getStatusCode());
+        assertEquals(base + "/new?x=1", result.getMovedToUrl());
+        result.discardContentIfNotConsumed();
+
+        result = pageFetcher.fetchHeader(url(result.getMovedToUrl()));
+        assertEquals(200, result.getStatusCode());
+        result.discardContentIfNotConsumed();
+
+        // A loop never makes the fetcher go round in circles
+        result = pageFetcher.fetchHeader(url(base + "/loop-a"));
+        assertEquals(302, result.getStatusCode());
+        assertEquals(base + "/loop-b", result.getMovedToUrl());
+        result.discardContentIfNotConsumed();
+        result = pageFetcher.fetchHeader(url(base + "/loop-b"));
+        assertEquals(307, result.getStatusCode());
+        assertEquals(base + "/loop-a", result.getMovedToUrl());
+        result.discardContentIfNotConsumed();
+    }
+
+    @Test
+    public void shouldReportServerErrorsWithTheirRetryAfter() {
+        server.createContext("/busy", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Retry-After", "120");
+                send(exchange, 503, "Try again later");
+            }
+        });
+
+        PageFetchResult result = pageFetcher.fetchHeader(url(base + "/busy"));
+        assertEquals(503, result.getStatusCode());
+        assertEquals("120", header(result, "Retry-After"));
+        result.discardContentIfNotConsumed();
+    }
+
+    @Test
+    public void shouldReportUnreachableServerAsTransportError() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+
+        PageFetchResult result = pageFetcher.fetchHeader(url("http://127.0.0.1:" + port + "/"));
+        assertEquals(CustomFetchStatus.FatalTransportError, result.getStatusCode());
+    }
+
+    @Test
+    public void shouldParseContentWhileItDownloads() throws IOException {
+        final String html = "<html><body><a href=\"/a\">a</a><a href=\"b\">b</a></body></html>";
+        serveHtml("/page.html", html);
+        config.setLightweightHtmlParsing(true);
+
+        WebURL webURL = url(base + "/page.html");
+        PageFetchResult result = pageFetcher.fetchHeader(webURL);
+        assertEquals(200, result.getStatusCode());
+        Page page = new Page(webURL);
+        InputStream content = result.openContent(page, -1, false);
+        assertTrue(new Parser(config).parseHtml(page, content, webURL.getURL()));
+        result.discardContentIfNotConsumed();
+
+        HtmlParseData parseData = (HtmlParseData) page.getParseData();
+        assertEquals(2, parseData.getOutgoingUrls().size());
+        assertEquals(base + "/a", parseData.getOutgoingUrls().get(0).getURL());
+        assertEquals(base + "/b", parseData.getOutgoingUrls().get(1).getURL());
+        // The body was only streamed through the parser
+        assertNull(page.getContentData());
+    }
+
+    @Test
+    public void shouldRetainStreamedContentOnRequest() throws IOException {
+        String html = "<html><body>Caf\u00e9</body></html>";
+        serveHtml("/page.html", html);
+
+        WebURL webURL = url(base + "/page.html");
+        PageFetchResult result = pageFetcher.fetchHeader(webURL);
+        Page page = new Page(webURL);
+        InputStream content = result.openContent(page, -1, true);
+        // Single bytes go through the same accounting as larger reads
+        assertEquals('<', content.read());
+        byte[] buffer = new byte[4096];
+        while (content.read(buffer) != -1) {
+            // Read to the end, like a parser would
+        }
+        content.close();
+        result.discardContentIfNotConsumed();
+
+        assertEquals(200, result.getStatusCode());
+        assertArrayEquals(html.getBytes("UTF-8"), page.getContentData());
+    }
+
+    @Test
+    public void shouldAbortStreamedContentOverMaxSize() throws IOException {
+        StringBuilder html = new StringBuilder("<html><body>");
+        while (html.length() < 64 * 1024) {
+            html.append("<p>filler</p>");
+        }
+        serveHtml("/big.html", html.append("</body></html>").toString());
+
+        WebURL webURL = url(base + "/big.html");
+        PageFetchResult result = pageFetcher.fetchHeader(webURL);
+        Page page = new Page(webURL);
+        InputStream content = result.openContent(page, 1024, true);
+        try {
+            byte[] buffer = new byte[4096];
+            while (content.read(buffer) != -1) {
+                // Read until the limit is hit
+            }
+            fail();
+        } catch (IOException expected) {
+            // The status code tells why
+        }
+        content.close();
+        result.discardContentIfNotConsumed();
+
+        assertEquals(CustomFetchStatus.PageTooBigWhileDownloading, result.getStatusCode());
+        assertNull(page.getContentData());
+    }
+
+    @Test
+    public void shouldAbortDownloadsOverMaxSizeOfUnknownLength() throws Exception {
+        // Sent without a Content-Length, and larger than the socket buffers so
+        // that it can only be sent whole if the client reads it
+        final byte[] html = new byte[16 * 1024 * 1024];
+        Arrays.fill(html, (byte) 'x');
+        final AtomicBoolean sent = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        server.createContext("/big.html", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", "text/html");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(html);
+                    sent.set(true);
+                } catch (IOException e) {
+                    // The client hung up
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+        config.setMaxDownloadSize(64 * 1024);
+
+        WebURL webURL = url(base + "/big.html");
+        PageFetchResult result = pageFetcher.fetchHeader(webURL);
+        assertEquals(200, result.getStatusCode());
+        Page page = new Page(webURL);
+        assertFalse(result.fetchContent(page, config.getMaxDownloadSize()));
+        result.discardContentIfNotConsumed();
+
+        assertEquals(CustomFetchStatus.PageTooBigWhileDownloading, result.getStatusCode());
+        assertTrue(result.getDiscardedBytes() > config.getMaxDownloadSize());
+        assertTrue(result.getDiscardedBytes() < html.length);
+        assertNull(page.getContentData());
+        // The connection was dropped rather than drained
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertFalse(sent.get());
+    }
+
+    @Test
+    public void shouldNotDownloadBodiesOfDisallowedContentTypes() throws Exception {
+        // Larger than the socket buffers, so it can only be sent whole if the
+        // client reads it
+        final byte[] png = new byte[16 * 1024 * 1024];
+        config.setMaxDownloadSize(2 * png.length);
+        final AtomicBoolean sent = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        server.createContext("/image.png", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", "image/png");
+                exchange.sendResponseHeaders(200, png.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(png);
+                    sent.set(true);
+                } catch (IOException e) {
+                    // The client hung up
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+
+        PageFetchResult result = pageFetcher.fetchHeader(url(base + "/image.png"));
+        assertEquals(CustomFetchStatus.ContentTypeNotAllowed, result.getStatusCode());
+        result.discardContentIfNotConsumed();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertFalse(sent.get());
+    }
+
+    @Test
+    public void shouldMatchAllowedContentTypesWithoutParameters() {
+        config.setAllowedContentTypes(new HashSet<>(Arrays.asList("text/html", "image/*")));
+        WebURL webURL = url(base + "/");
+
+        assertTrue(pageFetcher.isContentTypeAllowed(webURL, "text/html"));
+        assertTrue(pageFetcher.isContentTypeAllowed(webURL, "Text/HTML; charset=UTF-8"));
+        assertTrue(pageFetcher.isContentTypeAllowed(webURL, "image/png"));
+        assertTrue(pageFetcher.isContentTypeAllowed(webURL, "image/svg+xml; charset=utf-8"));
+        assertFalse(pageFetcher.isContentTypeAllowed(webURL, "text/plain"));
+        assertFalse(pageFetcher.isContentTypeAllowed(webURL, "application/pdf"));
+        // A response without a Content-Type is checked by the parser
+        assertTrue(pageFetcher.isContentTypeAllowed(webURL, null));
+    }
+
+    @Test
+    public void shouldAbortFetchesPastTheirDeadline() throws IOException {
+        trickle("/slow.html", 100);
+        config.setMaxFetchDuration(1000);
+        pageFetcher.shutdown();
+        pageFetcher = new PageFetcher(config);
+
+        long start = System.currentTimeMillis();
+        WebURL webURL = url(base + "/slow.html");
+        PageFetchResult result = pageFetcher.fetchHeader(webURL);
+        assertEquals(200, result.getStatusCode());
+        assertFalse(result.fetchContent(new Page(webURL), config.getMaxDownloadSize()));
+        long elapsed = System.currentTimeMillis() - start;
+        result.discardContentIfNotConsumed();
+
+        assertEquals(CustomFetchStatus.FetchDeadlineExceeded, result.getStatusCode());
+        // The watchdog looks at the fetches every 500 ms
+        assertTrue("Took " + elapsed + " ms", elapsed < 1000 + 500 + 500);
+    }
+
+    @Test
+    public void shouldAbortFetchesBelowMinThroughput() throws IOException {
+        // 10 bytes per second
+        trickle("/slow.html", 100);
+        config.setMinDownloadThroughput(1000);
+        config.setMinDownloadThroughputPeriod(1000);
+        pageFetcher.shutdown();
+        pageFetcher = new PageFetcher(config);
+
+        long start = System.currentTimeMillis();
+        WebURL webURL = url(base + "/slow.html");
+        PageFetchResult result = pageFetcher.fetchHeader(webURL);
+        assertEquals(200, result.getStatusCode());
+        assertFalse(result.fetchContent(new Page(webURL), config.getMaxDownloadSize()));
+        long elapsed = System.currentTimeMillis() - start;
+        result.discardContentIfNotConsumed();
+
+        assertEquals(CustomFetchStatus.DownloadTooSlow, result.getStatusCode());
+        assertTrue("Took " + elapsed + " ms", elapsed < 1000 + 500 + 500);
+    }
+
+    /**
+     * Serves a page which never ends: one byte every given number of
+     * milliseconds, until the client hangs up or ten seconds have passed.
+     */
+    private void trickle(String path, final long interval) {
+        server.createContext(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", "text/html");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    for (long end = System.currentTimeMillis() + 10000; System.currentTimeMillis() < end; ) {
+                        out.write('x');
+                        out.flush();
+                        Thread.sleep(interval);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // The client hung up
+                }
+            }
+        });
+    }
+
+    private void redirect(String path, final int statusCode, final String location) {
+        server.createContext(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Location", location);
+                send(exchange, statusCode, "");
+            }
+        });
+    }
+
+    private void serveHtml(String path, final String html) {
+        server.createContext(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+                send(exchange, 200, html);
+            }
+        });
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(statusCode, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String header(PageFetchResult result, String name) {
+        for (Header header : result.getResponseHeaders()) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static WebURL url(String url) {
+        WebURL webURL = new WebURL();
+        webURL.setURL(url);
+        return webURL;
+    }
+}
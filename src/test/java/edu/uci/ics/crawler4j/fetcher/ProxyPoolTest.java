@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.junit.Assert.*;
+
+public class ProxyPoolTest {
+
+    @Test
+    public void shouldPickLeastLoadedProxy() throws InterruptedException {
+        ProxyPool pool = pool(false, new ProxyServer("p1", 8080, null, null, 2), new ProxyServer("p2", 8080, null, null, 4));
+        ProxyPool.Lease first = pool.acquire(null, 0);
+        ProxyPool.Lease second = pool.acquire(null, 0);
+        assertNotSame(first.getProxy(), second.getProxy());
+
+        // p1 is at half of its capacity, p2 only at a quarter
+        assertEquals("p2", pool.acquire(null, 0).getProxy().getHost());
+    }
+
+    @Test
+    public void shouldWaitForFreeConnection() throws InterruptedException {
+        ProxyPool pool = pool(false, new ProxyServer("p1", 8080, null, null, 1));
+        ProxyPool.Lease lease = pool.acquire(null, 0);
+        assertNull(pool.acquire(null, 50));
+        lease.release();
+        lease.release();
+        assertNotNull(pool.acquire(null, 0));
+        assertNull(pool.acquire(null, 0));
+    }
+
+    @Test
+    public void shouldPreferLowerLatency() throws InterruptedException {
+        ProxyPool pool = pool(false, new ProxyServer("p1", 8080), new ProxyServer("p2", 8080));
+        ProxyPool.Lease first = pool.acquire(null, 0);
+        ProxyPool.Lease second = pool.acquire(null, 0);
+        first.succeeded(first.getProxy().getHost().equals("p1") ? 500 : 20);
+        second.succeeded(second.getProxy().getHost().equals("p1") ? 500 : 20);
+        first.release();
+        second.release();
+        assertEquals("p2", pool.acquire(null, 0).getProxy().getHost());
+    }
+
+    @Test
+    public void shouldSkipFailingProxy() throws InterruptedException {
+        ProxyPool pool = pool(false, new ProxyServer("p1", 8080), new ProxyServer("p2", 8080));
+        for (int i = 0; i < 3; i++) {
+            ProxyPool.Lease lease = pool.acquire(null, 0);
+            if (lease.getProxy().getHost().equals("p1")) {
+                lease.failed();
+            }
+            lease.release();
+        }
+        assertFalse(pool.getProxies().get(0).isHealthy());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("p2", pool.acquire(null, 0).getProxy().getHost());
+        }
+    }
+
+    @Test
+    public void shouldKeepHostOnSameProxy() throws InterruptedException {
+        ProxyPool pool = pool(true, new ProxyServer("p1", 8080), new ProxyServer("p2", 8080),
+                new ProxyServer("p3", 8080));
+        ProxyServer proxy = pool.acquire("www.example.com", 0).getProxy();
+        for (int i = 0; i < 10; i++) {
+            assertSame(proxy, pool.acquire("www.example.com", 0).getProxy());
+        }
+    }
+
+    @Test
+    public void shouldCheckHealthAgainstLocalProxies() throws IOException, InterruptedException {
+        ServerSocket live = new ServerSocket(0);
+        ServerSocket dead = new ServerSocket(0);
+        dead.close();
+        try {
+            ProxyPool pool = pool(false, new ProxyServer("127.0.0.1", dead.getLocalPort()),
+                    new ProxyServer("127.0.0.1", live.getLocalPort()));
+            pool.checkHealth();
+            assertFalse(pool.getProxies().get(0).isHealthy());
+            assertTrue(pool.getProxies().get(1).isHealthy());
+            assertEquals(live.getLocalPort(), pool.acquire(null, 0).getProxy().getPort());
+        } finally {
+            live.close();
+        }
+    }
+
+    @Test
+    public void shouldNotRestoreProxyRejectingCredentials() throws IOException, InterruptedException {
+        ServerSocket live = new ServerSocket(0);
+        try {
+            ProxyPool pool = pool(false, new ProxyServer("127.0.0.1", live.getLocalPort()),
+                    new ProxyServer("localhost", live.getLocalPort()));
+            ProxyPool.ProxyState state = pool.getProxies().get(0);
+            for (int i = 0; i < 3; i++) {
+                ProxyPool.Lease lease = pool.acquire(null, 0);
+                if (lease.getProxy() == state.getProxy()) {
+                    lease.authenticationFailed();
+                }
+                lease.release();
+            }
+            assertFalse(state.isHealthy());
+            assertEquals(ProxyPool.DownReason.AUTHENTICATION_FAILED, state.getDownReason());
+
+            // The proxy accepts connections, but that does not fix its credentials
+            pool.checkHealth();
+            assertFalse(state.isHealthy());
+
+            // A response through it does
+            ProxyPool.Lease lease = pool.acquire(null, 0);
+            assertEquals("localhost", lease.getProxy().getHost());
+            for (int i = 0; i < 3; i++) {
+                lease.failed();
+            }
+            lease.release();
+            lease = pool.acquire(null, 0);
+            assertSame(state.getProxy(), lease.getProxy());
+            lease.succeeded(10);
+            lease.release();
+            assertTrue(state.isHealthy());
+            assertNull(state.getDownReason());
+        } finally {
+            live.close();
+        }
+    }
+
+    private static ProxyPool pool(boolean sticky, ProxyServer... proxies) {
+        CrawlConfig config = new CrawlConfig();
+        config.setConnectionTimeout(1000);
+        config.setProxyStickyPerHost(sticky);
+        for (ProxyServer proxy : proxies) {
+            config.addProxy(proxy);
+        }
+        return new ProxyPool(config);
+    }
+}
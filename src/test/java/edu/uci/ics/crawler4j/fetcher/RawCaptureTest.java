@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class RawCaptureTest {
+
+    @Test
+    public void shouldCaptureCompressedBodyAndDecodeLazily() throws Exception {
+        byte[] html = "<html><body>hello hello hello hello</body></html>".getBytes("UTF-8");
+        byte[] gzipped = gzip(html);
+
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("Content-Encoding", "gzip");
+        ByteArrayEntity entity = new ByteArrayEntity(gzipped);
+        entity.setContentEncoding("gzip");
+        entity.setContentType("text/html");
+        response.setEntity(entity);
+
+        final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        CaptureSink sink = new CaptureSink() {
+            @Override
+            public WritableByteChannel open(WebURL url) {
+                return Channels.newChannel(captured);
+            }
+
+            @Override
+            public void close(WritableByteChannel channel, boolean complete) throws IOException {
+                channel.close();
+            }
+        };
+        WebURL url = new WebURL();
+        url.setURL("http://www.example.com/");
+        RawCapture capture = RawCapture.start(sink, url, response);
+
+        Page page = new Page(url);
+        ContentDecoder decoder = new ContentDecoder(new InflaterPool(1), 1000, 0);
+        page.loadEncoded(response.getEntity(), 1000, decoder);
+        capture.close();
+
+        byte[] data = captured.toByteArray();
+        String record = new String(data, "ISO-8859-1");
+        assertTrue(record.matches("(?s)URL: http://www.example.com/\r\n"
+                + "Fetch-Date: \\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d{3}Z\r\n\r\n"
+                + "HTTP/1.1 200 OK\r\nContent-Encoding: gzip\r\n\r\n.*"));
+        int bodyStart = record.indexOf("\r\n\r\n", record.indexOf("HTTP/1.1")) + 4;
+        assertArrayEquals(gzipped, Arrays.copyOfRange(data, bodyStart, data.length));
+
+        assertArrayEquals(html, page.getContentData());
+    }
+
+    @Test
+    public void shouldNotOverwriteEarlierCaptures() throws IOException {
+        File folder = Files.createTempDirectory("capture").toFile();
+        WebURL url = new WebURL();
+        url.setURL("http://www.example.com/");
+        url.setDocid(7);
+        // Two runs over the same folder, and a page fetched twice in a run
+        FileCaptureSink first = new FileCaptureSink(folder);
+        FileCaptureSink second = new FileCaptureSink(folder);
+        first.open(url).close();
+        first.open(url).close();
+        second.open(url).close();
+
+        String[] names = folder.list();
+        assertEquals(3, names.length);
+        for (String name : names) {
+            assertTrue(name, name.startsWith("7-") && name.endsWith(".http"));
+            new File(folder, name).delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void shouldCaptureWholeBodiesOfRejectedContentTypes() throws IOException {
+        final byte[] png = new byte[5000];
+        Arrays.fill(png, (byte) 7);
+        HttpServer server = serve("/image.png", "image/png", png, false);
+        CrawlConfig config = new CrawlConfig();
+        config.setPolitenessDelay(0);
+        PageFetcher pageFetcher = new PageFetcher(config);
+        RecordingSink sink = new RecordingSink();
+        pageFetcher.setCaptureSink(sink);
+        try {
+            PageFetchResult result = pageFetcher.fetchHeader(url(server, "/image.png"));
+            assertEquals(CustomFetchStatus.ContentTypeNotAllowed, result.getStatusCode());
+            result.discardContentIfNotConsumed();
+
+            assertEquals(Boolean.TRUE, sink.complete);
+            byte[] data = sink.captured.toByteArray();
+            assertArrayEquals(png, Arrays.copyOfRange(data, data.length - png.length, data.length));
+        } finally {
+            pageFetcher.shutdown();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void shouldDeleteCapturesOfAbortedBodies() throws IOException {
+        HttpServer server = serve("/page.html", "text/html", new byte[5000], true);
+        File folder = Files.createTempDirectory("capture").toFile();
+        CrawlConfig config = new CrawlConfig();
+        config.setPolitenessDelay(0);
+        config.setMaxDownloadSize(1000);
+        config.setCaptureFolder(folder.getAbsolutePath());
+        PageFetcher pageFetcher = new PageFetcher(config);
+        try {
+            // The body has no Content-Length, so it is only found too big
+            // while it is read
+            WebURL url = url(server, "/page.html");
+            PageFetchResult result = pageFetcher.fetchHeader(url);
+            assertEquals(200, result.getStatusCode());
+            assertFalse(result.fetchContent(new Page(url), config.getMaxDownloadSize()));
+            assertEquals(CustomFetchStatus.PageTooBigWhileDownloading, result.getStatusCode());
+            result.discardContentIfNotConsumed();
+
+            assertEquals(0, folder.list().length);
+        } finally {
+            pageFetcher.shutdown();
+            server.stop(0);
+            folder.delete();
+        }
+    }
+
+    @Test
+    public void shouldLeaveUnknownEncodingsAlone() throws IOException {
+        ContentDecoder decoder = new ContentDecoder(new InflaterPool(1), 1000, 0);
+        byte[] data = {1, 2, 3};
+        assertSame(data, decoder.decode(data, "br"));
+
+        ByteArrayEntity entity = new ByteArrayEntity(gzip(data));
+        entity.setContentEncoding("x-gzip");
+        assertArrayEquals(data, EntityUtils.toByteArray(decoder.decoding(entity)));
+    }
+
+    private static HttpServer serve(String path, final String contentType, final byte[] body,
+                                    final boolean chunked) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+                exchange.sendResponseHeaders(200, chunked ? 0 : body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                } catch (IOException e) {
+                    // The client hung up
+                }
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static WebURL url(HttpServer server, String path) {
+        WebURL url = new WebURL();
+        url.setURL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        return url;
+    }
+
+    /**
+     * Keeps the last capture in memory.
+     */
+    private static class RecordingSink implements CaptureSink {
+
+        final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        volatile Boolean complete;
+
+        @Override
+        public WritableByteChannel open(WebURL url) {
+            captured.reset();
+            complete = null;
+            return Channels.newChannel(captured);
+        }
+
+        @Override
+        public void close(WritableByteChannel channel, boolean complete) throws IOException {
+            channel.close();
+            this.complete = complete;
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(data);
+        gzip.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import edu.uci.ics.crawler4j.util.IO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class RedirectsDBTest {
+
+    private File folder;
+
+    private Environment env;
+
+    private RedirectsDB redirectsDB;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("redirects").toFile();
+        EnvironmentConfig envConfig = new EnvironmentConfig();
+        envConfig.setAllowCreate(true);
+        env = new Environment(folder, envConfig);
+        redirectsDB = new RedirectsDB(env);
+    }
+
+    @After
+    public void tearDown() {
+        redirectsDB.close();
+        env.close();
+        IO.deleteFolder(folder);
+    }
+
+    @Test
+    public void shouldResolveChainsUpToMaxHops() {
+        redirectsDB.put("http://a.com/1", "http://a.com/2");
+        redirectsDB.put("http://a.com/2", "http://a.com/café");
+        redirectsDB.put("http://a.com/café", "http://a.com/4");
+
+        assertEquals("http://a.com/4", redirectsDB.resolve("http://a.com/1", 5));
+        assertEquals("http://a.com/café", redirectsDB.resolve("http://a.com/1", 2));
+        assertNull(redirectsDB.resolve("http://a.com/4", 5));
+    }
+
+    @Test
+    public void shouldNotResolveLoops() {
+        // A loop which doesn't lead back to the url being resolved
+        redirectsDB.put("http://a.com/1", "http://a.com/2");
+        redirectsDB.put("http://a.com/2", "http://a.com/3");
+        redirectsDB.put("http://a.com/3", "http://a.com/2");
+        redirectsDB.put("http://a.com/self", "http://a.com/self");
+
+        assertNull(redirectsDB.resolve("http://a.com/1", 10));
+        assertNull(redirectsDB.resolve("http://a.com/self", 1));
+    }
+}
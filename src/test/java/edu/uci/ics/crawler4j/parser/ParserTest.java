@@ -8,8 +8,12 @@ import junit.framework.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 import static org.hamcrest.core.Is.is;
 
@@ -28,6 +32,97 @@ public class ParserTest {
         assertTrue(page.hasMetaRefresh());
     }
 
+    @Test
+    public void shouldParseMetaRefreshURLWithTheLightweightParser() throws IOException {
+        String htmlFile = "<html><head><meta http-equiv=\"Refresh\" content=\"0;URL=http://www.gap.com/browse/"
+                + "product.do?pid=987556002&vid=1&locale=en_US&kwid=1&sem=false&sdReferer=\"></head></html>";
+        String url = "http://foo.bar/";
+        Page page = new Page(urlFrom(url));
+        page.setContentData(htmlFile.getBytes());
+        page.setContentType("text/html");
+
+        CrawlConfig config = new CrawlConfig();
+        config.setLightweightHtmlParsing(true);
+        assertTrue(new Parser(config).parse(page, url));
+
+        assertEquals("http://www.gap.com/browse/product.do?pid=987556002&vid=1&locale=en_US&kwid=1&sem=false"
+                + "&sdReferer=", page.getMetaRefresh());
+    }
+
+    @Test
+    public void shouldDecodeEntitiesAfterStrayAmpersands() {
+        assertEquals("Tom & Jerry & co \u00e9t\u00e9 \u2014 \u03b1 &unknown; &; <",
+                HtmlTagScanner.decodeEntities("Tom & Jerry &amp; co &eacute;t&#233; &mdash; &#x3b1; &unknown; &; &lt;"));
+        assertEquals("a&b=1&c=\u00a9", HtmlTagScanner.decodeEntities("a&b=1&amp;c=&copy;"));
+    }
+
+    @Test
+    public void shouldExtractLinksWithTheLightweightParser() throws IOException {
+        String html = "<!DOCTYPE html><HTML><head><title>Caf&eacute; &amp; Co</title>"
+                + "<base href=\"http://foo.bar/dir/\">"
+                + "<link rel=\"canonical\" href=\"/canonical\">"
+                + "<script>document.write('<a href=\"/script\">x</a>');</script>"
+                + "<style>a > b { }</style></head>"
+                + "<body><!-- <a href=\"/comment\">c</a> -->"
+                + "<p>Some <b>text</b>, <A HREF='page?a=1&amp;b=2'>first\n\tlink</A>"
+                + "<a href=\"/nofollow\" rel=\"nofollow\">no</a> <a href=x>unclosed"
+                + "<a href=\"mailto:a@foo.bar\">mail</a><iframe src=\"frame.html\"></iframe>"
+                + "2 < 3</body></html>";
+        String url = "http://foo.bar/index.html";
+        Page page = new Page(urlFrom(url));
+        page.setContentData(html.getBytes("UTF-8"));
+        page.setContentType("text/html");
+
+        CrawlConfig config = new CrawlConfig();
+        config.setLightweightHtmlParsing(true);
+        assertTrue(new Parser(config).parse(page, url));
+
+        HtmlParseData parseData = (HtmlParseData) page.getParseData();
+        assertEquals("Caf\u00e9 & Co", parseData.getTitle());
+        assertEquals("http://foo.bar/canonical", parseData.getCanonicalUrl());
+        assertEquals("Some text, first\n\tlinkno unclosedmail2 < 3", parseData.getText());
+        List<String> urls = new ArrayList<>();
+        for (WebURL webURL : parseData.getOutgoingUrls()) {
+            urls.add(webURL.getURL() + " " + webURL.getAnchor());
+        }
+        assertEquals(Arrays.asList("http://foo.bar/canonical null", "http://foo.bar/dir/page?a=1&b=2 first  link",
+                "http://foo.bar/dir/x unclosed", "http://foo.bar/dir/frame.html null"), urls);
+        assertSame(parseData.getOutgoingUrls(), parseData.getOutgoingUrls());
+        assertEquals(html, parseData.getHtml());
+    }
+
+    @Test
+    public void shouldOnlyKeepLinksInLinkOnlyProfile() throws IOException {
+        StringBuilder longAnchor = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            longAnchor.append("word\n");
+        }
+        String html = "<html><body>Some text <a href=\"/a\">\n  short\tanchor  </a> more text"
+                + "<a href=\"/b\">" + longAnchor + "</a></body></html>";
+        String url = "http://foo.bar/";
+        CrawlConfig config = new CrawlConfig();
+        config.setLightweightHtmlParsing(true);
+        config.setMaxTextLength(0);
+        config.setIncludeHtmlInParseData(false);
+
+        Page page = new Page(urlFrom(url));
+        page.setContentData(html.getBytes("UTF-8"));
+        page.setContentType("text/html");
+        assertTrue(new Parser(config).parse(page, url));
+
+        HtmlParseData parseData = (HtmlParseData) page.getParseData();
+        assertEquals("", parseData.getText());
+        assertEquals(null, parseData.getHtml());
+        List<WebURL> urls = parseData.getOutgoingUrls();
+        assertEquals("short anchor", urls.get(0).getAnchor());
+        assertEquals(longAnchor.toString().replace('\n', ' ').substring(0, 100) + "...", urls.get(1).getAnchor());
+
+        config.setMaxTextLength(12);
+        page.setContentData(html.getBytes("UTF-8"));
+        assertTrue(new Parser(config).parse(page, url));
+        assertEquals("Some text", ((HtmlParseData) page.getParseData()).getText());
+    }
+
     private WebURL urlFrom(String url) {
         WebURL webUrl = new WebURL();
         webUrl.setURL(url);
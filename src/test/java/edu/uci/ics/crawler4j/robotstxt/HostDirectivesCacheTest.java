@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HostDirectivesCacheTest {
+
+    @Test
+    public void shouldLoadEachHostOnceForConcurrentLookups() throws InterruptedException {
+        final HostDirectivesCache cache = new HostDirectivesCache(10);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<HostDirectives> loader = new Callable<HostDirectives>() {
+            @Override
+            public HostDirectives call() throws Exception {
+                loads.incrementAndGet();
+                loading.countDown();
+                release.await();
+                return new HostDirectives();
+            }
+        };
+
+        final HostDirectives[] results = new HostDirectives[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    results[index] = cache.get("a.com", loader);
+                }
+            };
+            threads[i].start();
+        }
+        loading.await();
+        assertNull(cache.getIfPresent("a.com"));
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, loads.get());
+        for (HostDirectives result : results) {
+            assertSame(results[0], result);
+        }
+        assertSame(results[0], cache.getIfPresent("a.com"));
+    }
+
+    @Test
+    public void shouldEvictHostsNotLookedUpRecently() {
+        HostDirectivesCache cache = new HostDirectivesCache(2);
+        cache.get("a.com", loader());
+        cache.get("b.com", loader());
+        cache.get("c.com", loader());
+        assertEquals(2, cache.size());
+
+        // Only "c.com" has been looked up since the eviction hand passed
+        cache.getIfPresent("c.com");
+        cache.get("d.com", loader());
+        assertEquals(2, cache.size());
+        assertNotNull(cache.getIfPresent("c.com"));
+        assertNotNull(cache.getIfPresent("d.com"));
+    }
+
+    @Test
+    public void shouldRetryAfterFailedLoad() {
+        HostDirectivesCache cache = new HostDirectivesCache(2);
+        for (int i = 0; i < 3; i++) {
+            assertNull(cache.get("a.com", new Callable<HostDirectives>() {
+                @Override
+                public HostDirectives call() {
+                    throw new IllegalStateException("unreachable");
+                }
+            }));
+        }
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.clockSize());
+        assertNotNull(cache.get("a.com", loader()));
+    }
+
+    private static Callable<HostDirectives> loader() {
+        return new Callable<HostDirectives>() {
+            @Override
+            public HostDirectives call() {
+                return new HostDirectives();
+            }
+        };
+    }
+}
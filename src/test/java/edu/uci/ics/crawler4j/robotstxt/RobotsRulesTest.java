@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RobotsRulesTest {
+
+    @Test
+    public void shouldLetLongestMatchDecide() {
+        RobotsRules rules = new RobotsRules.Builder()
+                .add("/private", false)
+                .add("/private/public", true)
+                .add("/page", true)
+                .add("/page", false)
+                .build();
+        assertTrue(rules.allows("/index.html"));
+        assertFalse(rules.allows("/private/data"));
+        assertTrue(rules.allows("/private/public/data"));
+        // allow wins a tie
+        assertTrue(rules.allows("/page.html"));
+    }
+
+    @Test
+    public void shouldMatchWildcards() {
+        RobotsRules rules = new RobotsRules.Builder()
+                .add("/*.php", false)
+                .add("/*/print/", false)
+                .add("/fish*", false)
+                .add("/*?sessionid=", false)
+                .build();
+        assertFalse(rules.allows("/index.php"));
+        assertFalse(rules.allows("/dir/index.php?a=b"));
+        assertFalse(rules.allows("/a/b/print/page"));
+        assertTrue(rules.allows("/print/page"));
+        assertFalse(rules.allows("/fishheads"));
+        assertTrue(rules.allows("/Fish"));
+        assertFalse(rules.allows("/shop?sessionid=1"));
+        assertTrue(rules.allows("/shop?id=1"));
+    }
+
+    @Test
+    public void shouldOnlySkipWildcardRulesWhoseCharactersArePartlyMissing() {
+        // 'o' and '/' share a bit of the mask of characters
+        RobotsRules rules = new RobotsRules.Builder()
+                .add("/*o.html", false)
+                .add("/*x", false)
+                .build();
+        assertTrue(rules.allows("/a/.html"));
+        assertFalse(rules.allows("/a/foo.html"));
+        assertTrue(rules.allows("/abc"));
+        assertFalse(rules.allows("/abcx"));
+    }
+
+    @Test
+    public void shouldAnchorAtDollar() {
+        RobotsRules rules = new RobotsRules.Builder()
+                .add("/*.gif$", false)
+                .add("/exact$", false)
+                .add("/", false)
+                .add("/$", true)
+                .build();
+        assertTrue(rules.allows("/"));
+        assertFalse(rules.allows("/a.gif"));
+        assertFalse(rules.allows("/exact"));
+        assertFalse(rules.allows("/anything"));
+
+        rules = new RobotsRules.Builder().add("/*.gif$", false).add("/exact$", false).build();
+        assertTrue(rules.allows("/a.gif?x=1"));
+        assertTrue(rules.allows("/exact/more"));
+        assertFalse(rules.allows("/exact"));
+    }
+
+    @Test
+    public void shouldPreferLongerAllowOverShorterWildcardDisallow() {
+        RobotsRules rules = new RobotsRules.Builder()
+                .add("/*", false)
+                .add("/public/", true)
+                .add("/public/*.pdf", false)
+                .build();
+        assertFalse(rules.allows("/x"));
+        assertTrue(rules.allows("/public/page"));
+        assertFalse(rules.allows("/public/doc.pdf"));
+        assertTrue(RobotsRules.EMPTY.allows("/anything"));
+    }
+}
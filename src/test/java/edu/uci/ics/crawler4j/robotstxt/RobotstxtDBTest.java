@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class RobotstxtDBTest {
+
+    @Test
+    public void shouldRestoreDirectivesWithTheirFetchTime() throws IOException {
+        HostDirectives directives = new HostDirectives(1000L, 200);
+        directives.addDisallow("/private");
+        directives.addAllow("/private/public");
+        directives.addDisallow("/*.pdf$");
+        directives.setCrawlDelay(1500);
+        directives.addSitemap("http://a.com/sitemap.xml");
+
+        HostDirectives restored = RobotstxtDB.decode(RobotstxtDB.encode(directives));
+        assertEquals(1000L, restored.getTimeFetched());
+        assertEquals(200, restored.getStatusCode());
+        assertEquals(1500, restored.getCrawlDelay());
+        assertTrue(restored.needsRefetch());
+        assertEquals(directives.getAllowPatterns(), restored.getAllowPatterns());
+        assertEquals(directives.getDisallowPatterns(), restored.getDisallowPatterns());
+        assertEquals(directives.getSitemaps(), restored.getSitemaps());
+        assertFalse(restored.allows("/private/a"));
+        assertTrue(restored.allows("/private/public/a"));
+        assertFalse(restored.allows("/a.pdf"));
+    }
+
+    @Test
+    public void shouldRestorePatternsLongerThan64KB() throws IOException {
+        StringBuilder pattern = new StringBuilder("/");
+        while (pattern.length() < 70000) {
+            pattern.append("caf\u00e9/");
+        }
+        HostDirectives directives = new HostDirectives(1000L, 200);
+        directives.addDisallow(pattern.toString());
+
+        HostDirectives restored = RobotstxtDB.decode(RobotstxtDB.encode(directives));
+        assertEquals(directives.getDisallowPatterns(), restored.getDisallowPatterns());
+    }
+}
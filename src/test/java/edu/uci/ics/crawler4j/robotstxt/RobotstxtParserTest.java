@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RobotstxtParserTest {
+
+    @Test
+    public void shouldApplyRulesToEveryAgentOfAGroup() {
+        String content = "User-agent: googlebot\n"
+                + "User-Agent: crawler4j\n"
+                + "Disallow: /private # no crawlers\n"
+                + "\n"
+                + "User-agent: *\n"
+                + "Disallow: /\n";
+        HostDirectives directives = RobotstxtParser.parse(content, "crawler4j");
+        assertFalse(directives.allows("/private/a"));
+        // The group for "*" does not apply once there is one for crawler4j
+        assertTrue(directives.allows("/public"));
+    }
+
+    @Test
+    public void shouldFallBackToTheGroupsForAnyAgent() {
+        String content = "user-agent: *\r\n"
+                + "disallow: /a\r\n"
+                + "User-agent: otherbot\r\n"
+                + "Disallow: /b\r\n"
+                + "User-agent: *\r\n"
+                + "Allow: /a/b\r\n"
+                + "Sitemap: http://www.example.com/sitemap.xml\r\n"
+                + "Disallow: /c\r\n";
+        HostDirectives directives = RobotstxtParser.parse(content, "crawler4j");
+        assertFalse(directives.allows("/a"));
+        assertTrue(directives.allows("/a/b"));
+        assertTrue(directives.allows("/b"));
+        assertFalse(directives.allows("/c"));
+    }
+
+    @Test
+    public void shouldParseCrawlDelayOfTheMatchingGroup() {
+        String content = "User-agent: *\n"
+                + "Crawl-delay: 10\n"
+                + "User-agent: crawler4j\n"
+                + "Crawl-delay: 2.5\n";
+        assertEquals(2500, RobotstxtParser.parse(content, "crawler4j").getCrawlDelay());
+        assertEquals(10000, RobotstxtParser.parse(content, "otherbot").getCrawlDelay());
+        assertEquals(-1, RobotstxtParser.parse("User-agent: *\nCrawl-delay: soon\nDisallow: /a\n",
+                "crawler4j").getCrawlDelay());
+    }
+
+    @Test
+    public void shouldIgnoreMarkupAndLinesOutsideGroups() {
+        String content = "Disallow: /before-any-group\n"
+                + "<p>User-agent: *</p>\n"
+                + "<p>Disallow: /x*.html$</p>\n"
+                + "Disallow:\n";
+        HostDirectives directives = RobotstxtParser.parse(content, "crawler4j");
+        assertTrue(directives.allows("/before-any-group"));
+        assertFalse(directives.allows("/x/y.html"));
+        assertTrue(directives.allows("/x/y.html?z"));
+
+        assertNull(RobotstxtParser.parse("User-agent: otherbot\nDisallow: /\n", "crawler4j"));
+    }
+
+    @Test
+    public void shouldKeepSitemapsOutsideOfGroups() {
+        String content = "Sitemap: http://a.com/sitemap.xml\n"
+                + "User-agent: otherbot\n"
+                + "Disallow: /\n"
+                + "sitemap:http://a.com/news.xml.gz\n";
+        HostDirectives directives = RobotstxtParser.parse(content, "crawler4j");
+        assertTrue(directives.allows("/"));
+        assertEquals(Arrays.asList("http://a.com/sitemap.xml", "http://a.com/news.xml.gz"),
+                directives.getSitemaps());
+    }
+
+    @Test
+    public void shouldDecodeRulesWithTheDeclaredOrDetectedCharset() throws UnsupportedEncodingException {
+        String content = "User-agent: *\nDisallow: /caf\u00e9\n";
+        HostDirectives latin1 = RobotstxtParser.parse(content.getBytes("ISO-8859-1"), null, "crawler4j");
+        assertEquals(Arrays.asList("/caf\u00e9"), latin1.getDisallowPatterns());
+        HostDirectives utf8 = RobotstxtParser.parse(content.getBytes("UTF-8"), null, "crawler4j");
+        assertEquals(Arrays.asList("/caf\u00e9"), utf8.getDisallowPatterns());
+
+        String greek = "User-agent: *\nDisallow: /\u03b1\n";
+        HostDirectives declared = RobotstxtParser.parse(greek.getBytes("ISO-8859-7"), "ISO-8859-7", "crawler4j");
+        assertEquals(Arrays.asList("/\u03b1"), declared.getDisallowPatterns());
+        // A charset which doesn't encode ASCII as single bytes is not used
+        assertEquals("UTF-8", RobotstxtParser.detectCharset(content.getBytes("UTF-8"), "UTF-16").name());
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RobotstxtServerTest {
+
+    @Test
+    public void shouldAnswerCachedHostsWithoutParking() {
+        RobotstxtServer server = new RobotstxtServer(new RobotstxtConfig(), null);
+        server.host2directivesCache.get("a.com", new Callable<HostDirectives>() {
+            @Override
+            public HostDirectives call() {
+                return RobotstxtParser.parse("User-agent: *\nDisallow: /private", "crawler4j");
+            }
+        });
+
+        assertEquals(RobotstxtServer.Verdict.ALLOWED, server.allowsOrPark(url("http://a.com/index.html"), null));
+        assertEquals(RobotstxtServer.Verdict.DISALLOWED, server.allowsOrPark(url("http://a.com/private/x"), null));
+    }
+
+    @Test
+    public void shouldReleaseParkedURLsOnceTheRobotstxtIsLoaded() throws InterruptedException {
+        // The robots.txt is only "fetched" once both urls are parked, and
+        // allows everything
+        final CountDownLatch fetch = new CountDownLatch(1);
+        RobotstxtServer server = new RobotstxtServer(new RobotstxtConfig(), null) {
+            @Override
+            protected HostDirectives fetchDirectives(URL url) {
+                try {
+                    fetch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        };
+        final CountDownLatch released = new CountDownLatch(2);
+        ParkedURLHandler handler = new ParkedURLHandler() {
+            @Override
+            public void allowed(WebURL url) {
+                released.countDown();
+            }
+
+            @Override
+            public void disallowed(WebURL url) {
+                fail();
+            }
+        };
+
+        assertEquals(RobotstxtServer.Verdict.PARKED, server.allowsOrPark(url("http://b.com/1"), handler));
+        assertEquals(RobotstxtServer.Verdict.PARKED, server.allowsOrPark(url("http://b.com/2"), handler));
+        assertEquals(2, released.getCount());
+        fetch.countDown();
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+        server.shutdown();
+    }
+
+    @Test
+    public void shouldReadRobotstxtWhateverTheLimitsOnPages() throws IOException {
+        final byte[] robotstxt = "User-agent: *\nDisallow: /private\n".getBytes("UTF-8");
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        httpServer.createContext("/robots.txt", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(200, robotstxt.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(robotstxt);
+                }
+            }
+        });
+        httpServer.start();
+        // Neither the allowed content types nor the max download size of
+        // pages apply to a robots.txt
+        CrawlConfig config = new CrawlConfig();
+        config.setPolitenessDelay(0);
+        config.setAllowedContentTypes(Collections.singleton("text/html"));
+        config.setMaxDownloadSize(10);
+        PageFetcher pageFetcher = new PageFetcher(config);
+        RobotstxtServer server = new RobotstxtServer(new RobotstxtConfig(), pageFetcher);
+        try {
+            String base = "http://127.0.0.1:" + httpServer.getAddress().getPort();
+            assertTrue(server.allows(url(base + "/index.html")));
+            assertFalse(server.allows(url(base + "/private/x")));
+        } finally {
+            server.shutdown();
+            pageFetcher.shutdown();
+            httpServer.stop(0);
+        }
+    }
+
+    private static WebURL url(String url) {
+        WebURL webURL = new WebURL();
+        webURL.setURL(url);
+        return webURL;
+    }
+}
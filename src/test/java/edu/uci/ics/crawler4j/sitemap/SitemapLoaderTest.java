@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.sitemap;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class SitemapLoaderTest {
+
+    private HttpServer server;
+
+    private PageFetcher pageFetcher;
+
+    private String base;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        CrawlConfig config = new CrawlConfig();
+        config.setPolitenessDelay(0);
+        // Sitemaps are read by the crawler itself, so neither the allowed
+        // content types nor the max download size apply to them.
+        config.setMaxDownloadSize(16);
+        pageFetcher = new PageFetcher(config);
+    }
+
+    @After
+    public void tearDown() {
+        pageFetcher.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldLoadXmlAndGzippedSitemaps() throws IOException {
+        serve("/index.xml", "application/xml", utf8("<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<sitemap><loc>" + base + "/s1.xml.gz</loc></sitemap>"
+                + "<sitemap><loc>" + base + "/s2.xml</loc></sitemap>"
+                + "</sitemapindex>"));
+        serve("/s1.xml.gz", "application/x-gzip", gzip(urlset(base + "/1")));
+        serve("/s2.xml", "application/octet-stream", utf8(urlset(base + "/2")));
+
+        List<String> urls = new ArrayList<>();
+        int loaded = new SitemapLoader(pageFetcher).load(base + "/index.xml", collect(urls));
+
+        assertEquals(3, loaded);
+        assertEquals("[" + base + "/1, " + base + "/2]", urls.toString());
+    }
+
+    @Test
+    public void shouldDropUrlsAndSitemapsOfOtherHosts() throws IOException {
+        serve("/index.xml", "application/xml", utf8("<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<sitemap><loc>" + base + "/s1.xml</loc></sitemap>"
+                + "<sitemap><loc>http://other.example/s2.xml</loc></sitemap>"
+                + "</sitemapindex>"));
+        serve("/s1.xml", "application/xml", utf8("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<url><loc>" + base + "/1</loc></url>"
+                + "<url><loc>http://other.example/2</loc></url>"
+                + "</urlset>"));
+
+        List<String> urls = new ArrayList<>();
+        int loaded = new SitemapLoader(pageFetcher).load(base + "/index.xml", collect(urls));
+
+        assertEquals(2, loaded);
+        assertEquals("[" + base + "/1]", urls.toString());
+    }
+
+    @Test
+    public void shouldOnlyKeepUrlsOfTheGivenHost() throws IOException {
+        // A sitemap listed in the robots.txt of another host
+        serve("/s.xml", "application/xml", utf8("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<url><loc>" + base + "/1</loc></url>"
+                + "<url><loc>http://robots.example/2</loc></url>"
+                + "</urlset>"));
+
+        List<String> urls = new ArrayList<>();
+        new SitemapLoader(pageFetcher).load(base + "/s.xml", "robots.example", collect(urls));
+
+        assertEquals("[http://robots.example/2]", urls.toString());
+    }
+
+    private static SitemapHandler collect(final List<String> urls) {
+        return new SitemapHandler() {
+            @Override
+            public void url(String url, long lastModified, float priority) {
+                urls.add(url);
+            }
+
+            @Override
+            public void sitemap(String url) {
+            }
+        };
+    }
+
+    private void serve(String path, final String contentType, final byte[] body) {
+        server.createContext(path, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+    }
+
+    private static String urlset(String url) {
+        return "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\"><url><loc>" + url + "</loc></url></urlset>";
+    }
+
+    private static byte[] utf8(String s) throws IOException {
+        return s.getBytes("UTF-8");
+    }
+
+    private static byte[] gzip(String s) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(utf8(s));
+        }
+        return bytes.toByteArray();
+    }
+}
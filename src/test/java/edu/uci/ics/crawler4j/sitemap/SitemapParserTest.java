@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.sitemap;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class SitemapParserTest {
+
+    private static final String SITEMAP = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+            + "  <url><loc> http://a.com/1 </loc><lastmod>2005-01-01</lastmod><priority>0.8</priority></url>\n"
+            + "  <url><loc>http://a.com/2?x=1&amp;y=2</loc><changefreq>daily</changefreq></url>\n"
+            + "  <url><priority>0.1</priority></url>\n"
+            + "</urlset>";
+
+    @Test
+    public void shouldParseUrlsWithTheirLastModificationAndPriority() throws IOException {
+        Collector collector = parse(SITEMAP.getBytes("UTF-8"));
+        assertEquals("[http://a.com/1 1104537600000 0.8, http://a.com/2?x=1&y=2 -1 -1.0]",
+                collector.urls.toString());
+        assertTrue(collector.sitemaps.isEmpty());
+    }
+
+    @Test
+    public void shouldParseGzippedSitemapIndexes() throws IOException {
+        String index = "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<sitemap><loc>http://a.com/s1.xml.gz</loc><lastmod>2004-10-01T18:23:17+00:00</lastmod></sitemap>"
+                + "<sitemap><loc>http://a.com/s2.xml</loc></sitemap>"
+                + "</sitemapindex>";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(index.getBytes("UTF-8"));
+        out.close();
+
+        Collector collector = parse(bytes.toByteArray());
+        assertTrue(collector.urls.isEmpty());
+        assertEquals("[http://a.com/s1.xml.gz, http://a.com/s2.xml]", collector.sitemaps.toString());
+    }
+
+    @Test
+    public void shouldIgnoreLocationsOfExtensions() throws IOException {
+        String sitemap = "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\""
+                + " xmlns:image=\"http://www.google.com/schemas/sitemap-image/1.1\">"
+                + "<url><loc>http://a.com/page.html</loc>"
+                + "<image:image><image:loc>http://a.com/image.jpg</image:loc></image:image>"
+                + "<priority>0.5</priority></url>"
+                + "<url><image:image><image:loc>http://a.com/other.jpg</image:loc></image:image></url>"
+                + "</urlset>";
+        Collector collector = parse(sitemap.getBytes("UTF-8"));
+        assertEquals("[http://a.com/page.html -1 0.5]", collector.urls.toString());
+    }
+
+    @Test
+    public void shouldParseTextSitemaps() throws IOException {
+        Collector collector = parse("\uFEFFhttp://a.com/1\r\n\r\n  https://a.com/2\nnot a url\n".getBytes("UTF-8"));
+        assertEquals("[http://a.com/1 -1 -1.0, https://a.com/2 -1 -1.0]", collector.urls.toString());
+    }
+
+    @Test
+    public void shouldStopAtTheMaximumSize() throws IOException {
+        try {
+            new SitemapParser(200).parse(new ByteArrayInputStream(SITEMAP.getBytes("UTF-8")), new Collector());
+            fail();
+        } catch (IOException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void shouldParseW3CDatetimes() {
+        assertEquals(1104537600000L, SitemapParser.parseLastModified("2005-01-01"));
+        assertEquals(1104537600000L, SitemapParser.parseLastModified("2005-01"));
+        assertEquals(1104537600000L, SitemapParser.parseLastModified("2005"));
+        assertEquals(1104537600000L, SitemapParser.parseLastModified("2005-01-01T01:30+01:30"));
+        assertEquals(1104537600250L, SitemapParser.parseLastModified("2005-01-01T00:00:00.25Z"));
+        assertEquals(-1, SitemapParser.parseLastModified("2005-01-01T00:00"));
+        assertEquals(-1, SitemapParser.parseLastModified("2005-13-01"));
+        assertEquals(-1, SitemapParser.parseLastModified("yesterday"));
+    }
+
+    private static Collector parse(byte[] sitemap) throws IOException {
+        Collector collector = new Collector();
+        new SitemapParser().parse(new ByteArrayInputStream(sitemap), collector);
+        return collector;
+    }
+
+    private static class Collector implements SitemapHandler {
+        final List<String> urls = new ArrayList<>();
+        final List<String> sitemaps = new ArrayList<>();
+
+        @Override
+        public void url(String url, long lastModified, float priority) {
+            urls.add(url + " " + lastModified + " " + priority);
+        }
+
+        @Override
+        public void sitemap(String url) {
+            sitemaps.add(url);
+        }
+    }
+}
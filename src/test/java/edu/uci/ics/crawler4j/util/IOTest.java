@@ -0,0 +1,63 @@
+package edu.uci.ics.crawler4j.util;
+
+import edu.uci.ics.crawler4j.fetcher.PageBiggerThanMaxSizeException;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class IOTest {
+
+    @Test
+    public void shouldReadBodyWithKnownLength() throws IOException {
+        byte[] body = bytes(10000);
+        assertArrayEquals(body, IO.toByteArray(new ByteArrayEntity(body), 20000));
+    }
+
+    @Test
+    public void shouldReadBodyWithUnknownLength() throws IOException {
+        byte[] small = bytes(100);
+        byte[] large = bytes(100000);
+        assertArrayEquals(large, IO.toByteArray(streamingEntity(large), 200000));
+        // The reused read buffer must not leak bytes of the previous body
+        assertArrayEquals(small, IO.toByteArray(streamingEntity(small), 200000));
+    }
+
+    @Test
+    public void shouldNotTrustDeclaredLengthForAllocation() throws IOException {
+        // Allocating the declared length up front would need 2 GB
+        byte[] body = bytes(3 * 1024 * 1024);
+        BasicHttpEntity entity = streamingEntity(body);
+        entity.setContentLength(Integer.MAX_VALUE - 8);
+        assertArrayEquals(body, IO.toByteArray(entity, -1));
+    }
+
+    @Test(expected = PageBiggerThanMaxSizeException.class)
+    public void shouldRejectBodyLargerThanMaxLength() throws IOException {
+        IO.toByteArray(streamingEntity(bytes(5000)), 4096);
+    }
+
+    @Test(expected = PageBiggerThanMaxSizeException.class)
+    public void shouldRejectDeclaredLengthLargerThanMaxLength() throws IOException {
+        IO.toByteArray(new ByteArrayEntity(bytes(5000)), 4096);
+    }
+
+    private static BasicHttpEntity streamingEntity(byte[] body) {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(body));
+        entity.setContentLength(-1);
+        return entity;
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+}